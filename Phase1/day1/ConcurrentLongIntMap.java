@@ -0,0 +1,440 @@
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntBinaryOperator;
+import java.util.function.LongToIntFunction;
+
+// 并发的 long -> int 哈希表：多线程更新成绩、看板持续读取
+// 按键的哈希高位分成若干段，每段一把 StampedLock 和一张开放寻址表（与 LongIntHashMap 相同的线性探测和向后移位删除）。
+// 读操作先走乐观读：不加锁直接探测，最后 validate 确认期间没有写入，失败才退回读锁；
+// 写操作只锁自己所在的段，不同段的写入互不影响。遍历按段复制快照，是弱一致的。
+public class ConcurrentLongIntMap {
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MAX_SEGMENT_CAPACITY = 1 << 30;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    // 键不存在时 get/put/remove 的返回值
+    private final int noEntryValue;
+
+    // 一张不可变容量的表，扩容时整体替换；keys/values 的内容在写锁下原地修改
+    private static final class Table {
+        final long[] keys;
+        final int[] values;
+        final int mask;
+        // 段号占用了哈希的高 segmentBits 位，槽位取紧随其后的 log2(容量) 位
+        final int shift;
+
+        Table(int capacity, int segmentBits) {
+            this.keys = new long[capacity];
+            this.values = new int[capacity];
+            this.mask = capacity - 1;
+            this.shift = 64 - segmentBits - Integer.numberOfTrailingZeros(capacity);
+        }
+
+        int slot(long hash) {
+            return (int) (hash >>> shift) & mask;
+        }
+    }
+
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        final int segmentBits;
+        volatile Table table;
+        // 不含键 0 的条目数，只在写锁下修改
+        volatile int assigned;
+        // 键 0 用作空槽标记，单独存放
+        volatile boolean hasZeroKey;
+        int zeroValue;
+
+        Segment(int capacity, int segmentBits) {
+            this.segmentBits = segmentBits;
+            this.table = new Table(capacity, segmentBits);
+        }
+
+        int size() {
+            return assigned + (hasZeroKey ? 1 : 0);
+        }
+
+        // 在 t 中查找键所在的槽位，不存在返回 -1；乐观读时表可能正在被修改，探测次数以容量为上限
+        static int find(Table t, long key, long hash) {
+            final long[] keys = t.keys;
+            int i = t.slot(hash);
+            for (int probes = 0; probes <= t.mask; probes++) {
+                long existing = keys[i];
+                if (existing == key) {
+                    return i;
+                }
+                if (existing == 0) {
+                    return -1;
+                }
+                i = (i + 1) & t.mask;
+            }
+            return -1;
+        }
+
+        // 以下方法要求调用方持有写锁
+
+        int put(long key, long hash, int value, int noEntryValue) {
+            if (key == 0) {
+                int previous = hasZeroKey ? zeroValue : noEntryValue;
+                zeroValue = value;
+                hasZeroKey = true;
+                return previous;
+            }
+            Table t = table;
+            int i = t.slot(hash);
+            long existing;
+            while ((existing = t.keys[i]) != 0) {
+                if (existing == key) {
+                    int previous = t.values[i];
+                    t.values[i] = value;
+                    return previous;
+                }
+                i = (i + 1) & t.mask;
+            }
+            // 先写值再写键，乐观读看到键时值已经就位
+            t.values[i] = value;
+            t.keys[i] = key;
+            int size = assigned + 1;
+            assigned = size;
+            if (size >= (int) (t.keys.length * LOAD_FACTOR)) {
+                rehash(t);
+            }
+            return noEntryValue;
+        }
+
+        int remove(long key, long hash, int noEntryValue) {
+            if (key == 0) {
+                if (!hasZeroKey) {
+                    return noEntryValue;
+                }
+                hasZeroKey = false;
+                return zeroValue;
+            }
+            Table t = table;
+            int i = find(t, key, hash);
+            if (i < 0) {
+                return noEntryValue;
+            }
+            int previous = t.values[i];
+            shiftConflictingKeys(t, i);
+            assigned = assigned - 1;
+            return previous;
+        }
+
+        private void shiftConflictingKeys(Table t, int gap) {
+            final long[] keys = t.keys;
+            final int[] values = t.values;
+            int next = (gap + 1) & t.mask;
+            long key;
+            while ((key = keys[next]) != 0) {
+                int ideal = t.slot(hash(key));
+                // 空位 gap 位于 [ideal, next] 之间（按环形距离）时，next 处的条目可以前移到 gap
+                if (((next - ideal) & t.mask) >= ((next - gap) & t.mask)) {
+                    values[gap] = values[next];
+                    keys[gap] = key;
+                    gap = next;
+                }
+                next = (next + 1) & t.mask;
+            }
+            keys[gap] = 0;
+            values[gap] = 0;
+        }
+
+        // 新表填好后再发布，乐观读要么看到完整的旧表，要么看到完整的新表
+        private void rehash(Table old) {
+            int capacity = old.keys.length << 1;
+            if (capacity > MAX_SEGMENT_CAPACITY) {
+                throw new IllegalStateException("分段已达到最大容量：" + MAX_SEGMENT_CAPACITY);
+            }
+            Table t = new Table(capacity, segmentBits);
+            for (int j = 0; j < old.keys.length; j++) {
+                long key = old.keys[j];
+                if (key != 0) {
+                    int i = t.slot(hash(key));
+                    while (t.keys[i] != 0) {
+                        i = (i + 1) & t.mask;
+                    }
+                    t.keys[i] = key;
+                    t.values[i] = old.values[j];
+                }
+            }
+            table = t;
+        }
+    }
+
+    public ConcurrentLongIntMap() {
+        this(64, 16, -1);
+    }
+
+    /**
+     * @param concurrencyLevel 预计的并发写线程数，向上取 2 的幂作为段数
+     * @param expectedSize 预计条目数，平均分到各段
+     * @param noEntryValue 键不存在时的返回值（成绩用 -1）
+     */
+    public ConcurrentLongIntMap(int concurrencyLevel, int expectedSize, int noEntryValue) {
+        if (concurrencyLevel <= 0 || expectedSize < 0) {
+            throw new IllegalArgumentException("参数不合法：concurrencyLevel=" + concurrencyLevel
+                    + ", expectedSize=" + expectedSize);
+        }
+        int segmentCount = Integer.highestOneBit(Math.min(concurrencyLevel, 1 << 16));
+        if (segmentCount < concurrencyLevel) {
+            segmentCount <<= 1;
+        }
+        int segmentBits = Integer.numberOfTrailingZeros(segmentCount);
+        int perSegment = (int) Math.ceil(expectedSize / (double) segmentCount / LOAD_FACTOR) + 1;
+        int capacity = Integer.highestOneBit(Math.max(4, perSegment));
+        if (capacity < perSegment) {
+            capacity <<= 1;
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(capacity, segmentBits);
+        }
+        this.segmentShift = 64 - segmentBits;
+        this.noEntryValue = noEntryValue;
+    }
+
+    // 斐波那契散列；高位选段，紧随其后的位选槽
+    private static long hash(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    private Segment segmentFor(long hash) {
+        // 只有一段时 segmentShift 为 64，Java 的移位只取低 6 位，需要单独处理
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    public int get(long key) {
+        return getOrDefault(key, noEntryValue);
+    }
+
+    public int getOrDefault(long key, int defaultValue) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        StampedLock lock = segment.lock;
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int result = readValue(segment, key, hash, defaultValue);
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return readValue(segment, key, hash, defaultValue);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static int readValue(Segment segment, long key, long hash, int defaultValue) {
+        if (key == 0) {
+            return segment.hasZeroKey ? segment.zeroValue : defaultValue;
+        }
+        Table t = segment.table;
+        int i = Segment.find(t, key, hash);
+        return i >= 0 ? t.values[i] : defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        StampedLock lock = segment.lock;
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            boolean found = contains(segment, key, hash);
+            if (lock.validate(stamp)) {
+                return found;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return contains(segment, key, hash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static boolean contains(Segment segment, long key, long hash) {
+        return key == 0 ? segment.hasZeroKey : Segment.find(segment.table, key, hash) >= 0;
+    }
+
+    /**
+     * 写入或覆盖
+     * @return 原来的值，键不存在时返回 noEntryValue
+     */
+    public int put(long key, int value) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.put(key, hash, value, noEntryValue);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return 原来的值，键不存在时返回 noEntryValue
+     */
+    public int remove(long key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.remove(key, hash, noEntryValue);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 原子合并：键不存在时写入 value，否则写入 remapping(旧值, value)
+     * 例如 merge(id, 5, Integer::sum) 给成绩加 5 分
+     * @return 合并后的值
+     */
+    public int merge(long key, int value, IntBinaryOperator remapping) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            int result = value;
+            if (key == 0) {
+                if (segment.hasZeroKey) {
+                    result = remapping.applyAsInt(segment.zeroValue, value);
+                }
+            } else {
+                Table t = segment.table;
+                int i = Segment.find(t, key, hash);
+                if (i >= 0) {
+                    result = remapping.applyAsInt(t.values[i], value);
+                    t.values[i] = result;
+                    return result;
+                }
+            }
+            segment.put(key, hash, result, noEntryValue);
+            return result;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 键不存在时用 mapping 计算并写入；mapping 在段的写锁内执行，对同一个键最多执行一次
+     * @return 已有的值或新计算的值
+     */
+    public int computeIfAbsent(long key, LongToIntFunction mapping) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        // 已存在时走乐观读，不碰写锁
+        long stamp = segment.lock.tryOptimisticRead();
+        if (stamp != 0 && key != 0) {
+            Table t = segment.table;
+            int i = Segment.find(t, key, hash);
+            int existing = i >= 0 ? t.values[i] : 0;
+            if (segment.lock.validate(stamp) && i >= 0) {
+                return existing;
+            }
+        }
+        stamp = segment.lock.writeLock();
+        try {
+            if (key == 0) {
+                if (segment.hasZeroKey) {
+                    return segment.zeroValue;
+                }
+            } else {
+                Table t = segment.table;
+                int i = Segment.find(t, key, hash);
+                if (i >= 0) {
+                    return t.values[i];
+                }
+            }
+            int value = mapping.applyAsInt(key);
+            segment.put(key, hash, value, noEntryValue);
+            return value;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 弱一致遍历：逐段复制快照后在锁外回调，同一段内的数据是某一时刻的一致状态，
+     * 段与段之间可能反映不同时刻的修改
+     */
+    public void forEach(LongIntHashMap.LongIntConsumer consumer) {
+        for (Segment segment : segments) {
+            long[] keys;
+            int[] values;
+            boolean hasZeroKey;
+            int zeroValue;
+            long stamp = segment.lock.readLock();
+            try {
+                Table t = segment.table;
+                keys = t.keys.clone();
+                values = t.values.clone();
+                hasZeroKey = segment.hasZeroKey;
+                zeroValue = segment.zeroValue;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+            if (hasZeroKey) {
+                consumer.accept(0, zeroValue);
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    consumer.accept(keys[i], values[i]);
+                }
+            }
+        }
+    }
+
+    // 各段大小之和；并发修改时只是近似值
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentLongIntMap scoreMap = new ConcurrentLongIntMap();
+        long id = StudentIdCodec.encode("2025001");
+        scoreMap.put(id, 60);
+
+        // 4 个线程各给同一名学生加 1000 次 1 分，merge 保证不丢更新
+        Thread[] graders = new Thread[4];
+        for (int t = 0; t < graders.length; t++) {
+            graders[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    scoreMap.merge(id, 1, Integer::sum);
+                }
+            }, "grader-" + t);
+            graders[t].start();
+        }
+        for (Thread grader : graders) {
+            grader.join();
+        }
+        System.out.println("学号2025001的成绩：" + scoreMap.get(id) + "（期望 4060）");
+
+        int created = scoreMap.computeIfAbsent(StudentIdCodec.encode("2025002"), key -> 75);
+        int existing = scoreMap.computeIfAbsent(StudentIdCodec.encode("2025002"), key -> 0);
+        System.out.println("computeIfAbsent 新建：" + created + "，再次调用：" + existing);
+
+        scoreMap.put(StudentIdCodec.encode("2025003"), 95);
+        scoreMap.remove(StudentIdCodec.encode("2025003"));
+        System.out.println("是否包含学号2025003：" + scoreMap.containsKey(StudentIdCodec.encode("2025003")));
+
+        System.out.println("遍历元素");
+        scoreMap.forEach((key, value) ->
+                System.out.println("学号：" + StudentIdCodec.decode(key) + "，成绩：" + value));
+    }
+}
@@ -0,0 +1,148 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+// 读多写少场景下对比 ConcurrentHashMap<String, Integer> 与 ConcurrentLongIntMap 的吞吐量
+// 线程数从 1 翻倍到 64，每个配置先预热再计时，统计所有线程完成的操作总数
+// 用法：java -Xmx2g ConcurrentLongIntMapBenchmark [条目数，默认 1000000] [读比例%，默认 95] [每轮毫秒，默认 1000]
+public class ConcurrentLongIntMapBenchmark {
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+    private static final long FIRST_ID = 2_025_000_000L;
+
+    // 被测对象：按下标访问第 index 个学号
+    private interface Target {
+        int read(int index);
+
+        void write(int index, int score);
+    }
+
+    private static final class StringMapTarget implements Target {
+        private final ConcurrentHashMap<String, Integer> map = new ConcurrentHashMap<>();
+        private final String[] ids;
+
+        StringMapTarget(String[] ids) {
+            this.ids = ids;
+            for (int i = 0; i < ids.length; i++) {
+                map.put(ids[i], i % 101);
+            }
+        }
+
+        @Override
+        public int read(int index) {
+            Integer score = map.get(ids[index]);
+            return score == null ? -1 : score;
+        }
+
+        @Override
+        public void write(int index, int score) {
+            map.put(ids[index], score);
+        }
+    }
+
+    private static final class LongIntMapTarget implements Target {
+        private final ConcurrentLongIntMap map;
+        private final long[] codes;
+
+        LongIntMapTarget(long[] codes) {
+            this.codes = codes;
+            this.map = new ConcurrentLongIntMap(64, codes.length, -1);
+            for (int i = 0; i < codes.length; i++) {
+                map.put(codes[i], i % 101);
+            }
+        }
+
+        @Override
+        public int read(int index) {
+            return map.get(codes[index]);
+        }
+
+        @Override
+        public void write(int index, int score) {
+            map.put(codes[index], score);
+        }
+    }
+
+    /**
+     * 运行一轮：threads 个线程持续读写 durationMillis 毫秒
+     * @return 每秒操作数
+     */
+    private static double runRound(Target target, int n, int threads, int readPercent, long durationMillis)
+            throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] deadline = new long[1];
+        for (int t = 0; t < threads; t++) {
+            long seed = 0x9E3779B97F4A7C15L * (t + 1);
+            Thread worker = new Thread(() -> {
+                long x = seed;
+                long ops = 0;
+                long sink = 0;
+                try {
+                    start.await();
+                    while (true) {
+                        // 每 1024 次操作检查一次时间，避免 nanoTime 本身成为瓶颈
+                        if ((ops & 1023) == 0 && System.nanoTime() >= deadline[0]) {
+                            break;
+                        }
+                        // xorshift 生成下标，不使用共享的 Random
+                        x ^= x << 13;
+                        x ^= x >>> 7;
+                        x ^= x << 17;
+                        int index = (int) ((x >>> 1) % n);
+                        if ((int) ((x >>> 40) % 100) < readPercent) {
+                            sink += target.read(index);
+                        } else {
+                            target.write(index, (int) (x & 127));
+                        }
+                        ops++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    operations.add(ops);
+                    MicroBench.consume(sink);
+                    done.countDown();
+                }
+            }, "bench-" + t);
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        deadline[0] = begin + durationMillis * 1_000_000L;
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        return operations.sum() * 1e9 / elapsed;
+    }
+
+    private static double measure(Target target, int n, int threads, int readPercent, long durationMillis)
+            throws InterruptedException {
+        // 预热一轮，让 JIT 编译读写路径
+        runRound(target, n, threads, readPercent, durationMillis / 2);
+        return runRound(target, n, threads, readPercent, durationMillis);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int readPercent = args.length > 1 ? Integer.parseInt(args[1]) : 95;
+        long durationMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        System.out.println("条目数：" + n + "，读比例：" + readPercent + "%，CPU 核数："
+                + Runtime.getRuntime().availableProcessors());
+
+        String[] ids = new String[n];
+        long[] codes = new long[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = Long.toString(FIRST_ID + i);
+            codes[i] = StudentIdCodec.encode(ids[i]);
+        }
+        Target stringMap = new StringMapTarget(ids);
+        Target longIntMap = new LongIntMapTarget(codes);
+
+        System.out.printf("%6s %28s %28s %8s%n", "线程数", "ConcurrentHashMap(ops/s)", "ConcurrentLongIntMap(ops/s)", "倍数");
+        for (int threads : THREADS) {
+            double chm = measure(stringMap, n, threads, readPercent, durationMillis);
+            double primitive = measure(longIntMap, n, threads, readPercent, durationMillis);
+            System.out.printf("%6d %28.0f %28.0f %8.2f%n", threads, chm, primitive, primitive / chm);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+import java.util.Arrays;
+
+// long -> int 的开放寻址哈希表，替代 HashMap<String, Integer> 存学号和成绩
+// HashMap 每个条目都有 Node、String 键和装箱的 Integer，这里只有两个基本类型数组：
+// 线性探测、容量取 2 的幂、删除时向后移位（不留墓碑），get/put/remove/forEach 都不分配对象
+// 键 0 用作空槽标记，因此单独存放在 hasZeroKey/zeroValue 中
+public class LongIntHashMap {
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    // 取乘积高位时的右移位数：64 - log2(容量)
+    private int shift;
+    // 不含键 0 的条目数
+    private int assigned;
+    private int resizeAt;
+
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    // 键不存在时 get/put/remove 的返回值
+    private final int noEntryValue;
+
+    // 遍历回调，避免 Map.Entry 和装箱
+    public interface LongIntConsumer {
+        void accept(long key, int value);
+    }
+
+    public LongIntHashMap() {
+        this(16, -1);
+    }
+
+    /**
+     * @param expectedSize 预计条目数，按负载因子换算初始容量，避免扩容
+     * @param noEntryValue 键不存在时的返回值（成绩用 -1）
+     */
+    public LongIntHashMap(int expectedSize, int noEntryValue) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("预计大小不能为负数：" + expectedSize);
+        }
+        this.noEntryValue = noEntryValue;
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        if (needed > MAX_CAPACITY) {
+            throw new IllegalArgumentException("条目数过多：" + expectedSize);
+        }
+        int capacity = Integer.highestOneBit((int) Math.max(4, needed));
+        return capacity < needed ? capacity << 1 : capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        resizeAt = Math.min(capacity - 1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    // 斐波那契散列：乘以 2^64/黄金分割比后取高位，连续学号会被均匀打散，不会聚成长探测链
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    public int get(long key) {
+        return getOrDefault(key, noEntryValue);
+    }
+
+    public int getOrDefault(long key, int defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        final long[] keys = this.keys;
+        int i = slot(key);
+        long existing;
+        while ((existing = keys[i]) != 0) {
+            if (existing == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        final long[] keys = this.keys;
+        int i = slot(key);
+        long existing;
+        while ((existing = keys[i]) != 0) {
+            if (existing == key) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * 写入或覆盖
+     * @return 原来的值，键不存在时返回 noEntryValue
+     */
+    public int put(long key, int value) {
+        if (key == 0) {
+            int previous = hasZeroKey ? zeroValue : noEntryValue;
+            hasZeroKey = true;
+            zeroValue = value;
+            return previous;
+        }
+        final long[] keys = this.keys;
+        int i = slot(key);
+        long existing;
+        while ((existing = keys[i]) != 0) {
+            if (existing == key) {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++assigned >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return noEntryValue;
+    }
+
+    /**
+     * 删除键，后面同一探测链上的条目向前移位，保证查找不会提前遇到空槽
+     * @return 原来的值，键不存在时返回 noEntryValue
+     */
+    public int remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return noEntryValue;
+            }
+            hasZeroKey = false;
+            return zeroValue;
+        }
+        final long[] keys = this.keys;
+        int i = slot(key);
+        long existing;
+        while ((existing = keys[i]) != 0) {
+            if (existing == key) {
+                int previous = values[i];
+                shiftConflictingKeys(i);
+                assigned--;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        return noEntryValue;
+    }
+
+    private void shiftConflictingKeys(int gap) {
+        final long[] keys = this.keys;
+        final int[] values = this.values;
+        int next = (gap + 1) & mask;
+        long key;
+        while ((key = keys[next]) != 0) {
+            int ideal = slot(key);
+            // 空位 gap 位于 [ideal, next] 之间（按环形距离）时，next 处的条目可以前移到 gap
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+    }
+
+    private void rehash(int newCapacity) {
+        if (newCapacity > MAX_CAPACITY) {
+            throw new IllegalStateException("哈希表已达到最大容量：" + MAX_CAPACITY);
+        }
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            long key = oldKeys[j];
+            if (key != 0) {
+                int i = slot(key);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    public void forEach(LongIntConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(0, zeroValue);
+        }
+        final long[] keys = this.keys;
+        final int[] values = this.values;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return assigned + (hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // 清空条目，保留已分配的数组
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        assigned = 0;
+        hasZeroKey = false;
+    }
+
+    // 槽位数组的容量
+    public int capacity() {
+        return keys.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((key, value) -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(key).append('=').append(value);
+        });
+        return sb.append('}').toString();
+    }
+
+    // 与 testHahMap 相同的操作，键改为编码后的学号
+    public static void main(String[] args) {
+        LongIntHashMap scoreMap = new LongIntHashMap();
+        scoreMap.put(StudentIdCodec.encode("2025001"), 90);
+        scoreMap.put(StudentIdCodec.encode("2025002"), 85);
+        scoreMap.put(StudentIdCodec.encode("2025002"), 88); // 重复键，覆盖原有值（85→88）
+        scoreMap.put(StudentIdCodec.encode("2025003"), 95);
+        System.out.println("映射大小：" + scoreMap.size());
+
+        int score = scoreMap.get(StudentIdCodec.encode("2025001"));
+        System.out.println("学号2025001的成绩：" + score);
+        System.out.println("学号2025009的成绩：" + scoreMap.get(StudentIdCodec.encode("2025009")) + "（-1 表示不存在）");
+
+        scoreMap.put(StudentIdCodec.encode("2025003"), 98);
+        System.out.println("\n遍历元素");
+        scoreMap.forEach((id, value) ->
+                System.out.println("学号：" + StudentIdCodec.decode(id) + "，成绩：" + value));
+
+        scoreMap.remove(StudentIdCodec.encode("2025002"));
+        System.out.println("\n删除学号2025002后大小：" + scoreMap.size());
+        System.out.println("是否包含学号2025001：" + scoreMap.containsKey(StudentIdCodec.encode("2025001")));
+        System.out.println("是否包含学号2025002：" + scoreMap.containsKey(StudentIdCodec.encode("2025002")));
+        scoreMap.clear();
+        System.out.println("清空后大小：" + scoreMap.size());
+    }
+}
@@ -0,0 +1,137 @@
+import java.util.HashMap;
+import java.util.Random;
+
+// 对比 HashMap<String, Integer> 与 LongIntHashMap：写入、命中查找、未命中查找、删除和内存占用
+// 用法：java -Xmx6g LongIntHashMapBenchmark [条目数，默认 10000000]
+public class LongIntHashMapBenchmark {
+    private static final int WARMUPS = 2;
+    private static final int ITERATIONS = 3;
+    // 学号从 2025000000 开始连续编号
+    private static final long FIRST_ID = 2_025_000_000L;
+
+    private static String id(int i) {
+        return Long.toString(FIRST_ID + i);
+    }
+
+    private static HashMap<String, Integer> buildHashMap(String[] ids) {
+        HashMap<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            map.put(ids[i], i % 101);
+        }
+        return map;
+    }
+
+    private static LongIntHashMap buildLongIntMap(long[] codes) {
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < codes.length; i++) {
+            map.put(codes[i], i % 101);
+        }
+        return map;
+    }
+
+    private static int[] shuffledOrder(int n, long seed) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        System.out.println("条目数：" + n);
+
+        // 学号字符串和编码在计时前准备好，两边查找的都是同一批学号
+        // 顺序打乱：连续学号按顺序访问时 HashMap 的桶也是连续的，会得到线上随机访问拿不到的缓存命中
+        int[] order = shuffledOrder(n, 42);
+        String[] ids = new String[n];
+        long[] codes = new long[n];
+        String[] missingIds = new String[n];
+        long[] missingCodes = new long[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = id(order[i]);
+            codes[i] = StudentIdCodec.encode(ids[i]);
+            missingIds[i] = id(n + order[i]);
+            missingCodes[i] = StudentIdCodec.encode(missingIds[i]);
+        }
+
+        System.out.println("\n== 写入（不预设容量，包含扩容） ==");
+        MicroBench.run("HashMap<String,Integer> put", WARMUPS, ITERATIONS, () -> buildHashMap(ids).size());
+        MicroBench.run("LongIntHashMap put", WARMUPS, ITERATIONS, () -> buildLongIntMap(codes).size());
+
+        HashMap<String, Integer> hashMap = buildHashMap(ids);
+        LongIntHashMap longIntMap = buildLongIntMap(codes);
+
+        System.out.println("\n== 命中查找 ==");
+        MicroBench.run("HashMap<String,Integer> get", WARMUPS, ITERATIONS, () -> {
+            long sum = 0;
+            for (String id : ids) {
+                sum += hashMap.get(id);
+            }
+            return sum;
+        });
+        MicroBench.run("LongIntHashMap get", WARMUPS, ITERATIONS, () -> {
+            long sum = 0;
+            for (long code : codes) {
+                sum += longIntMap.get(code);
+            }
+            return sum;
+        });
+
+        System.out.println("\n== 未命中查找 ==");
+        MicroBench.run("HashMap<String,Integer> containsKey", WARMUPS, ITERATIONS, () -> {
+            long hits = 0;
+            for (String id : missingIds) {
+                if (hashMap.containsKey(id)) {
+                    hits++;
+                }
+            }
+            return hits;
+        });
+        MicroBench.run("LongIntHashMap containsKey", WARMUPS, ITERATIONS, () -> {
+            long hits = 0;
+            for (long code : missingCodes) {
+                if (longIntMap.containsKey(code)) {
+                    hits++;
+                }
+            }
+            return hits;
+        });
+
+        System.out.println("\n== 删除一半条目 ==");
+        MicroBench.run("HashMap<String,Integer> remove", 1, ITERATIONS, () -> buildHashMap(ids), map -> {
+            for (int i = 0; i < ids.length; i += 2) {
+                map.remove(ids[i]);
+            }
+            return map.size();
+        });
+        MicroBench.run("LongIntHashMap remove", 1, ITERATIONS, () -> buildLongIntMap(codes), map -> {
+            for (int i = 0; i < codes.length; i += 2) {
+                map.remove(codes[i]);
+            }
+            return map.size();
+        });
+
+        System.out.println("\n== 内存占用 ==");
+        // 只统计映射本身：学号字符串由 ids 数组持有，HashMap 额外引用的是同一批 String
+        // 真实场景下键是从外部读入的，String 也会算进缓存的占用
+        long before = MicroBench.usedMemory();
+        HashMap<String, Integer> memHashMap = buildHashMap(ids);
+        long hashMapBytes = MicroBench.usedMemory() - before;
+        before = MicroBench.usedMemory();
+        LongIntHashMap memLongIntMap = buildLongIntMap(codes);
+        long longIntBytes = MicroBench.usedMemory() - before;
+        System.out.printf("HashMap<String,Integer>：约 %.1f MB（每条 %.1f 字节，不含 String）%n",
+                hashMapBytes / 1048576.0, (double) hashMapBytes / n);
+        System.out.printf("LongIntHashMap         ：约 %.1f MB（每条 %.1f 字节）%n",
+                longIntBytes / 1048576.0, (double) longIntBytes / n);
+        MicroBench.consume(memHashMap.size() + memLongIntMap.size());
+    }
+}
@@ -0,0 +1,582 @@
+// 基于内存映射文件的持久化 long -> int 哈希表（学号编码 -> 成绩）
+// 槽位定长 16 字节直接放在映射文件里，数据在页缓存中而不占堆：进程重启后重新映射即可使用，不需要逐条加载。
+// 线性探测，删除只打墓碑（每次修改只写一个槽，进程崩溃不会留下重复或丢失的条目）；
+// 条目加墓碑过多时按 Redis 的渐进式 rehash 迁移到新文件：每次写操作顺带迁移一小段，读操作同时查新旧两张表，
+// 写锁每次只持有很短时间；迁移进度保存在新文件头中，进程中途退出后重新打开会从断点继续。
+// 编译运行：javac MappedScoreMap.java && java MappedScoreMap [文件路径] [条目数]（LongIntHashMap.java、StudentIdCodec.java 会被自动编译）
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class MappedScoreMap implements AutoCloseable {
+    // 文件头布局：魔数 | 版本 | 容量 | 条目数 | 墓碑数 | 正常关闭标记 | 迁移进度（仅新表使用）
+    private static final int MAGIC = 0x53434D50;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_CAPACITY = 8;
+    private static final int H_SIZE = 12;
+    private static final int H_TOMBSTONES = 16;
+    private static final int H_CLEAN = 20;
+    private static final int H_MIGRATE_INDEX = 24;
+
+    // 槽位布局：键(long) | 值(int) | 状态(int)
+    private static final int SLOT_SIZE = 16;
+    private static final int S_VALUE = 8;
+    private static final int S_STATE = 12;
+    private static final int EMPTY = 0;
+    private static final int FULL = 1;
+    private static final int DELETED = 2;
+
+    private static final float LOAD_FACTOR = 0.75f;
+    // 单个 MappedByteBuffer 不能超过 2GB
+    private static final int MAX_CAPACITY = 1 << 26;
+    // 每次写操作顺带迁移的旧表槽位数
+    private static final int MIGRATE_STEP = 512;
+    private static final String RESIZE_SUFFIX = ".resize";
+
+    // 键不存在时 get/put/remove 的返回值
+    public static final int NO_ENTRY = -1;
+
+    private final Path file;
+    private final Path resizeFile;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // 当前表；迁移期间新写入都进入 table，旧表 oldTable 只会被打墓碑
+    private Table table;
+    private Table oldTable;
+    private boolean closed;
+
+    // 一张映射到文件的哈希表
+    private static final class Table {
+        final Path path;
+        final MappedByteBuffer buffer;
+        final int capacity;
+        final int mask;
+        final int shift;
+
+        private Table(Path path, MappedByteBuffer buffer, int capacity) {
+            this.path = path;
+            this.buffer = buffer;
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        }
+
+        // 新建文件：先写其余头字段，最后写魔数，魔数为 0 的文件视为未创建完成
+        static Table create(Path path, int capacity) throws IOException {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+            }
+            buffer.putInt(H_VERSION, VERSION);
+            buffer.putInt(H_CAPACITY, capacity);
+            buffer.putInt(H_CLEAN, 0);
+            buffer.putInt(H_MAGIC, MAGIC);
+            return new Table(path, buffer, capacity);
+        }
+
+        // 打开已有文件；返回 null 表示文件未创建完成（魔数还没写入）
+        static Table open(Path path) throws IOException {
+            long fileSize = Files.size(path);
+            if (fileSize < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            }
+            int magic = buffer.getInt(H_MAGIC);
+            if (magic == 0) {
+                return null;
+            }
+            if (magic != MAGIC) {
+                throw new IOException("不是成绩映射文件：" + path);
+            }
+            if (buffer.getInt(H_VERSION) != VERSION) {
+                throw new IOException("不支持的文件版本：" + buffer.getInt(H_VERSION));
+            }
+            int capacity = buffer.getInt(H_CAPACITY);
+            if (Integer.bitCount(capacity) != 1 || HEADER_SIZE + (long) capacity * SLOT_SIZE != fileSize) {
+                throw new IOException("文件已损坏，容量与文件大小不一致：" + path);
+            }
+            return new Table(path, buffer, capacity);
+        }
+
+        int slot(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+        }
+
+        static int offset(int i) {
+            return HEADER_SIZE + i * SLOT_SIZE;
+        }
+
+        long key(int i) {
+            return buffer.getLong(offset(i));
+        }
+
+        int value(int i) {
+            return buffer.getInt(offset(i) + S_VALUE);
+        }
+
+        int state(int i) {
+            return buffer.getInt(offset(i) + S_STATE);
+        }
+
+        // 查找键所在的槽位，不存在返回 -1
+        int find(long key) {
+            int i = slot(key);
+            for (int probes = 0; probes < capacity; probes++) {
+                int state = state(i);
+                if (state == EMPTY) {
+                    return -1;
+                }
+                if (state == FULL && key(i) == key) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        // 写入一个确定不存在的键：优先复用探测路径上的第一个墓碑；先写键和值，最后写状态
+        void insert(long key, int value) {
+            int i = slot(key);
+            int firstDeleted = -1;
+            for (int probes = 0; probes < capacity; probes++) {
+                int state = state(i);
+                if (state == EMPTY) {
+                    break;
+                }
+                if (state == DELETED && firstDeleted < 0) {
+                    firstDeleted = i;
+                }
+                i = (i + 1) & mask;
+            }
+            int target = firstDeleted >= 0 ? firstDeleted : i;
+            if (firstDeleted < 0 && state(target) != EMPTY) {
+                throw new IllegalStateException("哈希表已满：" + path);
+            }
+            int offset = offset(target);
+            buffer.putLong(offset, key);
+            buffer.putInt(offset + S_VALUE, value);
+            buffer.putInt(offset + S_STATE, FULL);
+            if (firstDeleted >= 0) {
+                setHeader(H_TOMBSTONES, header(H_TOMBSTONES) - 1);
+            }
+            setHeader(H_SIZE, header(H_SIZE) + 1);
+        }
+
+        void setValue(int i, int value) {
+            buffer.putInt(offset(i) + S_VALUE, value);
+        }
+
+        void delete(int i) {
+            buffer.putInt(offset(i) + S_STATE, DELETED);
+            setHeader(H_SIZE, header(H_SIZE) - 1);
+            setHeader(H_TOMBSTONES, header(H_TOMBSTONES) + 1);
+        }
+
+        int header(int field) {
+            return buffer.getInt(field);
+        }
+
+        void setHeader(int field, int value) {
+            buffer.putInt(field, value);
+        }
+
+        // 按槽位扫描重新统计条目数和墓碑数，用于非正常关闭后的恢复
+        void recount() {
+            int size = 0;
+            int tombstones = 0;
+            for (int i = 0; i < capacity; i++) {
+                int state = state(i);
+                if (state == FULL) {
+                    size++;
+                } else if (state == DELETED) {
+                    tombstones++;
+                }
+            }
+            setHeader(H_SIZE, size);
+            setHeader(H_TOMBSTONES, tombstones);
+        }
+    }
+
+    public MappedScoreMap(Path file) throws IOException {
+        this(file, 1024);
+    }
+
+    /**
+     * 打开或创建映射文件
+     * @param expectedSize 新建文件时的预计条目数；打开已有文件时忽略
+     */
+    public MappedScoreMap(Path file, int expectedSize) throws IOException {
+        this.file = file;
+        this.resizeFile = file.resolveSibling(file.getFileName() + RESIZE_SUFFIX);
+        Table current = Files.exists(file) ? Table.open(file) : null;
+        if (current == null) {
+            Files.deleteIfExists(resizeFile);
+            table = Table.create(file, capacityFor(expectedSize));
+            return;
+        }
+        boolean clean = current.header(H_CLEAN) == 1;
+        Table resizing = Files.exists(resizeFile) ? Table.open(resizeFile) : null;
+        if (resizing != null) {
+            // 上次的迁移没有完成，从文件头记录的进度继续
+            oldTable = current;
+            table = resizing;
+            if (!clean) {
+                removeDuplicatesAfterCrash();
+                oldTable.recount();
+                table.recount();
+            }
+        } else {
+            Files.deleteIfExists(resizeFile);
+            table = current;
+            if (!clean) {
+                table.recount();
+            }
+        }
+        current.setHeader(H_CLEAN, 0);
+        table.setHeader(H_CLEAN, 0);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        if (needed > MAX_CAPACITY) {
+            throw new IllegalArgumentException("条目数过多：" + expectedSize);
+        }
+        int capacity = Integer.highestOneBit((int) Math.max(16, needed));
+        return capacity < needed ? capacity << 1 : capacity;
+    }
+
+    // put 先写新表再给旧表打墓碑，两步之间崩溃会使同一个键在两张表中都存在；以新表为准
+    private void removeDuplicatesAfterCrash() {
+        for (int i = 0; i < oldTable.capacity; i++) {
+            if (oldTable.state(i) == FULL && table.find(oldTable.key(i)) >= 0) {
+                oldTable.delete(i);
+            }
+        }
+    }
+
+    // ---------------- 读取 ----------------
+
+    public int get(long key) {
+        return getOrDefault(key, NO_ENTRY);
+    }
+
+    public int getOrDefault(long key, int defaultValue) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int i = table.find(key);
+            if (i >= 0) {
+                return table.value(i);
+            }
+            if (oldTable != null) {
+                i = oldTable.find(key);
+                if (i >= 0) {
+                    return oldTable.value(i);
+                }
+            }
+            return defaultValue;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean containsKey(long key) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return table.find(key) >= 0 || (oldTable != null && oldTable.find(key) >= 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 逐个遍历条目；回调期间持有读锁，不要在回调中修改本表
+    public void forEach(LongIntHashMap.LongIntConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            forEachIn(table, consumer);
+            if (oldTable != null) {
+                forEachIn(oldTable, consumer);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void forEachIn(Table t, LongIntHashMap.LongIntConsumer consumer) {
+        for (int i = 0; i < t.capacity; i++) {
+            if (t.state(i) == FULL) {
+                consumer.accept(t.key(i), t.value(i));
+            }
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return table.header(H_SIZE) + (oldTable == null ? 0 : oldTable.header(H_SIZE));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int capacity() {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return table.capacity;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 是否正在渐进式迁移
+    public boolean isResizing() {
+        lock.readLock().lock();
+        try {
+            return oldTable != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------------- 写入 ----------------
+
+    /**
+     * 写入或覆盖
+     * @return 原来的值，键不存在时返回 NO_ENTRY
+     */
+    public int put(long key, int value) {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            int previous = NO_ENTRY;
+            int i = table.find(key);
+            if (i >= 0) {
+                previous = table.value(i);
+                table.setValue(i, value);
+            } else {
+                int old = oldTable == null ? -1 : oldTable.find(key);
+                if (old >= 0) {
+                    previous = oldTable.value(old);
+                }
+                table.insert(key, value);
+                if (old >= 0) {
+                    oldTable.delete(old);
+                }
+            }
+            afterWrite();
+            return previous;
+        } catch (IOException e) {
+            throw new UncheckedIOException("扩容失败：" + file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除键
+     * @return 原来的值，键不存在时返回 NO_ENTRY
+     */
+    public int remove(long key) {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            int previous = NO_ENTRY;
+            int i = table.find(key);
+            if (i >= 0) {
+                previous = table.value(i);
+                table.delete(i);
+            } else if (oldTable != null) {
+                i = oldTable.find(key);
+                if (i >= 0) {
+                    previous = oldTable.value(i);
+                    oldTable.delete(i);
+                }
+            }
+            afterWrite();
+            return previous;
+        } catch (IOException e) {
+            throw new UncheckedIOException("扩容失败：" + file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 写操作后推进迁移，或在条目加墓碑超过负载因子时开始新的迁移；调用方持有写锁
+    private void afterWrite() throws IOException {
+        if (oldTable != null) {
+            migrate(MIGRATE_STEP);
+            return;
+        }
+        int used = table.header(H_SIZE) + table.header(H_TOMBSTONES);
+        if (used >= table.capacity * LOAD_FACTOR) {
+            startResize();
+        }
+    }
+
+    // 有效条目超过负载的一半时容量翻倍，否则只是墓碑多，按原容量重建
+    private void startResize() throws IOException {
+        int size = table.header(H_SIZE);
+        int newCapacity = size >= table.capacity * LOAD_FACTOR / 2 ? table.capacity << 1 : table.capacity;
+        if (newCapacity > MAX_CAPACITY) {
+            throw new IllegalStateException("哈希表已达到最大容量：" + MAX_CAPACITY);
+        }
+        Table resized = Table.create(resizeFile, newCapacity);
+        resized.setHeader(H_MIGRATE_INDEX, 0);
+        oldTable = table;
+        table = resized;
+    }
+
+    // 迁移旧表中的 steps 个槽位：先写入新表再给旧表打墓碑，重复执行是幂等的
+    private void migrate(int steps) throws IOException {
+        int index = table.header(H_MIGRATE_INDEX);
+        int end = Math.min(oldTable.capacity, index + steps);
+        for (; index < end; index++) {
+            if (oldTable.state(index) == FULL) {
+                long key = oldTable.key(index);
+                if (table.find(key) < 0) {
+                    table.insert(key, oldTable.value(index));
+                }
+                oldTable.delete(index);
+            }
+        }
+        table.setHeader(H_MIGRATE_INDEX, index);
+        if (index == oldTable.capacity) {
+            finishMigration();
+        }
+    }
+
+    // 迁移完成：新文件原子替换旧文件，之后只剩一张表
+    private void finishMigration() throws IOException {
+        table.buffer.force();
+        Files.move(resizeFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        table = new Table(file, table.buffer, table.capacity);
+        oldTable = null;
+    }
+
+    /**
+     * 一次性完成正在进行的迁移（例如空闲时调用），没有迁移时什么也不做
+     */
+    public void finishResize() {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            while (oldTable != null) {
+                migrate(MIGRATE_STEP * 64);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("扩容失败：" + file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------------- 刷盘与关闭 ----------------
+
+    /**
+     * 把映射的脏页写回磁盘；不调用时数据也在页缓存中，进程崩溃不会丢失，只有掉电才需要它
+     */
+    public void flush() {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            table.buffer.force();
+            if (oldTable != null) {
+                oldTable.buffer.force();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 标记正常关闭并刷盘；下次打开时不需要重新统计条目数
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            table.setHeader(H_CLEAN, 1);
+            table.buffer.force();
+            if (oldTable != null) {
+                oldTable.setHeader(H_CLEAN, 1);
+                oldTable.buffer.force();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("映射表已关闭：" + file);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path path = args.length > 0 ? Paths.get(args[0]) : Files.createTempDirectory("score-map").resolve("scores.map");
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        long base = StudentIdCodec.encode("2025000000");
+        System.out.println("映射文件：" + path);
+
+        long start = System.nanoTime();
+        MappedScoreMap map = new MappedScoreMap(path, 1024);
+        System.out.printf("打开耗时：%.3f ms，已有条目：%d%n", (System.nanoTime() - start) / 1e6, map.size());
+
+        if (map.size() == 0) {
+            // 从小容量开始写入，过程中会经历多次渐进式扩容
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                map.put(base + i, i % 101);
+            }
+            System.out.printf("写入 %d 条耗时：%.1f ms，容量：%d，是否仍在迁移：%b%n",
+                    n, (System.nanoTime() - start) / 1e6, map.capacity(), map.isResizing());
+            map.close();
+
+            start = System.nanoTime();
+            map = new MappedScoreMap(path);
+            System.out.printf("重新打开耗时：%.3f ms，条目数：%d%n", (System.nanoTime() - start) / 1e6, map.size());
+        }
+
+        Random random = new Random(1);
+        int lookups = Math.min(n, 1_000_000);
+        long sum = 0;
+        int missing = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            int k = random.nextInt(n);
+            int score = map.get(base + k);
+            if (score != k % 101) {
+                missing++;
+            }
+            sum += score;
+        }
+        System.out.printf("随机查找 %d 次耗时：%.1f ms，校验失败：%d（校验和 %d）%n",
+                lookups, (System.nanoTime() - start) / 1e6, missing, sum);
+        System.out.printf("堆内存占用：%.1f MB%n",
+                (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / 1048576.0);
+        map.close();
+    }
+}
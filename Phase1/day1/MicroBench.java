@@ -0,0 +1,84 @@
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+// 简易微基准工具：先预热让 JIT 完成编译，再多轮计时，报告最小值和平均值
+// day1 的示例没有构建工具，无法引入 JMH，这里按 JMH 的基本要求手写：
+// 预热与测量分离、每轮可以重新准备数据（不计入耗时）、结果写入 sink 防止被死代码消除
+public final class MicroBench {
+    private static volatile long sink;
+
+    private MicroBench() {
+    }
+
+    /**
+     * 单轮测量结果
+     */
+    public static final class Result {
+        public final String name;
+        public final long minNanos;
+        public final long avgNanos;
+
+        Result(String name, long minNanos, long avgNanos) {
+            this.name = name;
+            this.minNanos = minNanos;
+            this.avgNanos = avgNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-40s 最小 %10.3f ms  平均 %10.3f ms", name, minNanos / 1e6, avgNanos / 1e6);
+        }
+    }
+
+    /**
+     * 测量无状态的代码片段
+     * @param body 被测代码，返回值会写入 sink
+     */
+    public static Result run(String name, int warmups, int iterations, LongSupplier body) {
+        return run(name, warmups, iterations, () -> null, state -> body.getAsLong());
+    }
+
+    /**
+     * 测量会修改数据的代码片段：每轮先调用 setup 准备数据（不计时），再计时执行 body
+     */
+    public static <S> Result run(String name, int warmups, int iterations, Supplier<S> setup, ToLongFunction<S> body) {
+        for (int i = 0; i < warmups; i++) {
+            sink += body.applyAsLong(setup.get());
+        }
+        long min = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < iterations; i++) {
+            S state = setup.get();
+            long start = System.nanoTime();
+            sink += body.applyAsLong(state);
+            long elapsed = System.nanoTime() - start;
+            min = Math.min(min, elapsed);
+            total += elapsed;
+        }
+        Result result = new Result(name, min, total / iterations);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * 触发几次 GC 后读取已用堆内存，用于粗略比较数据结构的内存占用
+     */
+    public static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // 把值写入 sink，防止 JIT 把结果未被使用的计算消除
+    public static void consume(long value) {
+        sink += value;
+    }
+}
@@ -0,0 +1,545 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+// 成绩统计：均值/方差、排名、百分位、直方图、top-k、按班级分组
+// 所有统计都写成对 int[] 区间的归约：区间小于阈值时顺序计算，否则一分为二交给 ForkJoinPool 并行，再合并两半的结果。
+// 合并只用整数运算（平方和用 128 位累加），top-k 按 (成绩, 行号) 全序选取，
+// 因此并行结果与顺序结果逐位相同，与拆分方式和线程调度无关。
+public class ScoreAnalytics {
+    // 区间小于该长度时不再拆分
+    public static final int DEFAULT_THRESHOLD = 1 << 16;
+    // 取值范围不超过该宽度时，百分位用计数法，否则排序
+    private static final int COUNTING_RANGE = 1 << 22;
+
+    private final int[] scores;
+    // 每条记录的班级编号，取值 [0, classCount)；没有分组信息时为 null
+    private final int[] classIds;
+    // 为 null 表示顺序计算
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    // 区间 [from, to) 上的叶子计算
+    private interface Leaf<R> {
+        R compute(int from, int to);
+    }
+
+    /**
+     * 汇总统计；count/sum/平方和都是精确整数
+     */
+    public static final class Stats {
+        private long count;
+        private long sum;
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+        // 平方和的高 64 位和低 64 位（无符号）
+        private long squaresHigh;
+        private long squaresLow;
+
+        void add(int score) {
+            count++;
+            sum += score;
+            if (score < min) {
+                min = score;
+            }
+            if (score > max) {
+                max = score;
+            }
+            addSquares(0, (long) score * score);
+        }
+
+        private void addSquares(long high, long low) {
+            long newLow = squaresLow + low;
+            squaresHigh += high + (Long.compareUnsigned(newLow, squaresLow) < 0 ? 1 : 0);
+            squaresLow = newLow;
+        }
+
+        Stats merge(Stats other) {
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            addSquares(other.squaresHigh, other.squaresLow);
+            return this;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long sum() {
+            return sum;
+        }
+
+        // 没有记录时 min/max 没有意义，返回 0
+        public int min() {
+            return count == 0 ? 0 : min;
+        }
+
+        public int max() {
+            return count == 0 ? 0 : max;
+        }
+
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        public BigInteger sumOfSquares() {
+            return BigInteger.valueOf(squaresHigh).shiftLeft(64)
+                    .add(new BigInteger(Long.toUnsignedString(squaresLow)));
+        }
+
+        /**
+         * 总体方差 (n·Σx² − (Σx)²) / n²，分子用精确整数计算，只在最后一步做一次除法
+         */
+        public double variance() {
+            if (count == 0) {
+                return 0;
+            }
+            BigInteger n = BigInteger.valueOf(count);
+            BigInteger s = BigInteger.valueOf(sum);
+            BigInteger numerator = n.multiply(sumOfSquares()).subtract(s.multiply(s));
+            return new BigDecimal(numerator).divide(new BigDecimal(n.multiply(n)), MathContext.DECIMAL64).doubleValue();
+        }
+
+        public double standardDeviation() {
+            return Math.sqrt(variance());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Stats)) {
+                return false;
+            }
+            Stats other = (Stats) o;
+            return count == other.count && sum == other.sum && min() == other.min() && max() == other.max()
+                    && squaresHigh == other.squaresHigh && squaresLow == other.squaresLow;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(count) * 31 + Long.hashCode(sum);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats{人数=%d 平均=%.2f 方差=%.2f 最低=%d 最高=%d}",
+                    count, mean(), variance(), min(), max());
+        }
+    }
+
+    private final class ReduceTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final transient Leaf<R> leaf;
+        private final transient BinaryOperator<R> combiner;
+
+        ReduceTask(int from, int to, Leaf<R> leaf, BinaryOperator<R> combiner) {
+            this.from = from;
+            this.to = to;
+            this.leaf = leaf;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= threshold) {
+                return leaf.compute(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            ReduceTask<R> left = new ReduceTask<>(from, mid, leaf, combiner);
+            ReduceTask<R> right = new ReduceTask<>(mid, to, leaf, combiner);
+            left.fork();
+            R rightResult = right.compute();
+            return combiner.apply(left.join(), rightResult);
+        }
+    }
+
+    /**
+     * 使用公共 ForkJoinPool 并行计算
+     */
+    public ScoreAnalytics(int[] scores, int[] classIds) {
+        this(scores, classIds, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param classIds 班级编号，可以为 null；不为 null 时长度必须与 scores 相同且不能为负数
+     * @param pool 为 null 时顺序计算
+     * @param threshold 顺序计算的区间长度上限
+     */
+    public ScoreAnalytics(int[] scores, int[] classIds, ForkJoinPool pool, int threshold) {
+        if (classIds != null && classIds.length != scores.length) {
+            throw new IllegalArgumentException("班级列长度 " + classIds.length + " 与成绩列长度 " + scores.length + " 不一致");
+        }
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("阈值必须大于0：" + threshold);
+        }
+        this.scores = scores;
+        this.classIds = classIds;
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    // 顺序计算的版本，用于对比和小数据量
+    public static ScoreAnalytics sequential(int[] scores, int[] classIds) {
+        return new ScoreAnalytics(scores, classIds, null, DEFAULT_THRESHOLD);
+    }
+
+    // 直接统计 StudentTable 的成绩列
+    public static ScoreAnalytics of(StudentTable table) {
+        return new ScoreAnalytics(table.scores(), null);
+    }
+
+    private <R> R reduce(Leaf<R> leaf, BinaryOperator<R> combiner) {
+        if (pool == null || scores.length <= threshold) {
+            return leaf.compute(0, scores.length);
+        }
+        return pool.invoke(new ReduceTask<>(0, scores.length, leaf, combiner));
+    }
+
+    public int size() {
+        return scores.length;
+    }
+
+    // ---------------- 汇总 ----------------
+
+    public Stats stats() {
+        return reduce((from, to) -> {
+            Stats stats = new Stats();
+            for (int i = from; i < to; i++) {
+                stats.add(scores[i]);
+            }
+            return stats;
+        }, Stats::merge);
+    }
+
+    /**
+     * 按班级分组统计
+     * @return 下标为班级编号；没有记录的班级 count 为 0
+     */
+    public Stats[] groupByClass() {
+        if (classIds == null) {
+            throw new IllegalStateException("没有班级信息，无法分组");
+        }
+        int classCount = reduce((from, to) -> {
+            int max = -1;
+            for (int i = from; i < to; i++) {
+                if (classIds[i] < 0) {
+                    throw new IllegalArgumentException("班级编号不能为负数：第" + i + "行 " + classIds[i]);
+                }
+                max = Math.max(max, classIds[i]);
+            }
+            return max;
+        }, Math::max) + 1;
+        return reduce((from, to) -> {
+            Stats[] groups = newStatsArray(classCount);
+            for (int i = from; i < to; i++) {
+                groups[classIds[i]].add(scores[i]);
+            }
+            return groups;
+        }, (left, right) -> {
+            for (int c = 0; c < classCount; c++) {
+                left[c].merge(right[c]);
+            }
+            return left;
+        });
+    }
+
+    private static Stats[] newStatsArray(int length) {
+        Stats[] groups = new Stats[length];
+        for (int c = 0; c < length; c++) {
+            groups[c] = new Stats();
+        }
+        return groups;
+    }
+
+    // ---------------- 排名与百分位 ----------------
+
+    /**
+     * 竞赛排名：成绩严格高于 score 的人数 + 1，同分同名次
+     */
+    public long rank(int score) {
+        return 1 + reduce((from, to) -> {
+            long above = 0;
+            for (int i = from; i < to; i++) {
+                if (scores[i] > score) {
+                    above++;
+                }
+            }
+            return above;
+        }, Long::sum);
+    }
+
+    /**
+     * 百分位（最近秩法）：排序后第 ceil(p/100·n) 个成绩
+     * @param p 取值 [0, 100]
+     */
+    public int percentile(double p) {
+        return percentiles(p)[0];
+    }
+
+    /**
+     * 一次计算多个百分位，共用一次计数或排序
+     */
+    public int[] percentiles(double... ps) {
+        if (scores.length == 0) {
+            throw new IllegalStateException("没有成绩记录");
+        }
+        long n = scores.length;
+        long[] ranks = new long[ps.length];
+        for (int j = 0; j < ps.length; j++) {
+            if (ps[j] < 0 || ps[j] > 100) {
+                throw new IllegalArgumentException("百分位必须在0到100之间：" + ps[j]);
+            }
+            ranks[j] = Math.max(1, (long) Math.ceil(ps[j] / 100 * n));
+        }
+        Stats stats = stats();
+        long range = (long) stats.max() - stats.min() + 1;
+        int[] result = new int[ps.length];
+        if (range <= Math.min(COUNTING_RANGE, n)) {
+            // 成绩范围小（0~100 分就是这种情况），直接按分值计数后累加，O(n)
+            long[] counts = countValues(stats.min(), (int) range);
+            for (int j = 0; j < ps.length; j++) {
+                long cumulative = 0;
+                int v = 0;
+                while (cumulative + counts[v] < ranks[j]) {
+                    cumulative += counts[v++];
+                }
+                result[j] = stats.min() + v;
+            }
+        } else {
+            int[] sorted = scores.clone();
+            if (pool == null) {
+                Arrays.sort(sorted);
+            } else {
+                Arrays.parallelSort(sorted);
+            }
+            for (int j = 0; j < ps.length; j++) {
+                result[j] = sorted[(int) (ranks[j] - 1)];
+            }
+        }
+        return result;
+    }
+
+    // 按分值计数，counts[v] 为成绩 min + v 的人数
+    // 范围不超过叶子长度时每个叶子一个计数数组；否则按 n / range 分片，每片一个数组最后合并一次，
+    // 两种情况下计数数组的总大小都不超过成绩数，避免每个叶子都分配一个大数组
+    private long[] countValues(int min, int range) {
+        if (range <= threshold) {
+            return histogram(min, min + range - 1, range);
+        }
+        Leaf<long[]> leaf = (from, to) -> {
+            long[] counts = new long[range];
+            for (int i = from; i < to; i++) {
+                counts[scores[i] - min]++;
+            }
+            return counts;
+        };
+        int chunks = pool == null ? 1 : Math.max(1, Math.min(pool.getParallelism(), scores.length / range));
+        if (chunks == 1) {
+            return leaf.compute(0, scores.length);
+        }
+        int chunkSize = (scores.length + chunks - 1) / chunks;
+        List<ForkJoinTask<long[]>> tasks = new ArrayList<>(chunks);
+        for (int from = 0; from < scores.length; from += chunkSize) {
+            int start = from;
+            int end = Math.min(scores.length, from + chunkSize);
+            tasks.add(pool.submit(() -> leaf.compute(start, end)));
+        }
+        long[] total = tasks.get(0).join();
+        for (int t = 1; t < tasks.size(); t++) {
+            long[] counts = tasks.get(t).join();
+            for (int v = 0; v < range; v++) {
+                total[v] += counts[v];
+            }
+        }
+        return total;
+    }
+
+    // ---------------- 直方图 ----------------
+
+    /**
+     * 等宽直方图：把 [low, high] 分成 buckets 个桶，范围之外的成绩不计数
+     */
+    public long[] histogram(int low, int high, int buckets) {
+        if (high < low || buckets <= 0) {
+            throw new IllegalArgumentException("直方图参数不合法：[" + low + ", " + high + "]，桶数 " + buckets);
+        }
+        long range = (long) high - low + 1;
+        long width = (range + buckets - 1) / buckets;
+        return reduce((from, to) -> {
+            long[] counts = new long[buckets];
+            for (int i = from; i < to; i++) {
+                int score = scores[i];
+                if (score >= low && score <= high) {
+                    counts[(int) ((score - (long) low) / width)]++;
+                }
+            }
+            return counts;
+        }, (left, right) -> {
+            for (int b = 0; b < buckets; b++) {
+                left[b] += right[b];
+            }
+            return left;
+        });
+    }
+
+    // ---------------- top-k ----------------
+
+    // (成绩, 行号) 打包成 long：成绩高的大，同分时行号小的大，全序保证结果唯一
+    private static long key(int score, int row) {
+        return ((long) score << 32) | (Integer.MAX_VALUE - row);
+    }
+
+    private static int rowOf(long key) {
+        return Integer.MAX_VALUE - (int) key;
+    }
+
+    /**
+     * 成绩最高的 k 条记录的行号，从高到低，同分时行号小的在前
+     */
+    public int[] topK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k 不能为负数：" + k);
+        }
+        int limit = Math.min(k, scores.length);
+        long[] keys = reduce((from, to) -> leafTopK(from, to, limit), (left, right) -> mergeTopK(left, right, limit));
+        int[] rows = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            rows[i] = rowOf(keys[i]);
+        }
+        return rows;
+    }
+
+    // 区间内的 top-k，按 key 从大到小返回；用大小为 k 的小顶堆
+    private long[] leafTopK(int from, int to, int k) {
+        long[] heap = new long[Math.min(k, to - from)];
+        int size = 0;
+        for (int i = from; i < to; i++) {
+            long key = key(scores[i], i);
+            if (size < heap.length) {
+                heap[size] = key;
+                siftUp(heap, size++);
+            } else if (size > 0 && key > heap[0]) {
+                heap[0] = key;
+                siftDown(heap, 0, size);
+            }
+        }
+        Arrays.sort(heap);
+        for (int i = 0, j = heap.length - 1; i < j; i++, j--) {
+            long tmp = heap[i];
+            heap[i] = heap[j];
+            heap[j] = tmp;
+        }
+        return heap;
+    }
+
+    // 合并两个降序数组，只保留前 k 个
+    private static long[] mergeTopK(long[] left, long[] right, int k) {
+        long[] merged = new long[Math.min(k, left.length + right.length)];
+        int i = 0;
+        int j = 0;
+        for (int m = 0; m < merged.length; m++) {
+            if (j >= right.length || (i < left.length && left[i] > right[j])) {
+                merged[m] = left[i++];
+            } else {
+                merged[m] = right[j++];
+            }
+        }
+        return merged;
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        long key = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= key) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = key;
+    }
+
+    private static void siftDown(long[] heap, int i, int n) {
+        long key = heap[i];
+        int half = n >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < n && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (key <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+
+    // 用法：java -Xmx2g ScoreAnalytics [记录数，默认 10000000] [班级数，默认 50]
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int classCount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int[] scores = new int[n];
+        int[] classIds = new int[n];
+        // 线性同余生成，避免 Random 的同步开销；成绩大致呈钟形分布
+        long x = 42;
+        for (int i = 0; i < n; i++) {
+            x = x * 6364136223846793005L + 1442695040888963407L;
+            int a = (int) ((x >>> 33) % 51);
+            int b = (int) ((x >>> 13) % 51);
+            scores[i] = a + b;
+            classIds[i] = (int) ((x >>> 45) % classCount);
+        }
+        System.out.println("记录数：" + n + "，班级数：" + classCount + "，并行度："
+                + ForkJoinPool.commonPool().getParallelism());
+
+        ScoreAnalytics sequential = ScoreAnalytics.sequential(scores, classIds);
+        ScoreAnalytics parallel = new ScoreAnalytics(scores, classIds);
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            Object[] seq = runAll(sequential);
+            long seqNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            Object[] par = runAll(parallel);
+            long parNanos = System.nanoTime() - start;
+            System.out.printf("第%d轮：顺序 %.1f ms，并行 %.1f ms，加速比 %.2f，结果一致：%b%n", round + 1,
+                    seqNanos / 1e6, parNanos / 1e6, (double) seqNanos / parNanos, Arrays.deepEquals(seq, par));
+        }
+
+        Stats stats = parallel.stats();
+        System.out.println("\n全体：" + stats);
+        int[] p = parallel.percentiles(50, 90, 99);
+        System.out.println("中位数：" + p[0] + "，P90：" + p[1] + "，P99：" + p[2]);
+        System.out.println("考 90 分的排名：" + parallel.rank(90));
+        System.out.println("分数段（0-100 分成 10 段）：" + Arrays.toString(parallel.histogram(0, 100, 10)));
+        int[] top = parallel.topK(3);
+        for (int row : top) {
+            System.out.println("前3名：第" + row + "行，成绩 " + scores[row] + "，班级 " + classIds[row]);
+        }
+        Stats[] groups = parallel.groupByClass();
+        System.out.println("0 班：" + groups[0]);
+    }
+
+    private static Object[] runAll(ScoreAnalytics analytics) {
+        return new Object[] {
+                analytics.stats(),
+                analytics.percentiles(50, 90, 99),
+                analytics.rank(90),
+                analytics.histogram(0, 100, 10),
+                analytics.topK(100),
+                analytics.groupByClass()
+        };
+    }
+}
@@ -0,0 +1,25 @@
+// 学生类：testArrayList、StudentTable 等示例共用
+class Student{
+    private String name;
+    private int score;
+    public Student(String name, int score){
+        this.name=name;
+        this.score=score;
+    }
+    public String getName(){
+        return this.name;
+    }
+    public int getScore(){
+        return this.score;
+    }
+    public void setName(String name){
+        this.name=name;
+    }
+    public void setScore(int score){
+        this.score=score;
+    }
+    @Override
+    public String toString(){
+        return "Studen{姓名=‘"+name+"’ 成绩="+score+"}";
+    }
+}
@@ -0,0 +1,59 @@
+// 学号编解码：把 "2025001" 这类纯数字学号压进一个 long，作为 LongIntHashMap 的键
+// 高 5 位存位数（保留前导零，"007" 和 "7" 是不同的学号），低 59 位存数值，最多 17 位数字
+public final class StudentIdCodec {
+    public static final int MAX_DIGITS = 17;
+    private static final int LENGTH_SHIFT = 59;
+    private static final long VALUE_MASK = (1L << LENGTH_SHIFT) - 1;
+
+    private StudentIdCodec() {
+    }
+
+    /**
+     * 编码学号，结果一定不为 0
+     * @throws IllegalArgumentException 学号为空、含非数字字符或超过 17 位
+     */
+    public static long encode(CharSequence id) {
+        int length = id.length();
+        if (length == 0 || length > MAX_DIGITS) {
+            throw new IllegalArgumentException("学号长度必须在1到" + MAX_DIGITS + "位之间：" + id);
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("学号只能包含数字：" + id);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return ((long) length << LENGTH_SHIFT) | value;
+    }
+
+    // 判断能否编码，便于调用方对不规范的学号走其他路径
+    public static boolean isEncodable(CharSequence id) {
+        int length = id.length();
+        if (length == 0 || length > MAX_DIGITS) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static String decode(long code) {
+        int length = (int) (code >>> LENGTH_SHIFT);
+        if (length == 0 || length > MAX_DIGITS) {
+            throw new IllegalArgumentException("不是有效的学号编码：" + code);
+        }
+        char[] digits = new char[length];
+        long value = code & VALUE_MASK;
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+}
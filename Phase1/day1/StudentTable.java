@@ -0,0 +1,317 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+// 列式学生表：用 int[] 存成绩、用字典编码存姓名，替代 ArrayList<Student>
+// ArrayList<Student> 每条记录都有 Student 对象头、引用和 String 引用，
+// 逐个 remove(i--) 还会反复移动后面的元素（O(n²)）。列式存储每行只占 8 字节，
+// 批量删除一趟压缩完成（O(n)），排序和 top-k 直接在基本类型数组上进行。
+public class StudentTable {
+    private int[] scores;
+    // 姓名列：存字典中的编号，相同的名字只保存一份 String
+    private int[] nameIds;
+    private int size;
+
+    // 姓名字典：编号 -> 名字、名字 -> 编号
+    private final List<String> dictionary = new ArrayList<>();
+    private final HashMap<String, Integer> dictionaryIndex = new HashMap<>();
+
+    // 按行判断的条件，姓名和成绩同时可用
+    public interface RowPredicate {
+        boolean test(String name, int score);
+    }
+
+    // 按行遍历的回调
+    public interface RowConsumer {
+        void accept(int row, String name, int score);
+    }
+
+    public StudentTable() {
+        this(16);
+    }
+
+    public StudentTable(int initialCapacity) {
+        this.scores = new int[Math.max(1, initialCapacity)];
+        this.nameIds = new int[Math.max(1, initialCapacity)];
+    }
+
+    // 从已有的 ArrayList<Student> 转换
+    public static StudentTable from(List<Student> students) {
+        StudentTable table = new StudentTable(students.size());
+        for (Student student : students) {
+            table.add(student.getName(), student.getScore());
+        }
+        return table;
+    }
+
+    public void add(String name, int score) {
+        if (size == scores.length) {
+            int capacity = scores.length + (scores.length >> 1) + 1;
+            scores = Arrays.copyOf(scores, capacity);
+            nameIds = Arrays.copyOf(nameIds, capacity);
+        }
+        scores[size] = score;
+        nameIds[size] = encode(name);
+        size++;
+    }
+
+    public void add(Student student) {
+        add(student.getName(), student.getScore());
+    }
+
+    private int encode(String name) {
+        Integer id = dictionaryIndex.get(name);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.add(name);
+            dictionaryIndex.put(name, id);
+        }
+        return id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // 字典中不同姓名的个数
+    public int distinctNames() {
+        return dictionary.size();
+    }
+
+    public int score(int row) {
+        checkRow(row);
+        return scores[row];
+    }
+
+    public String name(int row) {
+        checkRow(row);
+        return dictionary.get(nameIds[row]);
+    }
+
+    public void setScore(int row, int score) {
+        checkRow(row);
+        scores[row] = score;
+    }
+
+    public void set(int row, String name, int score) {
+        checkRow(row);
+        nameIds[row] = encode(name);
+        scores[row] = score;
+    }
+
+    // 需要对象时再按行物化成 Student
+    public Student get(int row) {
+        return new Student(name(row), score(row));
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("行号越界：" + row + "，表大小：" + size);
+        }
+    }
+
+    /**
+     * 按成绩批量删除：一趟扫描把保留的行向前压缩
+     * @return 删除的行数
+     */
+    public int removeIf(IntPredicate scorePredicate) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!scorePredicate.test(scores[i])) {
+                scores[kept] = scores[i];
+                nameIds[kept] = nameIds[i];
+                kept++;
+            }
+        }
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    /**
+     * 按姓名和成绩批量删除：一趟扫描完成，姓名直接从字典取出，不创建 Student 对象
+     * @return 删除的行数
+     */
+    public int removeIf(RowPredicate predicate) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!predicate.test(dictionary.get(nameIds[i]), scores[i])) {
+                scores[kept] = scores[i];
+                nameIds[kept] = nameIds[i];
+                kept++;
+            }
+        }
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    /**
+     * 按成绩过滤出一张新表（复制姓名字典，行中的编号保持不变）
+     */
+    public StudentTable filter(IntPredicate scorePredicate) {
+        StudentTable result = new StudentTable(size);
+        result.dictionary.addAll(dictionary);
+        result.dictionaryIndex.putAll(dictionaryIndex);
+        for (int i = 0; i < size; i++) {
+            if (scorePredicate.test(scores[i])) {
+                result.scores[result.size] = scores[i];
+                result.nameIds[result.size] = nameIds[i];
+                result.size++;
+            }
+        }
+        return result;
+    }
+
+    // 把 (成绩, 行号) 打包进一个 long：高 32 位是成绩，低 32 位是行号，排序时成绩相同按行号保持稳定
+    private static long pack(int score, int row) {
+        return ((long) score << 32) | row;
+    }
+
+    private static int unpackRow(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * 按成绩排序后的行号顺序，不修改表本身
+     * @param descending true 表示从高到低；成绩相同时保持原来的先后顺序
+     */
+    public int[] sortedRowsByScore(boolean descending) {
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = pack(descending ? -scores[i] : scores[i], i);
+        }
+        Arrays.sort(keys);
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = unpackRow(keys[i]);
+        }
+        return rows;
+    }
+
+    /**
+     * 按成绩原地排序（稳定）
+     */
+    public void sortByScore(boolean descending) {
+        int[] rows = sortedRowsByScore(descending);
+        int[] newScores = new int[scores.length];
+        int[] newNameIds = new int[nameIds.length];
+        for (int i = 0; i < size; i++) {
+            newScores[i] = scores[rows[i]];
+            newNameIds[i] = nameIds[rows[i]];
+        }
+        scores = newScores;
+        nameIds = newNameIds;
+    }
+
+    /**
+     * 成绩最高的 k 行（从高到低，成绩相同时行号小的在前），用大小为 k 的小顶堆，O(n log k)
+     */
+    public int[] topK(int k) {
+        k = Math.min(k, size);
+        if (k <= 0) {
+            return new int[0];
+        }
+        // 堆中的 key 越大越好：成绩高、行号小；用 long[] 手写堆，避免 PriorityQueue<Long> 装箱
+        long[] heap = new long[k];
+        int heapSize = 0;
+        for (int i = 0; i < size; i++) {
+            long key = pack(scores[i], Integer.MAX_VALUE - i);
+            if (heapSize < k) {
+                heap[heapSize] = key;
+                siftUp(heap, heapSize++);
+            } else if (key > heap[0]) {
+                heap[0] = key;
+                siftDown(heap, 0, k);
+            }
+        }
+        Arrays.sort(heap);
+        int[] rows = new int[k];
+        for (int i = 0; i < k; i++) {
+            rows[i] = Integer.MAX_VALUE - unpackRow(heap[k - 1 - i]);
+        }
+        return rows;
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        long key = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= key) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = key;
+    }
+
+    private static void siftDown(long[] heap, int i, int n) {
+        long key = heap[i];
+        int half = n >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < n && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (key <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+
+    public void forEach(RowConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(i, dictionary.get(nameIds[i]), scores[i]);
+        }
+    }
+
+    // 成绩列的只读副本，供统计等批量计算使用
+    public int[] scores() {
+        return Arrays.copyOf(scores, size);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(get(i));
+        }
+        return sb.append(']').toString();
+    }
+
+    public static void main(String[] args) {
+        StudentTable table = new StudentTable();
+        table.add("张三", 93);
+        table.add("李四", 83);
+        table.add("王五", 45);
+        table.add("赵六", 88);
+        table.add("张三", 97);
+        System.out.println("初始表：\n" + table);
+        System.out.println("不同姓名数：" + table.distinctNames());
+
+        table.set(1, "李斯", 89);
+        System.out.println("修改第2行：" + table);
+
+        System.out.println("按成绩从高到低：");
+        for (int row : table.sortedRowsByScore(true)) {
+            System.out.println(table.get(row));
+        }
+
+        System.out.println("前2名：");
+        for (int row : table.topK(2)) {
+            System.out.println(table.get(row));
+        }
+
+        int removed = table.removeIf(score -> score < 90);
+        System.out.println("删除低于90分的学生 " + removed + " 人，剩余：" + table);
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+// 对比 ArrayList<Student> 与列式 StudentTable：批量删除、排序、top-k 和内存占用
+// 用法：java StudentTableBenchmark [记录数，默认 1000000]
+public class StudentTableBenchmark {
+    private static final String[] NAMES = {"张三", "李四", "王五", "赵六", "钱七", "孙八", "周九", "吴十"};
+    private static final int WARMUPS = 3;
+    private static final int ITERATIONS = 5;
+
+    private static ArrayList<Student> buildList(int n, long seed) {
+        Random random = new Random(seed);
+        ArrayList<Student> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            // new String 模拟从文件/数据库逐条读入时每条记录各自持有一个 String
+            list.add(new Student(new String(NAMES[random.nextInt(NAMES.length)]), random.nextInt(101)));
+        }
+        return list;
+    }
+
+    private static StudentTable buildTable(int n, long seed) {
+        Random random = new Random(seed);
+        StudentTable table = new StudentTable(n);
+        for (int i = 0; i < n; i++) {
+            table.add(NAMES[random.nextInt(NAMES.length)], random.nextInt(101));
+        }
+        return table;
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        // remove(i--) 是 O(n²)，只能在较小规模上测
+        int smallN = Math.min(n, 50_000);
+        int k = 100;
+        System.out.println("记录数：" + n + "，remove(i--) 对比规模：" + smallN);
+
+        System.out.println("\n== 删除成绩低于60分的记录 ==");
+        MicroBench.run("ArrayList remove(i--) [" + smallN + "]", WARMUPS, ITERATIONS,
+                () -> buildList(smallN, 1), list -> {
+                    for (int i = 0; i < list.size(); i++) {
+                        if (list.get(i).getScore() < 60) {
+                            list.remove(i--);
+                        }
+                    }
+                    return list.size();
+                });
+        MicroBench.run("StudentTable removeIf [" + smallN + "]", WARMUPS, ITERATIONS,
+                () -> buildTable(smallN, 1), table -> table.removeIf(score -> score < 60));
+        MicroBench.run("ArrayList removeIf [" + n + "]", WARMUPS, ITERATIONS,
+                () -> buildList(n, 1), list -> {
+                    list.removeIf(s -> s.getScore() < 60);
+                    return list.size();
+                });
+        MicroBench.run("StudentTable removeIf [" + n + "]", WARMUPS, ITERATIONS,
+                () -> buildTable(n, 1), table -> table.removeIf(score -> score < 60));
+
+        System.out.println("\n== 按成绩从高到低排序 ==");
+        MicroBench.run("ArrayList sort [" + n + "]", WARMUPS, ITERATIONS,
+                () -> buildList(n, 2), list -> {
+                    list.sort(Comparator.comparingInt(Student::getScore).reversed());
+                    return list.get(0).getScore();
+                });
+        MicroBench.run("StudentTable sortByScore [" + n + "]", WARMUPS, ITERATIONS,
+                () -> buildTable(n, 2), table -> {
+                    table.sortByScore(true);
+                    return table.score(0);
+                });
+
+        System.out.println("\n== 成绩前 " + k + " 名 ==");
+        ArrayList<Student> list = buildList(n, 3);
+        StudentTable table = buildTable(n, 3);
+        MicroBench.run("ArrayList top-k (PriorityQueue) [" + n + "]", WARMUPS, ITERATIONS, () -> {
+            PriorityQueue<Student> heap = new PriorityQueue<>(k, Comparator.comparingInt(Student::getScore));
+            for (Student s : list) {
+                if (heap.size() < k) {
+                    heap.add(s);
+                } else if (s.getScore() > heap.peek().getScore()) {
+                    heap.poll();
+                    heap.add(s);
+                }
+            }
+            return heap.size();
+        });
+        MicroBench.run("StudentTable topK [" + n + "]", WARMUPS, ITERATIONS, () -> table.topK(k).length);
+
+        System.out.println("\n== 内存占用 ==");
+        long before = MicroBench.usedMemory();
+        ArrayList<Student> memList = buildList(n, 4);
+        long listBytes = MicroBench.usedMemory() - before;
+        before = MicroBench.usedMemory();
+        StudentTable memTable = buildTable(n, 4);
+        long tableBytes = MicroBench.usedMemory() - before;
+        System.out.printf("ArrayList<Student>：约 %.1f MB（每条 %.1f 字节）%n", listBytes / 1048576.0, (double) listBytes / n);
+        System.out.printf("StudentTable      ：约 %.1f MB（每条 %.1f 字节）%n", tableBytes / 1048576.0, (double) tableBytes / n);
+        // 保证两份数据在测量期间都存活
+        MicroBench.consume(memList.size() + memTable.size());
+    }
+}
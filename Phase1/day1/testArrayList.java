@@ -1,29 +1,6 @@
 import java.util.*;
 
-class Student{
-    private String name;
-    private int score;
-    public Student(String name, int score){
-        this.name=name;
-        this.score=score;
-    }
-    public String getName(){
-        return this.name;
-    }
-    public int getScore(){
-        return this.score;
-    }
-    public void setName(String name){
-        this.name=name;
-    }
-    public void setScore(int score){
-        this.score=score;
-    }
-    @Override
-    public String toString(){
-        return "Studen{姓名=‘"+name+"’ 成绩="+score+"}";
-    }
-}
+// 学生类 Student 定义在 Student.java 中
 public class testArrayList{
     public static void main(String[] args){
         ArrayList<Student> studentList=new ArrayList<>();
@@ -0,0 +1,37 @@
+import java.util.concurrent.TimeUnit;
+
+// 有界缓冲区接口：内存实现 BufferWithLock、持久化实现 MappedPersistentQueue 共用
+// 约定：不接受 null 元素，poll/tryPoll 用 null 表示没有数据
+interface BoundedBuffer<T> {
+
+    // 阻塞写入，缓冲区满时一直等待
+    void produce(T data) throws InterruptedException;
+
+    /**
+     * 限时写入
+     * @return 超时仍未写入返回 false
+     */
+    boolean offer(T data, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * 非阻塞写入，缓冲区满时立即返回 false
+     */
+    boolean tryOffer(T data);
+
+    // 阻塞读取，缓冲区空时一直等待
+    T consume() throws InterruptedException;
+
+    /**
+     * 限时读取
+     * @return 超时仍无数据返回 null
+     */
+    T poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * 非阻塞读取，缓冲区空时立即返回 null
+     */
+    T tryPoll();
+
+    // 当前未被消费的元素个数
+    int size();
+}
@@ -0,0 +1,177 @@
+// 缓冲区运行统计：生产/消费等待时间直方图、占用分布、满/空事件计数
+// record* 方法都由缓冲区在持有自身锁时调用，因此这里使用普通字段，不引入额外的原子操作；
+// 只有真正发生等待时才读取时钟，无等待的快速路径只是一次数组自增。
+class BufferStats {
+    // 等待时间按 2 的幂分桶：桶 0 表示没有等待，桶 i（i>0）覆盖 [2^(i-1), 2^i) 纳秒
+    static final int WAIT_BUCKETS = 40;
+
+    private final int capacity;
+    private final long[] producerWait = new long[WAIT_BUCKETS];
+    private final long[] consumerWait = new long[WAIT_BUCKETS];
+    // occupancy[k]：一次操作完成后缓冲区中恰好有 k 个元素的次数
+    private final long[] occupancy;
+    private long maxProducerWaitNanos;
+    private long maxConsumerWaitNanos;
+    // 生产者遇到缓冲区满 / 消费者遇到缓冲区空的次数
+    private long fullEvents;
+    private long emptyEvents;
+    // 超时或非阻塞调用失败的次数
+    private long offerTimeouts;
+    private long pollTimeouts;
+    private long produced;
+    private long consumed;
+
+    BufferStats(int capacity) {
+        this.capacity = capacity;
+        this.occupancy = new long[capacity + 1];
+    }
+
+    void recordFull() {
+        fullEvents++;
+    }
+
+    void recordEmpty() {
+        emptyEvents++;
+    }
+
+    void recordOfferTimeout() {
+        offerTimeouts++;
+    }
+
+    void recordPollTimeout() {
+        pollTimeouts++;
+    }
+
+    // 生产成功；waitNanos 为 0 表示没有等待
+    void recordProduce(long waitNanos, int sizeAfter) {
+        produced++;
+        producerWait[bucket(waitNanos)]++;
+        if (waitNanos > maxProducerWaitNanos) {
+            maxProducerWaitNanos = waitNanos;
+        }
+        occupancy[sizeAfter]++;
+    }
+
+    // 消费成功；waitNanos 为 0 表示没有等待
+    void recordConsume(long waitNanos, int sizeAfter) {
+        consumed++;
+        consumerWait[bucket(waitNanos)]++;
+        if (waitNanos > maxConsumerWaitNanos) {
+            maxConsumerWaitNanos = waitNanos;
+        }
+        occupancy[sizeAfter]++;
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return Math.min(WAIT_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /**
+     * 复制一份快照；调用方需持有缓冲区锁
+     */
+    Snapshot snapshot(int currentSize) {
+        return new Snapshot(this, currentSize);
+    }
+
+    /**
+     * 统计快照（不可变），可以定期采集以观察占用随时间的变化
+     */
+    static final class Snapshot {
+        final int capacity;
+        final int currentSize;
+        final long produced;
+        final long consumed;
+        final long fullEvents;
+        final long emptyEvents;
+        final long offerTimeouts;
+        final long pollTimeouts;
+        final long maxProducerWaitNanos;
+        final long maxConsumerWaitNanos;
+        private final long[] producerWait;
+        private final long[] consumerWait;
+        private final long[] occupancy;
+
+        private Snapshot(BufferStats stats, int currentSize) {
+            this.capacity = stats.capacity;
+            this.currentSize = currentSize;
+            this.produced = stats.produced;
+            this.consumed = stats.consumed;
+            this.fullEvents = stats.fullEvents;
+            this.emptyEvents = stats.emptyEvents;
+            this.offerTimeouts = stats.offerTimeouts;
+            this.pollTimeouts = stats.pollTimeouts;
+            this.maxProducerWaitNanos = stats.maxProducerWaitNanos;
+            this.maxConsumerWaitNanos = stats.maxConsumerWaitNanos;
+            this.producerWait = stats.producerWait.clone();
+            this.consumerWait = stats.consumerWait.clone();
+            this.occupancy = stats.occupancy.clone();
+        }
+
+        /**
+         * 生产者等待时间的分位数（纳秒，取所在桶的上界）
+         */
+        long producerWaitPercentile(double p) {
+            return percentile(producerWait, p);
+        }
+
+        long consumerWaitPercentile(double p) {
+            return percentile(consumerWait, p);
+        }
+
+        private static long percentile(long[] histogram, double p) {
+            long total = 0;
+            for (long count : histogram) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p * total);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= rank) {
+                    return i == 0 ? 0 : 1L << i;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * 平均占用（按操作次数加权）
+         */
+        double averageOccupancy() {
+            long ops = 0;
+            long sum = 0;
+            for (int k = 0; k < occupancy.length; k++) {
+                ops += occupancy[k];
+                sum += k * occupancy[k];
+            }
+            return ops == 0 ? 0 : (double) sum / ops;
+        }
+
+        /**
+         * 操作完成后缓冲区处于满状态的比例
+         */
+        double fullRatio() {
+            long ops = 0;
+            for (long count : occupancy) {
+                ops += count;
+            }
+            return ops == 0 ? 0 : (double) occupancy[capacity] / ops;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("容量=%d 当前=%d 生产=%d 消费=%d 满=%d 空=%d 生产超时=%d 消费超时=%d 平均占用=%.2f 满载比例=%.0f%%%n"
+                            + "  生产等待 p50=%dns p99=%dns max=%dns | 消费等待 p50=%dns p99=%dns max=%dns",
+                    capacity, currentSize, produced, consumed, fullEvents, emptyEvents, offerTimeouts, pollTimeouts,
+                    averageOccupancy(), fullRatio() * 100,
+                    producerWaitPercentile(0.5), producerWaitPercentile(0.99), maxProducerWaitNanos,
+                    consumerWaitPercentile(0.5), consumerWaitPercentile(0.99), maxConsumerWaitNanos);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 缓冲区（共享资源）：基于 ReentrantLock + 两个 Condition 的有界阻塞缓冲区
+// 单独成文件，供 ProducerConsumerWithReentrantLock、StagedPipeline 等示例共用；实现 BoundedBuffer 接口
+class BufferWithLock<T> implements BoundedBuffer<T> {
+    private final int capacity;
+    private final Queue<T> queue;
+    private final ReentrantLock lock;
+    private final Condition notFull;
+    private final Condition notEmpty;
+    // 是否打印每次生产/消费的日志（流水线等高吞吐场景下关闭）
+    private final boolean verbose;
+    // 运行统计，受 lock 保护
+    private final BufferStats stats;
+
+    public BufferWithLock(int capacity) {
+        this(capacity, true);
+    }
+
+    public BufferWithLock(int capacity, boolean verbose) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("缓冲区容量必须大于0：" + capacity);
+        }
+        this.capacity = capacity;
+        this.queue = new LinkedList<>();
+        this.lock = new ReentrantLock(true);
+        this.notFull = lock.newCondition();
+        this.notEmpty = lock.newCondition();
+        this.verbose = verbose;
+        this.stats = new BufferStats(capacity);
+    }
+
+    // 阻塞写入，缓冲区满时一直等待
+    @Override
+    public void produce(T data) throws InterruptedException {
+        checkNotNull(data);
+        lock.lock();
+        try {
+            long waitStart = 0;
+            if (queue.size() == capacity) {
+                stats.recordFull();
+                waitStart = System.nanoTime();
+            }
+            while (queue.size() == capacity) {
+                if (verbose) {
+                    System.out.println("缓冲区满，生产者等待 | 当前容量：" + queue.size());
+                }
+                notFull.await();
+            }
+            enqueue(data, waitStart == 0 ? 0 : System.nanoTime() - waitStart);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 限时写入
+     * @return 超时仍未写入返回 false
+     */
+    @Override
+    public boolean offer(T data, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotNull(data);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            long waitStart = 0;
+            if (queue.size() == capacity) {
+                stats.recordFull();
+                waitStart = System.nanoTime();
+            }
+            while (queue.size() == capacity) {
+                if (nanos <= 0) {
+                    stats.recordOfferTimeout();
+                    if (verbose) {
+                        System.out.println("缓冲区满，生产者等待超时：" + data);
+                    }
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(data, waitStart == 0 ? 0 : System.nanoTime() - waitStart);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 非阻塞写入，缓冲区满时立即返回 false
+     */
+    @Override
+    public boolean tryOffer(T data) {
+        checkNotNull(data);
+        lock.lock();
+        try {
+            if (queue.size() == capacity) {
+                stats.recordFull();
+                stats.recordOfferTimeout();
+                return false;
+            }
+            enqueue(data, 0);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 阻塞读取，缓冲区空时一直等待
+    @Override
+    public T consume() throws InterruptedException {
+        lock.lock();
+        try {
+            long waitStart = 0;
+            if (queue.isEmpty()) {
+                stats.recordEmpty();
+                waitStart = System.nanoTime();
+            }
+            while (queue.isEmpty()) {
+                if (verbose) {
+                    System.out.println("缓冲区空，消费者等待 | 当前容量：" + queue.size());
+                }
+                notEmpty.await();
+            }
+            return dequeue(waitStart == 0 ? 0 : System.nanoTime() - waitStart);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 限时读取
+     * @return 超时仍无数据返回 null
+     */
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            long waitStart = 0;
+            if (queue.isEmpty()) {
+                stats.recordEmpty();
+                waitStart = System.nanoTime();
+            }
+            while (queue.isEmpty()) {
+                if (nanos <= 0) {
+                    stats.recordPollTimeout();
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue(waitStart == 0 ? 0 : System.nanoTime() - waitStart);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 非阻塞读取，缓冲区空时立即返回 null
+     */
+    @Override
+    public T tryPoll() {
+        lock.lock();
+        try {
+            if (queue.isEmpty()) {
+                stats.recordEmpty();
+                stats.recordPollTimeout();
+                return null;
+            }
+            return dequeue(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 以下两个方法要求调用方已持有 lock
+    private void enqueue(T data, long waitNanos) {
+        queue.offer(data);
+        stats.recordProduce(waitNanos, queue.size());
+        if (verbose) {
+            System.out.println("生产数据：" + data + " | 当前缓冲区大小：" + queue.size());
+        }
+        notEmpty.signal();
+    }
+
+    private T dequeue(long waitNanos) {
+        T data = queue.poll();
+        stats.recordConsume(waitNanos, queue.size());
+        if (verbose) {
+            System.out.println("消费数据：" + data + " | 当前缓冲区大小：" + queue.size());
+        }
+        notFull.signal();
+        return data;
+    }
+
+    // poll 用 null 表示超时，因此不允许写入 null
+    private static void checkNotNull(Object data) {
+        if (data == null) {
+            throw new NullPointerException("缓冲区不接受 null 元素");
+        }
+    }
+
+    // 当前缓冲区中的元素个数
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 运行统计快照：等待时间直方图、占用分布、满/空次数
+     */
+    public BufferStats.Snapshot stats() {
+        lock.lock();
+        try {
+            return stats.snapshot(queue.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
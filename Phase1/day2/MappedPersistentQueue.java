@@ -0,0 +1,604 @@
+// 基于内存映射文件的持久化队列，实现 BoundedBuffer 接口
+// 思路与 Kafka 的顺序日志一致：记录顺序追加到定长的分段文件（segment），写满后滚动到下一个分段；
+// 消费位置保存在单独映射的索引文件中，进程重启后从上次位置继续，也可以回放仍保留的历史分段。
+// 写入只落到页缓存，不对每条消息 fsync：进程崩溃不会丢数据，掉电前的持久性由 flush() 或定时刷盘保证。
+// 编译运行：javac MappedPersistentQueue.java && java MappedPersistentQueue（BoundedBuffer.java 会被自动编译）
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class MappedPersistentQueue<T> implements BoundedBuffer<T>, AutoCloseable {
+    // 记录头（int）：>0 表示 负载长度+1，0 表示尚未写入，-1 表示分段结束
+    private static final int HEADER_SIZE = 4;
+    private static final int END_OF_SEGMENT = -1;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_FILE = "consumer.idx";
+
+    // 索引文件布局：魔数(long) | 分段大小(long) | 消费位置(long)
+    private static final long INDEX_MAGIC = 0x4D50_5155_4555_4531L;
+    private static final int INDEX_SIZE = 24;
+    private static final int IDX_MAGIC = 0;
+    private static final int IDX_SEGMENT_SIZE = 8;
+    private static final int IDX_READ_POS = 16;
+
+    /**
+     * 记录编解码器；定长记录的 sizeOf 返回常量即可
+     */
+    public interface Codec<T> {
+        // 编码后的字节数
+        int sizeOf(T value);
+
+        // 写入 target，target 的剩余空间恰好为 sizeOf(value)
+        void encode(T value, ByteBuffer target);
+
+        // 从只读视图中解码，source 的剩余部分恰好是一条记录
+        T decode(ByteBuffer source);
+    }
+
+    // 定长 4 字节整数
+    public static final Codec<Integer> INT_CODEC = new Codec<Integer>() {
+        @Override
+        public int sizeOf(Integer value) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void encode(Integer value, ByteBuffer target) {
+            target.putInt(value);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer source) {
+            return source.getInt();
+        }
+    };
+
+    // 变长 UTF-8 字符串
+    public static final Codec<String> UTF8_CODEC = new Codec<String>() {
+        @Override
+        public int sizeOf(String value) {
+            return value.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        @Override
+        public void encode(String value, ByteBuffer target) {
+            target.put(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String decode(ByteBuffer source) {
+            return StandardCharsets.UTF_8.decode(source).toString();
+        }
+    };
+
+    private final Path dir;
+    private final Codec<T> codec;
+    private final int segmentSize;
+    // 未消费数据的字节上限，超过后生产者等待（背压）
+    private final long maxBacklogBytes;
+    // 已消费的分段最多保留多少字节用于回放，超出后从最旧的分段开始删除
+    private final long retainedBytes;
+
+    // 分段起始位置 -> 映射；分段起始位置总是 segmentSize 的整数倍
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+    private final MappedByteBuffer index;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+    private final Thread flusher;
+
+    // 以下字段受 lock 保护；位置是跨分段的逻辑字节偏移
+    private long writePos;
+    private long readPos;
+    private long count;
+    private boolean closed = false;
+
+    public MappedPersistentQueue(Path dir, Codec<T> codec) throws IOException {
+        this(dir, codec, 64 << 20, 1L << 30, 0, 1000);
+    }
+
+    /**
+     * @param dir 数据目录
+     * @param codec 记录编解码器
+     * @param segmentSize 单个分段文件大小（字节）
+     * @param maxBacklogBytes 未消费数据上限，超过后写入阻塞
+     * @param retainedBytes 已消费分段的保留字节数，用于回放
+     * @param flushIntervalMillis 后台刷盘间隔，0 表示不主动刷盘（交给操作系统）
+     */
+    public MappedPersistentQueue(Path dir, Codec<T> codec, int segmentSize, long maxBacklogBytes,
+                                 long retainedBytes, long flushIntervalMillis) throws IOException {
+        if (segmentSize < 64) {
+            throw new IllegalArgumentException("分段大小过小：" + segmentSize);
+        }
+        this.dir = dir;
+        this.codec = codec;
+        this.segmentSize = segmentSize;
+        this.maxBacklogBytes = maxBacklogBytes;
+        this.retainedBytes = retainedBytes;
+
+        Files.createDirectories(dir);
+        Path indexFile = dir.resolve(INDEX_FILE);
+        boolean freshIndex = !Files.exists(indexFile);
+        this.index = map(indexFile, INDEX_SIZE);
+        if (!freshIndex) {
+            if (index.getLong(IDX_MAGIC) != INDEX_MAGIC) {
+                throw new IOException("索引文件已损坏：" + indexFile);
+            }
+            if (index.getLong(IDX_SEGMENT_SIZE) != segmentSize) {
+                throw new IOException("分段大小与已有数据不一致：" + index.getLong(IDX_SEGMENT_SIZE));
+            }
+        }
+
+        recover(freshIndex);
+
+        if (flushIntervalMillis > 0) {
+            this.flusher = new Thread(() -> runFlusher(flushIntervalMillis), "queue-flusher-" + dir.getFileName());
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    // 重启恢复：映射已有分段，扫描最后一个分段确定写入位置，从索引读取消费位置
+    private void recover(boolean freshIndex) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(base, map(file, segmentSize));
+            }
+        }
+        if (segments.isEmpty()) {
+            createSegment(0);
+        }
+
+        long lastBase = segments.lastKey();
+        MappedByteBuffer last = segments.get(lastBase);
+        int offset = 0;
+        while (true) {
+            int header = offset <= segmentSize - HEADER_SIZE ? last.getInt(offset) : 0;
+            if (header == 0) {
+                writePos = lastBase + offset;
+                break;
+            }
+            if (header == END_OF_SEGMENT) {
+                writePos = lastBase + segmentSize;
+                createSegment(writePos);
+                break;
+            }
+            offset += HEADER_SIZE + header - 1;
+        }
+
+        long earliest = segments.firstKey();
+        readPos = freshIndex ? earliest : Math.max(index.getLong(IDX_READ_POS), earliest);
+        index.putLong(IDX_MAGIC, INDEX_MAGIC);
+        index.putLong(IDX_SEGMENT_SIZE, segmentSize);
+        saveReadPos();
+        deleteConsumedSegments();
+        count = countRecords(readPos, writePos);
+    }
+
+    private long countRecords(long from, long to) {
+        long records = 0;
+        long pos = from;
+        while (pos < to) {
+            int header = segmentFor(pos).getInt(offsetOf(pos));
+            if (header == END_OF_SEGMENT) {
+                pos = baseOf(pos) + segmentSize;
+            } else {
+                pos += HEADER_SIZE + header - 1;
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // 映射建立后即使关闭 channel 依然有效
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private MappedByteBuffer createSegment(long base) throws IOException {
+        MappedByteBuffer buffer = map(segmentFile(base), segmentSize);
+        segments.put(base, buffer);
+        return buffer;
+    }
+
+    private Path segmentFile(long base) {
+        return dir.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    private long baseOf(long pos) {
+        return pos - pos % segmentSize;
+    }
+
+    private int offsetOf(long pos) {
+        return (int) (pos % segmentSize);
+    }
+
+    private MappedByteBuffer segmentFor(long pos) {
+        return segments.get(baseOf(pos));
+    }
+
+    // ---------------- 写入 ----------------
+
+    @Override
+    public void produce(T data) throws InterruptedException {
+        int need = recordSize(data);
+        lock.lock();
+        try {
+            while (!hasRoom(need)) {
+                notFull.await();
+            }
+            append(data, need);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(T data, long timeout, TimeUnit unit) throws InterruptedException {
+        int need = recordSize(data);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (!hasRoom(need)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            append(data, need);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryOffer(T data) {
+        int need = recordSize(data);
+        lock.lock();
+        try {
+            if (!hasRoom(need)) {
+                return false;
+            }
+            append(data, need);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int recordSize(T data) {
+        if (data == null) {
+            throw new NullPointerException("队列不接受 null 元素");
+        }
+        int need = HEADER_SIZE + codec.sizeOf(data);
+        // 每个分段末尾至少留出一个记录头的位置写结束标记
+        if (need > segmentSize - HEADER_SIZE || need > maxBacklogBytes) {
+            throw new IllegalArgumentException("记录过大：" + need + " 字节");
+        }
+        return need;
+    }
+
+    private boolean hasRoom(int need) {
+        ensureOpen();
+        return writePos - readPos + need <= maxBacklogBytes;
+    }
+
+    // 调用方需持有 lock
+    private void append(T data, int need) {
+        int offset = offsetOf(writePos);
+        MappedByteBuffer segment = segmentFor(writePos);
+        if (offset + need > segmentSize - HEADER_SIZE) {
+            // 当前分段放不下：写结束标记并滚动到下一个分段
+            segment.putInt(offset, END_OF_SEGMENT);
+            writePos = baseOf(writePos) + segmentSize;
+            try {
+                segment = createSegment(writePos);
+            } catch (IOException e) {
+                throw new UncheckedIOException("创建分段失败", e);
+            }
+            offset = 0;
+        }
+        // 先写负载再写记录头：记录头非 0 即代表整条记录已经完整写入
+        ByteBuffer target = segment.duplicate();
+        target.position(offset + HEADER_SIZE);
+        target.limit(offset + need);
+        codec.encode(data, target.slice());
+        segment.putInt(offset, need - HEADER_SIZE + 1);
+
+        writePos += need;
+        count++;
+        notEmpty.signal();
+    }
+
+    // ---------------- 读取 ----------------
+
+    @Override
+    public T consume() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!hasRecord()) {
+                notEmpty.await();
+            }
+            return codec.decode(readNext());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (!hasRecord()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return codec.decode(readNext());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public T tryPoll() {
+        lock.lock();
+        try {
+            return hasRecord() ? codec.decode(readNext()) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 零拷贝读取：直接返回映射区域上的只读视图，不做解码
+     * 视图在进程内一直有效（分段被删除后映射仍然存在，直到被 GC 回收）
+     * @return 没有数据时返回 null
+     */
+    public ByteBuffer tryPollView() {
+        lock.lock();
+        try {
+            return hasRecord() ? readNext() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 跳过分段结束标记；调用方需持有 lock
+    private boolean hasRecord() {
+        ensureOpen();
+        while (readPos < writePos && segmentFor(readPos).getInt(offsetOf(readPos)) == END_OF_SEGMENT) {
+            readPos = baseOf(readPos) + segmentSize;
+            saveReadPos();
+            deleteConsumedSegments();
+        }
+        return readPos < writePos;
+    }
+
+    // 调用方需持有 lock 且 hasRecord() 为 true
+    private ByteBuffer readNext() {
+        MappedByteBuffer segment = segmentFor(readPos);
+        int offset = offsetOf(readPos);
+        int length = segment.getInt(offset) - 1;
+        ByteBuffer view = segment.asReadOnlyBuffer();
+        view.position(offset + HEADER_SIZE);
+        view.limit(offset + HEADER_SIZE + length);
+
+        readPos += HEADER_SIZE + length;
+        count--;
+        saveReadPos();
+        notFull.signal();
+        return view.slice();
+    }
+
+    // 消费位置直接写入映射的索引文件，不做 fsync
+    private void saveReadPos() {
+        index.putLong(IDX_READ_POS, readPos);
+    }
+
+    // 按大小删除已消费的分段，保留 retainedBytes 用于回放
+    private void deleteConsumedSegments() {
+        long currentBase = baseOf(readPos);
+        long consumedBytes = (long) segments.headMap(currentBase).size() * segmentSize;
+        while (consumedBytes > retainedBytes) {
+            long oldest = segments.firstKey();
+            segments.remove(oldest);
+            consumedBytes -= segmentSize;
+            try {
+                Files.deleteIfExists(segmentFile(oldest));
+            } catch (IOException e) {
+                System.out.println("删除分段失败：" + segmentFile(oldest) + "，原因：" + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 回放：把消费位置移回最早仍保留的分段
+     */
+    public void rewindToEarliest() {
+        lock.lock();
+        try {
+            ensureOpen();
+            readPos = segments.firstKey();
+            count = countRecords(readPos, writePos);
+            saveReadPos();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return (int) Math.min(Integer.MAX_VALUE, count);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 未消费数据占用的字节数
+    public long backlogBytes() {
+        lock.lock();
+        try {
+            return writePos - readPos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 当前磁盘上的分段数量
+    public int segmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("队列已关闭：" + dir);
+        }
+    }
+
+    // ---------------- 刷盘与关闭 ----------------
+
+    /**
+     * 把页缓存中的数据和消费位置刷到磁盘；在锁外执行，不阻塞生产者和消费者
+     */
+    public void flush() {
+        List<MappedByteBuffer> toFlush;
+        lock.lock();
+        try {
+            toFlush = new ArrayList<>(segments.tailMap(baseOf(readPos)).values());
+        } finally {
+            lock.unlock();
+        }
+        for (MappedByteBuffer segment : toFlush) {
+            segment.force();
+        }
+        index.force();
+    }
+
+    private void runFlusher(long intervalMillis) {
+        while (true) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        lock.lock();
+        try {
+            closed = true;
+            segments.clear();
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "day2-persistent-queue");
+        deleteDirectory(dir);
+
+        // 第一次运行：写入 100000 条，消费 30000 条后关闭（模拟进程退出）
+        try (MappedPersistentQueue<Integer> queue = new MappedPersistentQueue<>(dir, INT_CODEC,
+                256 << 10, 64 << 20, 256 << 10, 500)) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < 100_000; i++) {
+                queue.produce(i);
+            }
+            long writeMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - t0);
+            for (int i = 0; i < 30_000; i++) {
+                queue.consume();
+            }
+            System.out.println("写入 100000 条耗时：" + writeMicros + " µs，消费 30000 条后剩余：" + queue.size()
+                    + "，分段数：" + queue.segmentCount());
+        }
+
+        // 重启：从上次的消费位置继续
+        try (MappedPersistentQueue<Integer> queue = new MappedPersistentQueue<>(dir, INT_CODEC,
+                256 << 10, 64 << 20, 256 << 10, 500)) {
+            System.out.println("重启后剩余：" + queue.size() + "，下一条：" + queue.tryPoll());
+            long sum = 0;
+            Integer value;
+            while ((value = queue.tryPoll()) != null) {
+                sum += value;
+            }
+            System.out.println("消费完毕，校验和：" + sum + "，剩余分段数：" + queue.segmentCount());
+
+            // 回放仍保留的历史分段
+            queue.rewindToEarliest();
+            ByteBuffer view = queue.tryPollView();
+            System.out.println("回放可读条数：" + (queue.size() + 1) + "，首条（零拷贝视图）：" + view.getInt());
+        }
+        deleteDirectory(dir);
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+}
@@ -2,32 +2,122 @@
 
 import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 
 // 缓冲区（共享资源）
 class Buffer {
     // 缓冲区最大容量，阻塞队列
     private final int MAx_CAPACITY=5;
     private final Queue<Integer> queue=new LinkedList<>();
+    // 运行统计（等待时间、占用、满/空次数），只在持有本对象监视器时修改
+    private final BufferStats stats=new BufferStats(MAx_CAPACITY);
 
     // 生产者方法（向缓冲区写入数据）
     // synchronized保证同一时间只能有同一个进程访问该方法，
     public synchronized void produce(int data) throws InterruptedException {
+        long waitStart=0;
+        if(queue.size()==MAx_CAPACITY){
+            stats.recordFull();
+            waitStart=System.nanoTime();
+        }
         while(queue.size()==MAx_CAPACITY){
             System.out.println("缓冲区已满，生产者["+Thread.currentThread().getName()+"]生产："+data+"，缓冲区大小："+queue.size());
             wait();     //释放锁，线程进入等待状态
         }
-        queue.add(data);
-        System.out.println("生产者["+Thread.currentThread().getName()+ "]生产：" + data + "，缓冲区大小：" + queue.size());
-        notifyAll();
+        enqueue(data, waitStart==0 ? 0 : System.nanoTime()-waitStart);
+    }
+
+    // 限时生产：超时仍未写入返回false
+    public synchronized boolean offer(int data, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline=System.nanoTime()+unit.toNanos(timeout);
+        long waitStart=0;
+        if(queue.size()==MAx_CAPACITY){
+            stats.recordFull();
+            waitStart=System.nanoTime();
+        }
+        while(queue.size()==MAx_CAPACITY){
+            long remaining=deadline-System.nanoTime();
+            if(remaining<=0){
+                stats.recordOfferTimeout();
+                System.out.println("缓冲区已满，生产者["+Thread.currentThread().getName()+"]等待超时，放弃："+data);
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        enqueue(data, waitStart==0 ? 0 : System.nanoTime()-waitStart);
+        return true;
+    }
+
+    // 非阻塞生产：缓冲区满立即返回false
+    public synchronized boolean tryOffer(int data) {
+        if(queue.size()==MAx_CAPACITY){
+            stats.recordFull();
+            stats.recordOfferTimeout();
+            return false;
+        }
+        enqueue(data, 0);
+        return true;
     }
 
     // 消费者方法（从缓冲区读出数据）
     public synchronized int consume() throws InterruptedException {
+        long waitStart=0;
+        if(queue.isEmpty()){
+            stats.recordEmpty();
+            waitStart=System.nanoTime();
+        }
         while(queue.isEmpty()){
             System.out.println("缓冲区为空，消费者[" + Thread.currentThread().getName() + "]阻塞");
             wait();     // 缓冲区为空则等待
         }
+        return dequeue(waitStart==0 ? 0 : System.nanoTime()-waitStart);
+    }
+
+    // 限时消费：超时仍无数据返回null
+    public synchronized Integer poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline=System.nanoTime()+unit.toNanos(timeout);
+        long waitStart=0;
+        if(queue.isEmpty()){
+            stats.recordEmpty();
+            waitStart=System.nanoTime();
+        }
+        while(queue.isEmpty()){
+            long remaining=deadline-System.nanoTime();
+            if(remaining<=0){
+                stats.recordPollTimeout();
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return dequeue(waitStart==0 ? 0 : System.nanoTime()-waitStart);
+    }
+
+    // 非阻塞消费：缓冲区空立即返回null
+    public synchronized Integer tryPoll() {
+        if(queue.isEmpty()){
+            stats.recordEmpty();
+            stats.recordPollTimeout();
+            return null;
+        }
+        return dequeue(0);
+    }
+
+    // 统计快照
+    public synchronized BufferStats.Snapshot stats() {
+        return stats.snapshot(queue.size());
+    }
+
+    // 以下两个方法只在synchronized方法内调用
+    private void enqueue(int data, long waitNanos) {
+        queue.add(data);
+        stats.recordProduce(waitNanos, queue.size());
+        System.out.println("生产者["+Thread.currentThread().getName()+ "]生产：" + data + "，缓冲区大小：" + queue.size());
+        notifyAll();
+    }
+
+    private int dequeue(long waitNanos) {
         int data=queue.poll();
+        stats.recordConsume(waitNanos, queue.size());
         System.out.println("消费者[" + Thread.currentThread().getName() + "]消费：" + data + "，缓冲区大小：" + queue.size());
         notifyAll();
         return data;
@@ -111,5 +201,8 @@ public class ProducerConsumer {
         producer2.interrupt();
         consumer1.interrupt();
         consumer2.interrupt();
+
+        System.out.println("\n===== 缓冲区统计 =====");
+        System.out.println(buffer.stats());
     }
 }
\ No newline at end of file
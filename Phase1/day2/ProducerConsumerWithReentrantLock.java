@@ -1,65 +1,16 @@
-import java.util.LinkedList;
-import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
-
-// 缓冲区（共享资源）
-class BufferWithLock {
-    private final int capacity;
-    private final Queue<Integer> queue;
-    private final ReentrantLock lock;
-    private final Condition notFull;
-    private final Condition notEmpty;
-
-    public BufferWithLock(int capacity) {
-        this.capacity = capacity;
-        this.queue = new LinkedList<>();
-        this.lock = new ReentrantLock(true);
-        this.notFull = lock.newCondition();
-        this.notEmpty = lock.newCondition();
-    }
-
-    public void produce(int data) throws InterruptedException {
-        lock.lock();
-        try {
-            while (queue.size() == capacity) {
-                System.out.println("缓冲区满，生产者等待 | 当前容量：" + queue.size());
-                notFull.await();
-            }
-            queue.offer(data);
-            System.out.println("生产数据：" + data + " | 当前缓冲区大小：" + queue.size());
-            notEmpty.signal();
-        } finally {
-            lock.unlock();
-        }
-    }
 
-    public void consume() throws InterruptedException {
-        lock.lock();
-        try {
-            while (queue.isEmpty()) {
-                System.out.println("缓冲区空，消费者等待 | 当前容量：" + queue.size());
-                notEmpty.await();
-            }
-            int data = queue.poll();
-            System.out.println("消费数据：" + data + " | 当前缓冲区大小：" + queue.size());
-            notFull.signal();
-        } finally {
-            lock.unlock();
-        }
-    }
-}
+// 缓冲区 BufferWithLock 定义在 BufferWithLock.java 中
 
 // 生产者线程
 class Producer implements Runnable {
-    private final BufferWithLock buffer;
+    private final BufferWithLock<Integer> buffer;
     private int data = 0;
     private volatile boolean stop = false;
 
-    public Producer(BufferWithLock buffer) {
+    public Producer(BufferWithLock<Integer> buffer) {
         this.buffer = buffer;
     }
 
@@ -85,10 +36,10 @@ class Producer implements Runnable {
 
 // 消费者线程
 class Consumer implements Runnable {
-    private final BufferWithLock buffer;
+    private final BufferWithLock<Integer> buffer;
     private volatile boolean stop = false;
 
-    public Consumer(BufferWithLock buffer) {
+    public Consumer(BufferWithLock<Integer> buffer) {
         this.buffer = buffer;
     }
 
@@ -114,7 +65,7 @@ class Consumer implements Runnable {
 public class ProducerConsumerWithReentrantLock {
     public static void main(String[] args) {
         // 1. 创建缓冲区（容量5）
-        BufferWithLock buffer = new BufferWithLock(5);
+        BufferWithLock<Integer> buffer = new BufferWithLock<>(5);
 
         // 2. 创建生产者、消费者实例
         Producer producer = new Producer(buffer);
@@ -154,6 +105,7 @@ public class ProducerConsumerWithReentrantLock {
             executor.shutdownNow();
         }
 
+        System.out.println("缓冲区统计：" + buffer.stats());
         System.out.println("程序执行完毕");
     }
 }
\ No newline at end of file
@@ -0,0 +1,390 @@
+// 多阶段流水线：source → N 个 transform 阶段 → sink
+// 每个阶段拥有独立的有界 BufferWithLock 和并行度；下游处理慢时其输入缓冲区写满，
+// 上游 produce() 随之阻塞，背压沿着有界缓冲区逐级传回 source。
+// 关闭使用毒丸（poison pill）：source 读完（或 stop()）后投放毒丸，
+// 每个阶段的最后一个工作线程退出时再向下一阶段投放毒丸，保证按阶段顺序排空。
+// 编译运行：javac StagedPipeline.java && java StagedPipeline（BufferWithLock.java 会被自动编译）
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class StagedPipeline {
+    // 毒丸：只在流水线内部流转，不会交给用户函数
+    private static final Object POISON = new Object();
+
+    private final String sourceName;
+    private final Iterator<?> source;
+    private final List<Stage> stages;
+    private final List<Thread> threads = new ArrayList<>();
+    private final CountDownLatch terminated;
+    private volatile boolean stopRequested = false;
+    // source 或某个阶段抛出的第一个致命错误
+    private volatile Throwable failure;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    private StagedPipeline(String sourceName, Iterator<?> source, List<Stage> stages) {
+        this.sourceName = sourceName;
+        this.source = source;
+        this.stages = Collections.unmodifiableList(new ArrayList<>(stages));
+        int threadCount = 1;
+        for (Stage stage : stages) {
+            threadCount += stage.parallelism;
+        }
+        this.terminated = new CountDownLatch(threadCount);
+    }
+
+    /**
+     * 以迭代器作为数据源开始构建流水线
+     * @param name 数据源名称（用作线程名）
+     * @param source 数据源，hasNext() 返回 false 即视为数据读完
+     */
+    public static <T> Builder<T> from(String name, Iterator<T> source) {
+        return new Builder<>(name, source, new ArrayList<>());
+    }
+
+    /**
+     * 流水线构建器：每调用一次 stage() 追加一个阶段，输出类型随之变化
+     */
+    public static final class Builder<T> {
+        private final String sourceName;
+        private final Iterator<?> source;
+        private final List<Stage> stages;
+
+        private Builder(String sourceName, Iterator<?> source, List<Stage> stages) {
+            this.sourceName = sourceName;
+            this.source = source;
+            this.stages = stages;
+        }
+
+        /**
+         * 追加一个转换阶段
+         * @param name 阶段名称
+         * @param parallelism 该阶段的工作线程数
+         * @param capacity 该阶段输入缓冲区的容量
+         * @param fn 转换函数，返回 null 表示丢弃该元素
+         */
+        @SuppressWarnings("unchecked")
+        public <R> Builder<R> stage(String name, int parallelism, int capacity, Function<? super T, ? extends R> fn) {
+            stages.add(new Stage(name, parallelism, capacity, (Function<Object, Object>) fn, false));
+            return new Builder<>(sourceName, source, stages);
+        }
+
+        /**
+         * 追加终点阶段并生成流水线（尚未启动）
+         */
+        @SuppressWarnings("unchecked")
+        public StagedPipeline sink(String name, int parallelism, int capacity, Consumer<? super T> sink) {
+            Consumer<Object> action = (Consumer<Object>) sink;
+            stages.add(new Stage(name, parallelism, capacity, item -> {
+                action.accept(item);
+                return null;
+            }, true));
+            for (int i = 0; i + 1 < stages.size(); i++) {
+                stages.get(i).next = stages.get(i + 1);
+            }
+            return new StagedPipeline(sourceName, source, stages);
+        }
+    }
+
+    // 阶段：输入缓冲区 + 处理函数 + 统计信息
+    private static final class Stage {
+        final String name;
+        final int parallelism;
+        final BufferWithLock<Object> input;
+        final Function<Object, Object> fn;
+        final boolean sink;
+        Stage next;
+
+        // 还在运行的工作线程数，归零时由最后一个线程向下游投放毒丸
+        final AtomicInteger liveWorkers;
+        final LongAdder processed = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        // 处理耗时 / 等待上游数据耗时 / 等待下游腾出空间（背压）耗时
+        final LongAdder busyNanos = new LongAdder();
+        final LongAdder starvedNanos = new LongAdder();
+        final LongAdder blockedNanos = new LongAdder();
+
+        Stage(String name, int parallelism, int capacity, Function<Object, Object> fn, boolean sink) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("阶段并行度必须大于0：" + name);
+            }
+            this.name = name;
+            this.parallelism = parallelism;
+            this.input = new BufferWithLock<>(capacity, false);
+            this.fn = fn;
+            this.sink = sink;
+            this.liveWorkers = new AtomicInteger(parallelism);
+        }
+    }
+
+    /**
+     * 启动 source 线程和各阶段的工作线程
+     */
+    public synchronized void start() {
+        if (!threads.isEmpty()) {
+            throw new IllegalStateException("流水线已经启动");
+        }
+        startNanos = System.nanoTime();
+        for (Stage stage : stages) {
+            for (int i = 0; i < stage.parallelism; i++) {
+                threads.add(new Thread(() -> runWorker(stage), stage.name + "-" + i));
+            }
+        }
+        threads.add(new Thread(this::runSource, sourceName));
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    /**
+     * 优雅停止：source 不再读取新数据，已进入流水线的数据会被全部处理完
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * 强制停止：中断所有线程，缓冲区中未处理的数据被丢弃
+     */
+    public synchronized void shutdownNow() {
+        stopRequested = true;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * 等待流水线排空并退出
+     * @return 超时前全部线程退出返回 true
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * source 抛出的异常或阶段函数抛出的 Error；流水线因此提前停止读取，没有时为 null
+     */
+    public Throwable failure() {
+        return failure;
+    }
+
+    private void fail(Throwable e) {
+        if (failure == null) {
+            failure = e;
+        }
+        stopRequested = true;
+    }
+
+    private void runSource() {
+        Stage first = stages.get(0);
+        boolean interrupted = false;
+        try {
+            while (!stopRequested && source.hasNext()) {
+                first.input.produce(source.next());
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+            Thread.currentThread().interrupt();
+            System.out.println("数据源线程被中断");
+        } catch (RuntimeException | Error e) {
+            // 数据源出错时同样投放毒丸，已进入流水线的数据照常排空，否则下游线程会一直阻塞
+            fail(e);
+            System.out.println("数据源读取失败：" + e);
+        } finally {
+            try {
+                if (!interrupted) {
+                    passPoison(first);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                terminated.countDown();
+            }
+        }
+    }
+
+    private void runWorker(Stage stage) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                long t0 = System.nanoTime();
+                Object item = stage.input.consume();
+                long t1 = System.nanoTime();
+                stage.starvedNanos.add(t1 - t0);
+                if (item == POISON) {
+                    break;
+                }
+
+                Object out = null;
+                try {
+                    out = stage.fn.apply(item);
+                } catch (RuntimeException e) {
+                    stage.errors.increment();
+                    System.out.println("阶段[" + stage.name + "]处理失败：" + item + "，原因：" + e);
+                } catch (Error e) {
+                    // Error 不再继续读取新数据，但本线程照常排空，保证毒丸能传到下游
+                    stage.errors.increment();
+                    fail(e);
+                    System.out.println("阶段[" + stage.name + "]严重错误，停止读取数据源：" + item + "，原因：" + e);
+                }
+                long t2 = System.nanoTime();
+                stage.busyNanos.add(t2 - t1);
+                stage.processed.increment();
+
+                if (out != null && !stage.sink) {
+                    stage.next.input.produce(out);
+                    stage.blockedNanos.add(System.nanoTime() - t2);
+                }
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+            Thread.currentThread().interrupt();
+            System.out.println("阶段[" + stage.name + "]工作线程被中断");
+        } finally {
+            try {
+                // 本阶段最后一个线程负责把毒丸传给下一阶段；被中断时不再传递
+                if (stage.liveWorkers.decrementAndGet() == 0) {
+                    if (!interrupted && !stage.sink) {
+                        passPoison(stage.next);
+                    }
+                    if (stage.sink) {
+                        endNanos = System.nanoTime();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                terminated.countDown();
+            }
+        }
+    }
+
+    // 每个工作线程取走一颗毒丸后退出，因此投放数量等于下游并行度
+    private static void passPoison(Stage stage) throws InterruptedException {
+        for (int i = 0; i < stage.parallelism; i++) {
+            stage.input.produce(POISON);
+        }
+    }
+
+    /**
+     * 各阶段指标快照
+     */
+    public List<StageMetrics> metrics() {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        long elapsed = Math.max(1, end - startNanos);
+        List<StageMetrics> result = new ArrayList<>(stages.size());
+        for (Stage stage : stages) {
+            result.add(new StageMetrics(stage, elapsed));
+        }
+        return result;
+    }
+
+    /**
+     * 利用率（处理耗时占线程总时间的比例）最高的阶段，即限制整体吞吐的瓶颈
+     */
+    public StageMetrics bottleneck() {
+        StageMetrics worst = null;
+        for (StageMetrics m : metrics()) {
+            if (worst == null || m.utilization > worst.utilization) {
+                worst = m;
+            }
+        }
+        return worst;
+    }
+
+    /**
+     * 单个阶段的指标
+     */
+    public static final class StageMetrics {
+        public final String name;
+        public final int parallelism;
+        public final int queueDepth;
+        public final int capacity;
+        public final long processed;
+        public final long errors;
+        // 每秒处理条数
+        public final double throughput;
+        // 处理 / 等待上游 / 等待下游 的时间占比（按 并行度 × 运行时长 归一化）
+        public final double utilization;
+        public final double starvedRatio;
+        public final double blockedRatio;
+
+        private StageMetrics(Stage stage, long elapsedNanos) {
+            double threadNanos = (double) elapsedNanos * stage.parallelism;
+            this.name = stage.name;
+            this.parallelism = stage.parallelism;
+            this.queueDepth = stage.input.size();
+            this.capacity = stage.input.capacity();
+            this.processed = stage.processed.sum();
+            this.errors = stage.errors.sum();
+            this.throughput = processed * 1e9 / elapsedNanos;
+            this.utilization = stage.busyNanos.sum() / threadNanos;
+            this.starvedRatio = stage.starvedNanos.sum() / threadNanos;
+            this.blockedRatio = stage.blockedNanos.sum() / threadNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("阶段[%s] 并行度=%d 队列=%d/%d 已处理=%d 失败=%d 吞吐=%.1f/s 忙碌=%.0f%% 等上游=%.0f%% 等下游=%.0f%%",
+                    name, parallelism, queueDepth, capacity, processed, errors, throughput,
+                    utilization * 100, starvedRatio * 100, blockedRatio * 100);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        // 数据源：生成 2000 个订单号
+        Iterator<Integer> orders = new Iterator<Integer>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < 2000;
+            }
+
+            @Override
+            public Integer next() {
+                return next++;
+            }
+        };
+
+        AtomicInteger delivered = new AtomicInteger();
+        StagedPipeline pipeline = StagedPipeline.from("source", orders)
+                .stage("parse", 1, 32, id -> "订单-" + id)
+                // 模拟耗时的外部调用，这一阶段会成为瓶颈
+                .stage("enrich", 4, 32, order -> {
+                    sleepQuietly(ThreadLocalRandom.current().nextInt(1, 4));
+                    return order + "-已校验";
+                })
+                .stage("price", 2, 32, order -> order + "-已定价")
+                .sink("store", 1, 32, order -> delivered.incrementAndGet());
+
+        pipeline.start();
+        while (!pipeline.awaitTermination(1, TimeUnit.SECONDS)) {
+            System.out.println("----- 运行中 -----");
+            pipeline.metrics().forEach(System.out::println);
+        }
+
+        System.out.println("\n===== 流水线已排空 =====");
+        pipeline.metrics().forEach(System.out::println);
+        System.out.println("送达条数：" + delivered.get());
+        System.out.println("瓶颈阶段：" + pipeline.bottleneck().name);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
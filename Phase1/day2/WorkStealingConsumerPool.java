@@ -0,0 +1,406 @@
+// 工作窃取（work-stealing）消费者池
+// ProducerConsumer 中多个消费者共用一个 Buffer 的监视器锁，消费者越多锁竞争越激烈。
+// 这里每个消费者拥有自己的双端队列：生产者把任务分散投递到各个队列（两次随机选择，挑较短的），
+// 消费者从自己队列头部取任务，自己空闲时从其他消费者队列尾部窃取（与 ForkJoinPool 思路一致）。
+// 后台调节线程按观察到的队列深度增减消费者数量。
+// 编译运行：javac WorkStealingConsumerPool.java && java WorkStealingConsumerPool
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+public class WorkStealingConsumerPool<T> {
+    // 消费者槽位状态
+    private static final int STOPPED = 0;
+    private static final int RUNNING = 1;
+    private static final int STOPPING = 2;
+
+    // 空转多少次后进入 park，以及每次 park 的最长时间
+    private static final int SPIN_TRIES = 64;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Slot<T>[] slots;
+    private final Consumer<? super T> handler;
+    private final int minConsumers;
+    private final int maxConsumers;
+    // 每个消费者本地队列的容量上限，两个候选队列都满时生产者等待
+    private final int slotCapacity;
+    // 当前活跃消费者数量：生产者只向 [0, activeCount) 投递，窃取则覆盖所有槽位
+    private volatile int activeCount;
+    private volatile boolean shutdown = false;
+    // 正在执行的 offer 数：先加 1 再检查 shutdown，消费者看到 shutdown 后还要等它归零才能退出，
+    // 否则检查通过、尚未入队的任务会在所有消费者退出后才放进队列，永远不被处理
+    private final AtomicInteger offering = new AtomicInteger();
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private final Thread scaler;
+    private final LongAdder failed = new LongAdder();
+
+    // 调节参数：平均每个消费者积压超过 growThreshold 扩容，连续 shrinkSamples 次低于 shrinkThreshold 缩容
+    private final int growThreshold;
+    private final int shrinkThreshold;
+    private final int shrinkSamples;
+    private final long sampleIntervalMillis;
+
+    // 消费者槽位：本地队列 + 线程 + 统计
+    private static final class Slot<T> {
+        final int index;
+        final ConcurrentLinkedDeque<T> deque = new ConcurrentLinkedDeque<>();
+        // ConcurrentLinkedDeque.size() 需要遍历，这里单独记录积压数
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicInteger state = new AtomicInteger(STOPPED);
+        final LongAdder processed = new LongAdder();
+        final LongAdder stolen = new LongAdder();
+        volatile Thread thread;
+        volatile boolean parked;
+
+        Slot(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * @param handler 任务处理函数
+     * @param minConsumers 最少消费者数
+     * @param maxConsumers 最多消费者数（通常取 CPU 核数）
+     * @param slotCapacity 每个消费者本地队列的容量
+     */
+    public WorkStealingConsumerPool(Consumer<? super T> handler, int minConsumers, int maxConsumers, int slotCapacity) {
+        this(handler, minConsumers, maxConsumers, slotCapacity, 64, 4, 5, 100);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public WorkStealingConsumerPool(Consumer<? super T> handler, int minConsumers, int maxConsumers, int slotCapacity,
+                                    int growThreshold, int shrinkThreshold, int shrinkSamples, long sampleIntervalMillis) {
+        if (minConsumers <= 0 || maxConsumers < minConsumers) {
+            throw new IllegalArgumentException("消费者数量配置错误：min=" + minConsumers + ", max=" + maxConsumers);
+        }
+        if (slotCapacity <= 0) {
+            throw new IllegalArgumentException("本地队列容量必须大于0：" + slotCapacity);
+        }
+        this.handler = handler;
+        this.minConsumers = minConsumers;
+        this.maxConsumers = maxConsumers;
+        this.slotCapacity = slotCapacity;
+        this.growThreshold = growThreshold;
+        this.shrinkThreshold = shrinkThreshold;
+        this.shrinkSamples = shrinkSamples;
+        this.sampleIntervalMillis = sampleIntervalMillis;
+
+        this.slots = new Slot[maxConsumers];
+        for (int i = 0; i < maxConsumers; i++) {
+            slots[i] = new Slot<>(i);
+        }
+        synchronized (this) {
+            for (int i = 0; i < minConsumers; i++) {
+                grow();
+            }
+        }
+        this.scaler = new Thread(this::runScaler, "consumer-pool-scaler");
+        this.scaler.setDaemon(true);
+        this.scaler.start();
+    }
+
+    /**
+     * 投递任务，候选队列都满时阻塞等待（背压）
+     */
+    public void submit(T task) throws InterruptedException {
+        while (!offer(task)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(PARK_NANOS / 10);
+        }
+    }
+
+    /**
+     * 非阻塞投递：随机挑两个活跃消费者，放入积压较少的那个；两个都满返回 false
+     */
+    public boolean offer(T task) {
+        if (task == null) {
+            throw new NullPointerException("任务不能为 null");
+        }
+        offering.incrementAndGet();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("消费者池已关闭");
+            }
+            int active = activeCount;
+            Slot<T> a = slots[Math.floorMod(roundRobin.getAndIncrement(), active)];
+            Slot<T> b = slots[ThreadLocalRandom.current().nextInt(active)];
+            Slot<T> target = a.pending.get() <= b.pending.get() ? a : b;
+            if (target.pending.get() >= slotCapacity) {
+                return false;
+            }
+            target.pending.incrementAndGet();
+            target.deque.addLast(task);
+            Thread owner = target.thread;
+            if (target.parked && owner != null) {
+                LockSupport.unpark(owner);
+            }
+            return true;
+        } finally {
+            offering.decrementAndGet();
+        }
+    }
+
+    private void runWorker(Slot<T> self) {
+        int idle = 0;
+        while (true) {
+            T task = self.deque.pollFirst();
+            Slot<T> from = self;
+            if (task == null) {
+                from = pickVictim(self);
+                task = from == null ? null : from.deque.pollLast();
+                if (task != null) {
+                    self.stolen.increment();
+                }
+            }
+
+            if (task != null) {
+                from.pending.decrementAndGet();
+                idle = 0;
+                try {
+                    handler.accept(task);
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    System.out.println("消费者[" + Thread.currentThread().getName() + "]处理失败：" + e);
+                }
+                self.processed.increment();
+                continue;
+            }
+
+            // 自己队列已空且没有可窃取的任务
+            if (self.state.get() == STOPPING && self.pending.get() == 0) {
+                if (self.state.compareAndSet(STOPPING, STOPPED)) {
+                    return;
+                }
+                continue; // 刚好被重新启用
+            }
+            // 先看没有进行中的 offer，再看积压：offer 结束前已把任务计入 pending
+            if (shutdown && offering.get() == 0 && totalPending() == 0) {
+                self.state.set(STOPPED);
+                return;
+            }
+            if (++idle < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                self.parked = true;
+                if (self.pending.get() == 0) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                self.parked = false;
+            }
+        }
+    }
+
+    // 从随机位置开始寻找一个有积压的其他槽位（包括已缩容但还残留任务的槽位）
+    private Slot<T> pickVictim(Slot<T> self) {
+        int start = ThreadLocalRandom.current().nextInt(maxConsumers);
+        for (int i = 0; i < maxConsumers; i++) {
+            Slot<T> candidate = slots[(start + i) % maxConsumers];
+            if (candidate != self && candidate.pending.get() > 0) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void runScaler() {
+        int quietSamples = 0;
+        while (!shutdown) {
+            try {
+                Thread.sleep(sampleIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (this) {
+                if (shutdown) {
+                    return;
+                }
+                long perConsumer = totalPending() / activeCount;
+                if (perConsumer > growThreshold && activeCount < maxConsumers) {
+                    grow();
+                    quietSamples = 0;
+                } else if (perConsumer < shrinkThreshold && activeCount > minConsumers) {
+                    if (++quietSamples >= shrinkSamples) {
+                        shrink();
+                        quietSamples = 0;
+                    }
+                } else {
+                    quietSamples = 0;
+                }
+            }
+        }
+    }
+
+    // 启用下一个槽位；槽位正在退出时直接把它拉回运行状态
+    private void grow() {
+        Slot<T> slot = slots[activeCount];
+        if (!slot.state.compareAndSet(STOPPING, RUNNING)) {
+            slot.state.set(RUNNING);
+            Thread thread = new Thread(() -> runWorker(slot), "consumer-" + slot.index);
+            slot.thread = thread;
+            thread.start();
+        }
+        activeCount++;
+    }
+
+    // 停用最后一个槽位：不再接收新任务，线程处理完本地队列后退出，残留任务会被其他消费者窃取
+    private void shrink() {
+        activeCount--;
+        Slot<T> slot = slots[activeCount];
+        slot.state.compareAndSet(RUNNING, STOPPING);
+        Thread thread = slot.thread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private long totalPending() {
+        long total = 0;
+        for (Slot<T> slot : slots) {
+            total += slot.pending.get();
+        }
+        return total;
+    }
+
+    /**
+     * 停止接收新任务，已投递的任务会全部处理完
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        scaler.interrupt();
+        for (Slot<T> slot : slots) {
+            Thread thread = slot.thread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Slot<T> slot : slots) {
+            Thread thread = slot.thread;
+            if (thread == null) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedJoin(thread, remaining);
+            if (thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int activeConsumers() {
+        return activeCount;
+    }
+
+    /**
+     * 当前状态：活跃消费者数、各队列积压、处理数和窃取数
+     */
+    public String stats() {
+        StringBuilder sb = new StringBuilder();
+        long processed = 0;
+        long stolen = 0;
+        sb.append("活跃消费者=").append(activeCount).append(" 积压=[");
+        for (int i = 0; i < slots.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(slots[i].pending.get());
+            processed += slots[i].processed.sum();
+            stolen += slots[i].stolen.sum();
+        }
+        sb.append("] 已处理=").append(processed)
+                .append(" 窃取=").append(stolen)
+                .append(" 失败=").append(failed.sum());
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int tasks = 400_000;
+        LongAdder checksum = new LongAdder();
+        Consumer<Integer> work = n -> checksum.add(simulateWork(n));
+
+        // 对照组：多个消费者共用一个有界阻塞队列（同一把锁）
+        BlockingQueue<Integer> shared = new ArrayBlockingQueue<>(1024);
+        Thread[] consumers = new Thread[cores];
+        for (int i = 0; i < cores; i++) {
+            consumers[i] = new Thread(() -> {
+                try {
+                    while (true) {
+                        int n = shared.take();
+                        if (n < 0) {
+                            return;
+                        }
+                        work.accept(n);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "shared-consumer-" + i);
+            consumers[i].start();
+        }
+        long t0 = System.nanoTime();
+        for (int i = 0; i < tasks; i++) {
+            shared.put(i);
+        }
+        for (int i = 0; i < cores; i++) {
+            shared.put(-1);
+        }
+        for (Thread consumer : consumers) {
+            consumer.join();
+        }
+        long sharedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+
+        // 工作窃取消费者池：从 1 个消费者起步，按积压自动扩容到核数
+        WorkStealingConsumerPool<Integer> pool = new WorkStealingConsumerPool<>(work, 1, cores, 1024);
+        long t1 = System.nanoTime();
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < tasks; i++) {
+                    pool.submit(i);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "producer");
+        producer.start();
+        while (producer.isAlive()) {
+            producer.join(200);
+            System.out.println(pool.stats());
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        long poolMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t1);
+
+        System.out.println("\n===== 对比结果（" + tasks + " 个任务，" + cores + " 核）=====");
+        System.out.println("共享队列：" + sharedMillis + " ms");
+        System.out.println("工作窃取池：" + poolMillis + " ms");
+        System.out.println(pool.stats());
+        System.out.println("校验和：" + checksum.sum());
+    }
+
+    // 模拟几微秒的 CPU 计算
+    private static long simulateWork(int n) {
+        long x = n;
+        for (int i = 0; i < 200; i++) {
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        }
+        return x & 1;
+    }
+}
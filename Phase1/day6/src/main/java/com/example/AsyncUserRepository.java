@@ -0,0 +1,181 @@
+package Phase1.day6.src.main.java.com.example;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// UserRepository 的异步版本：所有方法立即返回 CompletableFuture，JDBC 调用在专用线程池中执行
+// 线程数等于连接池大小，线程再多也只会在连接池上排队；等待队列有界，满了直接失败而不是无限堆积。
+// 调用方（例如 NIO 服务的事件循环线程）不会被阻塞，应在回调里处理结果，不要在事件循环中 join。
+// 失败时 future 以 DataAccessException（包装 SQLException）、TimeoutException 或 RejectedExecutionException 结束。
+public class AsyncUserRepository implements AutoCloseable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final long DEFAULT_QUEUE_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * 在数据库线程中执行的操作
+     */
+    public interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    private final UserRepository repository;
+    private final ThreadPoolExecutor executor;
+    // 只负责排队超时的计时，不执行数据库操作
+    private final ScheduledThreadPoolExecutor timer;
+    private final long queueTimeoutMillis;
+
+    /**
+     * 默认配置：线程数取自 DatabaseUtil 连接池的 maximumPoolSize
+     */
+    public AsyncUserRepository(UserRepository repository) {
+        this(repository, DatabaseUtil.poolStats().maximumPoolSize, DEFAULT_QUEUE_CAPACITY, DEFAULT_QUEUE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param threads 数据库线程数，应等于连接池大小
+     * @param queueCapacity 最多排队的请求数，超出时立即失败
+     * @param queueTimeoutMillis 请求排队超过该时间仍未开始执行则以 TimeoutException 失败
+     */
+    public AsyncUserRepository(UserRepository repository, int threads, int queueCapacity, long queueTimeoutMillis) {
+        if (threads <= 0 || queueCapacity <= 0 || queueTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("线程池参数不合法：threads=" + threads
+                    + ", queueCapacity=" + queueCapacity + ", queueTimeoutMillis=" + queueTimeoutMillis);
+        }
+        this.repository = repository;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), daemonThreads("user-db-"), new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.timer = new ScheduledThreadPoolExecutor(1, daemonThreads("user-db-timer-"));
+        // 请求结束时会取消计时；取消的计时立即从队列移除，否则请求多时队列里堆满等待到期的无效计时
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    public CompletableFuture<List<User>> findByName(String name) {
+        return submit(() -> repository.findByName(name));
+    }
+
+    public CompletableFuture<User> insert(User user) {
+        return submit(() -> repository.insert(user));
+    }
+
+    public CompletableFuture<UserRepository.BatchResult> insertBatch(List<User> users, int batchSize) {
+        return submit(() -> repository.insertBatch(users, batchSize));
+    }
+
+    /**
+     * 在数据库线程中流式遍历所有用户，handler 也在该线程中执行
+     * @return 处理的行数
+     */
+    public CompletableFuture<Long> forEachUser(UserRepository.UserHandler handler) {
+        return submit(() -> repository.forEachUser(UserRepository.STREAMING_FETCH_SIZE, handler));
+    }
+
+    /**
+     * 提交任意数据库操作。
+     * 返回的 future 被取消或排队超时后，如果操作还没开始就不会再执行；已经开始的操作会执行完，结果被丢弃。
+     */
+    public <T> CompletableFuture<T> submit(SqlCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Task<T> task = new Task<>(call, future);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        ScheduledFuture<?> timeout = timer.schedule(task::queueTimedOut, queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        // 无论以何种方式结束都取消计时；取消或超时的任务从队列中移除，不再占用排队名额
+        future.whenComplete((result, failure) -> {
+            timeout.cancel(false);
+            if (task.abandon()) {
+                executor.remove(task);
+            }
+        });
+        return future;
+    }
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int ABANDONED = 2;
+
+    private final class Task<T> implements Runnable {
+        private final SqlCall<T> call;
+        private final CompletableFuture<T> future;
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        Task(SqlCall<T> call, CompletableFuture<T> future) {
+            this.call = call;
+            this.future = future;
+        }
+
+        // 只有还在排队的任务可以放弃
+        boolean abandon() {
+            return state.compareAndSet(QUEUED, ABANDONED);
+        }
+
+        void queueTimedOut() {
+            if (abandon()) {
+                // 先移出队列再通知，调用方收到超时时排队名额已经释放
+                executor.remove(this);
+                future.completeExceptionally(new TimeoutException("排队超过 " + queueTimeoutMillis + " ms 未执行"));
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                return;
+            }
+            try {
+                future.complete(call.call());
+            } catch (SQLException e) {
+                future.completeExceptionally(new DataAccessException("数据库操作失败", e));
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    public int queuedRequests() {
+        return executor.getQueue().size();
+    }
+
+    public int activeRequests() {
+        return executor.getActiveCount();
+    }
+
+    // 尚未到期的排队超时计时数
+    int pendingTimeouts() {
+        return timer.getQueue().size();
+    }
+
+    /**
+     * 不再接受新请求，已排队的请求继续执行
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        timer.shutdown();
+    }
+}
@@ -0,0 +1,128 @@
+package Phase1.day6.src.main.java.com.example;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 按 setter 把结果集映射到 JavaBean
+// 类的 setter 只在第一次使用时查找一次，转成 MethodHandle 缓存；
+// bind 按结果集的列名把列下标和 setter 对应起来，之后每行按下标调用类型匹配的 getXxx 和 setter，
+// 不再按列名查找，也没有逐行反射，基本类型列不装箱。
+// 列名与属性名比较时忽略大小写和下划线，例如 user_name 对应 setUserName。
+public final class BeanRowMapper<T> {
+
+    private static final Map<Class<?>, BeanRowMapper<?>> CACHE = new ConcurrentHashMap<>();
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    // 规范化属性名 -> setter（已适配为 (Object, 参数类型)void）
+    private final Map<String, MethodHandle> setters = new HashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public static <T> BeanRowMapper<T> of(Class<T> type) {
+        return (BeanRowMapper<T>) CACHE.computeIfAbsent(type, BeanRowMapper::new);
+    }
+
+    private BeanRowMapper(Class<T> type) {
+        this.type = type;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            this.constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            for (Method method : type.getMethods()) {
+                if (method.getName().length() > 3 && method.getName().startsWith("set")
+                        && method.getParameterCount() == 1 && !Modifier.isStatic(method.getModifiers())) {
+                    Class<?> paramType = method.getParameterTypes()[0];
+                    MethodHandle setter = lookup.unreflect(method)
+                            .asType(MethodType.methodType(void.class, Object.class, paramType));
+                    setters.put(normalize(method.getName().substring(3)), setter);
+                }
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException(type.getName() + " 需要 public 无参构造方法和 setter", e);
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 按结果集的列解析出各列对应的 setter，每条查询调用一次
+     * 没有对应 setter 的列被忽略
+     */
+    public RowMapper<T> bind(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        List<Column> columns = new ArrayList<>();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            MethodHandle setter = setters.get(normalize(meta.getColumnLabel(i)));
+            if (setter != null) {
+                columns.add(column(i, setter));
+            }
+        }
+        Column[] bound = columns.toArray(new Column[0]);
+        return r -> {
+            try {
+                Object bean = constructor.invokeExact();
+                for (Column column : bound) {
+                    column.read(r, bean);
+                }
+                return type.cast(bean);
+            } catch (SQLException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new SQLException("映射 " + type.getSimpleName() + " 失败", e);
+            }
+        };
+    }
+
+    // 单列：从固定下标读取并调用 setter
+    private interface Column {
+        void read(ResultSet rs, Object bean) throws Throwable;
+    }
+
+    // 按 setter 参数类型选用对应的 getXxx，基本类型直接传递
+    private static Column column(int index, MethodHandle setter) {
+        Class<?> paramType = setter.type().parameterType(1);
+        if (paramType == long.class) {
+            return (rs, bean) -> {
+                setter.invokeExact(bean, rs.getLong(index));
+            };
+        }
+        if (paramType == int.class) {
+            return (rs, bean) -> {
+                setter.invokeExact(bean, rs.getInt(index));
+            };
+        }
+        if (paramType == double.class) {
+            return (rs, bean) -> {
+                setter.invokeExact(bean, rs.getDouble(index));
+            };
+        }
+        if (paramType == boolean.class) {
+            return (rs, bean) -> {
+                setter.invokeExact(bean, rs.getBoolean(index));
+            };
+        }
+        if (paramType == String.class) {
+            return (rs, bean) -> {
+                setter.invokeExact(bean, rs.getString(index));
+            };
+        }
+        MethodHandle generic = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (rs, bean) -> {
+            generic.invokeExact(bean, rs.getObject(index, paramType));
+        };
+    }
+}
@@ -0,0 +1,17 @@
+package Phase1.day6.src.main.java.com.example;
+
+import java.sql.SQLException;
+
+// 不能抛出受检异常的地方（Stream、回调、CompletableFuture）用它包装 SQLException
+public class DataAccessException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public DataAccessException(String message, SQLException cause) {
+        super(message, cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -1,17 +1,26 @@
 package Phase1.day6.src.main.java.com.example;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
 import java.io.InputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Properties;
 
+import javax.sql.DataSource;
+
 public class DatabaseUtil {
 
-    //数据库配置信息
-    private static String URL;
-    private static String USER;
-    private static String PASSWORD;
+    // 连接池配置项前缀：pool.xxx 对应 HikariConfig 的同名属性，pool.dataSource.xxx 传给 MySQL 驱动
+    private static final String POOL_PREFIX = "pool.";
+
+    // 连接池，取代每次调用都新建 TCP 连接和认证的 DriverManager
+    private static final HikariDataSource DATA_SOURCE;
+
+    // 按物理连接缓存的预编译语句
+    private static final StatementRegistry STATEMENTS = new StatementRegistry();
 
     static {
         try {
@@ -19,15 +28,27 @@ public class DatabaseUtil {
             InputStream input=DatabaseUtil.class.getClassLoader().getResourceAsStream("db.properties");
             props.load(input);
 
+            // 连接池配置
+            Properties poolProps=new Properties();
+            for(String key : props.stringPropertyNames()){
+                if(key.startsWith(POOL_PREFIX)){
+                    poolProps.setProperty(key.substring(POOL_PREFIX.length()), props.getProperty(key));
+                }
+            }
+            HikariConfig config=new HikariConfig(poolProps);
+
             // 获取配置信息
-            URL=props.getProperty("db.url");
-            USER=props.getProperty("db.username");
-            PASSWORD=props.getProperty("db.password");
+            config.setJdbcUrl(props.getProperty("db.url"));
+            config.setUsername(props.getProperty("db.username"));
+            config.setPassword(props.getProperty("db.password"));
+            config.setDriverClassName(props.getProperty("db.driver"));
+
+            DATA_SOURCE=new HikariDataSource(config);
 
-            // 加载数据库驱动
-            Class.forName(props.getProperty("db.driver"));
+            // JVM 退出时关闭连接池，归还服务端连接
+            Runtime.getRuntime().addShutdownHook(new Thread(DatabaseUtil::close, "db-pool-shutdown"));
 
-            System.out.println("数据库驱动加载成功");
+            System.out.println("数据库连接池初始化成功："+DATA_SOURCE.getPoolName());
         }
         catch(Exception e){
             e.printStackTrace();
@@ -35,8 +56,61 @@ public class DatabaseUtil {
         }
     }
 
-    // 获取数据库连接
+    /**
+     * 连接池运行指标快照
+     */
+    public static class PoolStats {
+        public final int active;
+        public final int idle;
+        public final int total;
+        public final int threadsAwaiting;
+        public final int maximumPoolSize;
+
+        PoolStats(int active, int idle, int total, int threadsAwaiting, int maximumPoolSize) {
+            this.active = active;
+            this.idle = idle;
+            this.total = total;
+            this.threadsAwaiting = threadsAwaiting;
+            this.maximumPoolSize = maximumPoolSize;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("连接池{使用中=%d 空闲=%d 总数=%d/%d 等待线程=%d}",
+                    active, idle, total, maximumPoolSize, threadsAwaiting);
+        }
+    }
+
+    // 从连接池获取数据库连接，close() 时归还到池中而不是真正断开
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        return DATA_SOURCE.getConnection();
+    }
+
+    // 供需要 DataSource 的代码使用
+    public static DataSource getDataSource() {
+        return DATA_SOURCE;
+    }
+
+    // 预编译语句登记表，返回的语句不要关闭
+    public static StatementRegistry statements() {
+        return STATEMENTS;
+    }
+
+    public static PoolStats poolStats() {
+        HikariPoolMXBean pool=DATA_SOURCE.getHikariPoolMXBean();
+        if(pool==null){
+            return new PoolStats(0, 0, 0, 0, DATA_SOURCE.getMaximumPoolSize());
+        }
+        return new PoolStats(pool.getActiveConnections(), pool.getIdleConnections(),
+                pool.getTotalConnections(), pool.getThreadsAwaitingConnection(), DATA_SOURCE.getMaximumPoolSize());
+    }
+
+    // 关闭连接池，可重复调用
+    public static void close() {
+        if(!DATA_SOURCE.isClosed()){
+            STATEMENTS.clear();
+            DATA_SOURCE.close();
+            System.out.println("数据库连接池已关闭");
+        }
     }
 }
@@ -5,8 +5,23 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 class testJdbc{
+    // 按姓名查询的读穿透缓存，repository 写入用户时自动失效
+    private final UserNameCache userCache;
+
+    public testJdbc(UserRepository repository){
+        this.userCache = new UserNameCache(repository);
+    }
+
+    public UserNameCache.Stats cacheStats(){
+        return userCache.stats();
+    }
+
     // 测试链接
     public void testConnection(){
 
@@ -22,17 +37,18 @@ class testJdbc{
 
         try{
             conn=DatabaseUtil.getConnection();
-            stmt =conn.createStatement();
+            // 只进只读 + 流式 fetchSize：结果逐行从服务端读取，不会整表缓存在客户端
+            stmt =conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(UserRepository.STREAMING_FETCH_SIZE);
 
             String sql ="select id, name, email from users;";
             rs=stmt.executeQuery(sql);
 
+            // 列下标只解析一次，之后每行按下标读取
+            RowMapper<User> mapper=BeanRowMapper.of(User.class).bind(rs);
             while(rs.next()){
-                int id=rs.getInt("id");
-                String name=rs.getString("name");
-                String email=rs.getString("email");
-
-                System.out.printf("ID: %d, 姓名: %s, 邮箱: %s%n", id, name, email);
+                User user=mapper.map(rs);
+                System.out.printf("ID: %d, 姓名: %s, 邮箱: %s%n", user.getId(), user.getName(), user.getEmail());
             }
         }
         catch(SQLException e){
@@ -53,22 +69,27 @@ class testJdbc{
         System.out.println("插入用户："+name);
 
         Connection conn=null;
-        Statement stmt=null;
+        PreparedStatement pstmt=null;
 
         try{
             conn=DatabaseUtil.getConnection();
-            stmt =conn.createStatement();
 
-            String sql=String.format("insert into users (name, email) values ('%s', '%s')", name, email);
-            
+            // 使用PreparedStatement传参，姓名和邮箱不会被拼进SQL，避免注入
+            String sql="insert into users (name, email) values (?, ?)";
+            pstmt =conn.prepareStatement(sql);
+            pstmt.setString(1, name);
+            pstmt.setString(2, email);
+
             System.out.println("执行SQL插入操作："+sql);
 
-            int rows=stmt.executeUpdate(sql);
+            int rows=pstmt.executeUpdate();
             System.out.println("插入成功，影响行数："+rows);
+            // 该姓名的缓存结果（包括“查无此人”）已经过期
+            userCache.invalidate(name);
         }
         catch(SQLException e){
-            // 检查是否是重复数据错误
-            if (e.getMessage().contains("Duplicate entry"))
+            // 按错误码判断是否是重复数据错误
+            if (UserRepository.isDuplicateKey(e))
                 System.out.println("插入失败：邮箱 '" + email + "' 已存在！");
             else 
                 System.out.println("插入失败：" + e.getMessage());
@@ -76,7 +97,7 @@ class testJdbc{
         }
         finally{
             try{
-                if(stmt!=null)  stmt.close();
+                if(pstmt!=null)  pstmt.close();
                 if(conn!=null)  conn.close();
             }
             catch(SQLException e){
@@ -88,44 +109,19 @@ class testJdbc{
     public void queryUserByName(String userName){
         System.out.println("查询用户："+userName);
 
-        Connection conn = null;
-        PreparedStatement pstmt=null;
-        ResultSet rs=null;
-
         try{
-            conn =DatabaseUtil.getConnection();
-
-            // 使用PreparedStatement防止SQL注入
-            String sql="select id, name, email from users where name=?";
-            pstmt =conn.prepareStatement(sql);
-            pstmt.setString(1, userName);
-            rs=pstmt.executeQuery();
-
-            boolean found=false;
-            while(rs.next()){
-                found=true;
-                int id=rs.getInt("id");
-                String name=rs.getString("name");
-                String email=rs.getString("email");
-                System.out.printf("找到用户 - ID：%d姓名：%s，邮箱：%s%n",id, name, email);
+            // 先查缓存，未命中时才访问数据库
+            List<User> users=userCache.get(userName);
+            for(User user : users){
+                System.out.printf("找到用户 - ID：%d姓名：%s，邮箱：%s%n",user.getId(), user.getName(), user.getEmail());
             }
-            if(!found){
+            if(users.isEmpty()){
                 System.out.printf("为找到用户：%s",userName);
             }
         }
         catch(SQLException e){
             e.printStackTrace();
         }
-        finally{
-            try{
-                if(rs!=null)    rs.close();
-                if(pstmt!=null)     pstmt.close();
-                if(conn!=null)  conn.close();
-            }
-            catch(SQLException e){
-                e.printStackTrace();
-            }
-        }
     } 
 }
 
@@ -134,7 +130,8 @@ public class MainApp {
     public static void main(String[] args) {
         System.out.println("===== MySQL JDBC 程序 =====");
         
-        testJdbc testjdbc = new testJdbc();
+        UserRepository repository = new UserRepository();
+        testJdbc testjdbc = new testJdbc(repository);
         // 查询数据
         testjdbc.queryUsers();
         System.out.println();
@@ -148,11 +145,79 @@ public class MainApp {
         testjdbc.insertUser("吴七", "wuqi@example.com");
         System.out.println();
         
+        // 批量插入：一个批次一次往返，重复邮箱逐行报告
+        try {
+            List<User> users = new ArrayList<>();
+            for (int i = 1; i <= 10; i++) {
+                users.add(new User("批量用户" + i, "batch" + i + "@example.com"));
+            }
+            users.add(new User("重复用户", "zhaoliu@example.com"));
+            UserRepository.BatchResult result = repository.insertBatch(users, 4);
+            System.out.println(result);
+            for (UserRepository.RowFailure failure : result.getFailures()) {
+                System.out.println(failure);
+            }
+        } catch (SQLException e) {
+            System.out.println("批量插入失败：" + e.getMessage());
+        }
+        System.out.println();
+
         // 再次查询
         testjdbc.queryUsers();
         System.out.println();
+
+        // 流式统计：整表扫描只占用恒定内存
+        try (Stream<User> users = repository.streamAll()) {
+            long exampleUsers = users.filter(u -> u.getEmail().endsWith("@example.com")).count();
+            System.out.println("example.com 邮箱用户数：" + exampleUsers);
+        } catch (SQLException | DataAccessException e) {
+            System.out.println("流式查询失败：" + e.getMessage());
+        }
+        System.out.println();
         
-        // 使用预编译语句查询
+        // 游标分页：按姓名排序，每页 3 条，每一页都从索引上直接定位
+        try {
+            try (Connection conn = DatabaseUtil.getConnection()) {
+                List<String> created = UserSchema.ensureIndexes(conn);
+                if (!created.isEmpty()) {
+                    System.out.println("新建索引：" + created);
+                }
+                UserSchema.checkPagePlans(conn);
+            }
+            String cursor = null;
+            int pageNo = 0;
+            do {
+                Page<User> page = repository.findPage(UserRepository.SortKey.NAME, false, cursor, 3);
+                System.out.println("第" + (++pageNo) + "页：" + page.getItems());
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+        } catch (SQLException e) {
+            System.out.println("分页查询失败：" + e.getMessage());
+        }
+        System.out.println();
+
+        // 使用预编译语句查询，第二次直接命中缓存
         testjdbc.queryUserByName("张三");
+        System.out.println();
+        testjdbc.queryUserByName("张三");
+        System.out.println();
+        System.out.println(testjdbc.cacheStats());
+        System.out.println();
+
+        // 异步查询：调用线程不阻塞，结果在回调中处理
+        try (AsyncUserRepository async = new AsyncUserRepository(repository)) {
+            CompletableFuture<Void> done = async.insert(new User("孙八", "sunba@example.com"))
+                    .thenCompose(user -> async.findByName(user.getName()))
+                    .thenAccept(users -> System.out.println("异步查询结果：" + users))
+                    .exceptionally(e -> {
+                        System.out.println("异步操作失败：" + e.getCause().getMessage());
+                        return null;
+                    });
+            done.join();
+        }
+        System.out.println();
+
+        System.out.println(DatabaseUtil.poolStats());
+        System.out.println(DatabaseUtil.statements());
     }
 }
\ No newline at end of file
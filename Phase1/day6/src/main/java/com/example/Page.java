@@ -0,0 +1,34 @@
+package Phase1.day6.src.main.java.com.example;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一页查询结果；nextCursor 传给下一次查询即可取得下一页，没有下一页时为 null
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final String nextCursor;
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{" + items.size() + " 条" + (hasNext() ? "，有下一页" : "，最后一页") + "}";
+    }
+}
@@ -0,0 +1,11 @@
+package Phase1.day6.src.main.java.com.example;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 把结果集当前行转换成对象；列下标在创建时已经确定，每行只按下标读取
+ */
+public interface RowMapper<T> {
+    T map(ResultSet rs) throws SQLException;
+}
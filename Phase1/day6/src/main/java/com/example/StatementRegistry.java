@@ -0,0 +1,104 @@
+package Phase1.day6.src.main.java.com.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// 按物理连接缓存 PreparedStatement：同一条 SQL 在每个池化连接上只预编译一次，之后直接复用
+// 连接池每次借出的都是新的代理对象，对代理 prepareStatement 后 close 会真正关闭语句；
+// 这里 unwrap 出底层物理连接，语句挂在物理连接上，随连接一起被连接池淘汰。
+// 返回的语句归登记表所有，调用方只能关闭 ResultSet，不能关闭语句本身；
+// 同一时刻一个连接只被一个线程借用，所以每个连接内的缓存（包括按访问顺序调整的 get）只由借用它的线程访问，不需要加锁；
+// 其他线程不能遍历或关闭这些缓存，clear 只丢弃引用，语句随物理连接一起由连接池关闭。
+public class StatementRegistry {
+
+    // 每个连接最多缓存的语句数，超出时关闭最久未用的
+    private static final int MAX_STATEMENTS_PER_CONNECTION = 64;
+
+    // 物理连接 -> (SQL -> 语句)；语句引用着连接，用 WeakHashMap 也无法回收，所以登记新连接时顺带清理已关闭的连接
+    private final Map<Connection, Map<String, PreparedStatement>> byConnection = new IdentityHashMap<>();
+
+    private final LongAdder prepared = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+
+    /**
+     * 取得该连接上 sql 对应的语句，参数已清空
+     * @param conn 从连接池借出的连接，用完照常 close 归还
+     */
+    public PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        Connection physical = conn.unwrap(Connection.class);
+        Map<String, PreparedStatement> statements = statementsFor(physical);
+        PreparedStatement pstmt = statements.get(sql);
+        if (pstmt != null && !pstmt.isClosed()) {
+            pstmt.clearParameters();
+            reused.increment();
+            return pstmt;
+        }
+        pstmt = physical.prepareStatement(sql);
+        statements.put(sql, pstmt);
+        prepared.increment();
+        return pstmt;
+    }
+
+    private synchronized Map<String, PreparedStatement> statementsFor(Connection physical) {
+        Map<String, PreparedStatement> statements = byConnection.get(physical);
+        if (statements == null) {
+            byConnection.keySet().removeIf(StatementRegistry::isClosed);
+            statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= MAX_STATEMENTS_PER_CONNECTION) {
+                        return false;
+                    }
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+            };
+            byConnection.put(physical, statements);
+        }
+        return statements;
+    }
+
+    private static boolean isClosed(Connection conn) {
+        try {
+            return conn.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement pstmt) {
+        try {
+            pstmt.close();
+        } catch (SQLException e) {
+            // 语句所在的连接可能已经断开，忽略
+        }
+    }
+
+    /**
+     * 丢弃所有缓存的语句，连接池关闭前调用
+     * 不在这里关闭语句：其他线程可能正借用着连接、使用着其中的语句；关闭物理连接时驱动会关闭它上面的全部语句
+     */
+    public synchronized void clear() {
+        byConnection.clear();
+    }
+
+    public long preparedCount() {
+        return prepared.sum();
+    }
+
+    public long reusedCount() {
+        return reused.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("语句缓存{预编译=%d 复用=%d}", preparedCount(), reusedCount());
+    }
+}
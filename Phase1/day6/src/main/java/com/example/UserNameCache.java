@@ -0,0 +1,328 @@
+package Phase1.day6.src.main.java.com.example;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 按姓名查询用户的读穿透缓存
+// 容量有界，按分段 LRU（SLRU）淘汰：新条目先进入试用区，再次命中才晋升到保护区，一次性扫描不会冲掉热点数据；
+// 条目有过期时间，查不到的姓名也缓存（时间更短），避免反复打到数据库；
+// 同一个姓名的并发未命中只触发一次加载，其余线程等待同一个结果；写入该姓名的用户时失效对应条目。
+public class UserNameCache {
+
+    /**
+     * 缓存未命中时的加载方法
+     */
+    public interface Loader {
+        List<User> load(String name) throws SQLException;
+    }
+
+    // 分片数，各分片独立加锁
+    private static final int SHARDS = 16;
+    // 保护区占分片容量的比例
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final Loader loader;
+    private final Shard[] shards;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    // 正在加载的姓名，用于合并并发的未命中
+    private final ConcurrentHashMap<String, CompletableFuture<List<User>>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static final class Entry {
+        final List<User> users;
+        final long expireAt;
+
+        Entry(List<User> users, long expireAt) {
+            this.users = users;
+            this.expireAt = expireAt;
+        }
+    }
+
+    private final class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        // 两个区都按插入顺序排列，表头是最久未使用的条目
+        final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>();
+        final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>();
+        final int capacity;
+        final int protectedCapacity;
+        // 每次失效加 1；加载开始后发生过失效，加载结果就不再写入缓存，避免写回旧数据
+        long epoch;
+
+        Shard(int capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = Math.max(1, (int) (capacity * PROTECTED_RATIO));
+        }
+
+        Entry get(String name, long now) {
+            lock.lock();
+            try {
+                Entry entry = protectedSegment.get(name);
+                if (entry != null) {
+                    if (entry.expireAt - now <= 0) {
+                        protectedSegment.remove(name);
+                        return null;
+                    }
+                    // 移到表尾，成为最近使用
+                    protectedSegment.remove(name);
+                    protectedSegment.put(name, entry);
+                    return entry;
+                }
+                entry = probation.remove(name);
+                if (entry == null || entry.expireAt - now <= 0) {
+                    return null;
+                }
+                // 试用区再次命中，晋升到保护区；保护区满时把最久未使用的降回试用区
+                protectedSegment.put(name, entry);
+                if (protectedSegment.size() > protectedCapacity) {
+                    Iterator<Map.Entry<String, Entry>> it = protectedSegment.entrySet().iterator();
+                    Map.Entry<String, Entry> eldest = it.next();
+                    it.remove();
+                    probation.put(eldest.getKey(), eldest.getValue());
+                }
+                return entry;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(String name, Entry entry, long loadEpoch) {
+            lock.lock();
+            try {
+                if (epoch != loadEpoch) {
+                    return;
+                }
+                protectedSegment.remove(name);
+                probation.remove(name);
+                probation.put(name, entry);
+                while (probation.size() + protectedSegment.size() > capacity) {
+                    LinkedHashMap<String, Entry> victims = probation.isEmpty() ? protectedSegment : probation;
+                    Iterator<String> it = victims.keySet().iterator();
+                    it.next();
+                    it.remove();
+                    evictions.increment();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long epoch() {
+            lock.lock();
+            try {
+                return epoch;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void invalidate(String name) {
+            lock.lock();
+            try {
+                epoch++;
+                probation.remove(name);
+                protectedSegment.remove(name);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                epoch++;
+                probation.clear();
+                protectedSegment.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return probation.size() + protectedSegment.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 缓存运行指标快照
+     */
+    public static class Stats {
+        public final long hits;
+        public final long negativeHits;
+        public final long misses;
+        public final long loads;
+        public final long loadFailures;
+        public final long evictions;
+        public final double averageLoadMillis;
+        public final int size;
+
+        Stats(long hits, long negativeHits, long misses, long loads, long loadFailures, long evictions,
+              double averageLoadMillis, int size) {
+            this.hits = hits;
+            this.negativeHits = negativeHits;
+            this.misses = misses;
+            this.loads = loads;
+            this.loadFailures = loadFailures;
+            this.evictions = evictions;
+            this.averageLoadMillis = averageLoadMillis;
+            this.size = size;
+        }
+
+        // 命中率：命中次数 / 请求次数（含缓存的“查无此人”）
+        public double hitRatio() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("缓存{条目=%d 命中率=%.1f%% 命中=%d（其中空结果 %d） 未命中=%d 加载=%d 失败=%d 淘汰=%d 平均加载=%.2f ms}",
+                    size, hitRatio() * 100, hits, negativeHits, misses, loads, loadFailures, evictions, averageLoadMillis);
+        }
+    }
+
+    /**
+     * 默认配置：1 万个姓名、5 分钟过期、空结果 30 秒过期，从 UserRepository 加载并在其写入时失效
+     */
+    public UserNameCache(UserRepository repository) {
+        this(repository::findByName, 10_000, TimeUnit.MINUTES.toMillis(5), TimeUnit.SECONDS.toMillis(30));
+        repository.addInsertListener(user -> invalidate(user.getName()));
+    }
+
+    /**
+     * @param maximumSize 最多缓存的姓名数
+     * @param ttlMillis 有结果的条目的过期时间
+     * @param negativeTtlMillis 查无此人的条目的过期时间，0 表示不缓存空结果
+     */
+    public UserNameCache(Loader loader, int maximumSize, long ttlMillis, long negativeTtlMillis) {
+        if (maximumSize < SHARDS || ttlMillis <= 0 || negativeTtlMillis < 0) {
+            throw new IllegalArgumentException("缓存参数不合法：maximumSize=" + maximumSize
+                    + ", ttlMillis=" + ttlMillis + ", negativeTtlMillis=" + negativeTtlMillis);
+        }
+        this.loader = loader;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        this.shards = new Shard[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard(maximumSize / SHARDS);
+        }
+    }
+
+    private Shard shardFor(String name) {
+        int h = name.hashCode();
+        return shards[(h ^ (h >>> 16)) & (SHARDS - 1)];
+    }
+
+    /**
+     * 查询该姓名的所有用户；未命中时加载，同一姓名的并发加载只执行一次
+     * @return 不可修改的列表，没有该用户时为空列表
+     */
+    public List<User> get(String name) throws SQLException {
+        Shard shard = shardFor(name);
+        Entry entry = shard.get(name, System.nanoTime());
+        if (entry != null) {
+            hits.increment();
+            if (entry.users.isEmpty()) {
+                negativeHits.increment();
+            }
+            return entry.users;
+        }
+        misses.increment();
+
+        CompletableFuture<List<User>> mine = new CompletableFuture<>();
+        CompletableFuture<List<User>> existing = inFlight.putIfAbsent(name, mine);
+        if (existing != null) {
+            return await(existing, name);
+        }
+        try {
+            long loadEpoch = shard.epoch();
+            long start = System.nanoTime();
+            List<User> users;
+            try {
+                users = Collections.unmodifiableList(loader.load(name));
+            } catch (SQLException | RuntimeException e) {
+                loadFailures.increment();
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                loads.increment();
+                loadNanos.add(System.nanoTime() - start);
+            }
+            long ttl = users.isEmpty() ? negativeTtlNanos : ttlNanos;
+            if (ttl > 0) {
+                shard.put(name, new Entry(users, System.nanoTime() + ttl), loadEpoch);
+            }
+            mine.complete(users);
+            return users;
+        } finally {
+            inFlight.remove(name, mine);
+        }
+    }
+
+    private static List<User> await(CompletableFuture<List<User>> future, String name) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待加载用户 " + name + " 时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                SQLException sqlCause = (SQLException) cause;
+                throw new SQLException(sqlCause.getMessage(), sqlCause.getSQLState(), sqlCause.getErrorCode(), sqlCause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * 失效该姓名的缓存；正在进行的加载结果也不会再写入缓存
+     */
+    public void invalidate(String name) {
+        shardFor(name).invalidate(name);
+        inFlight.remove(name);
+    }
+
+    public void invalidateAll() {
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+        inFlight.clear();
+    }
+
+    public Stats stats() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size();
+        }
+        long loadCount = loads.sum();
+        double averageLoadMillis = loadCount == 0 ? 0 : loadNanos.sum() / 1e6 / loadCount;
+        return new Stats(hits.sum(), negativeHits.sum(), misses.sum(), loadCount, loadFailures.sum(),
+                evictions.sum(), averageLoadMillis, size);
+    }
+}
@@ -0,0 +1,540 @@
+package Phase1.day6.src.main.java.com.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.sql.DataSource;
+
+// users 表的数据访问：批量写入、按姓名查询、游标分页、流式查询
+public class UserRepository {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    // MySQL 驱动默认把整个结果集读进客户端内存；fetchSize 为 Integer.MIN_VALUE 时逐行从网络读取
+    // 其他正数 fetchSize 需要连接参数 useCursorFetch=true，由服务端游标每次返回一批
+    public static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final String INSERT_SQL = "insert into users (name, email) values (?, ?)";
+    private static final String SELECT_ALL_SQL = "select id, name, email from users";
+    private static final String SELECT_BY_NAME_SQL = "select id, name, email from users where name = ?";
+
+    private static final byte CURSOR_VERSION = 2;
+
+    // MySQL 唯一键冲突的错误码（ER_DUP_ENTRY）和 SQL 标准的唯一约束冲突 SQLState
+    private static final int MYSQL_DUPLICATE_ENTRY = 1062;
+    private static final String UNIQUE_VIOLATION_STATE = "23505";
+
+    private static final BeanRowMapper<User> USER_MAPPER = BeanRowMapper.of(User.class);
+
+    private final DataSource dataSource;
+    private final StatementRegistry statements;
+    // 写入成功（已提交）后逐行通知，缓存据此失效
+    private final List<Consumer<User>> insertListeners = new CopyOnWriteArrayList<>();
+
+    public UserRepository() {
+        this(DatabaseUtil.getDataSource(), DatabaseUtil.statements());
+    }
+
+    public UserRepository(DataSource dataSource) {
+        this(dataSource, new StatementRegistry());
+    }
+
+    public UserRepository(DataSource dataSource, StatementRegistry statements) {
+        this.dataSource = dataSource;
+        this.statements = statements;
+    }
+
+    public void addInsertListener(Consumer<User> listener) {
+        insertListeners.add(listener);
+    }
+
+    private void fireInserted(User user) {
+        for (Consumer<User> listener : insertListeners) {
+            listener.accept(user);
+        }
+    }
+
+    /**
+     * 单行写入失败的原因
+     */
+    public enum FailureReason {
+        // 唯一键冲突，例如邮箱已存在
+        DUPLICATE,
+        OTHER
+    }
+
+    /**
+     * 单行写入失败
+     */
+    public static class RowFailure {
+        // 在输入中的位置，从 0 开始
+        public final long index;
+        public final User user;
+        public final FailureReason reason;
+        public final SQLException cause;
+
+        RowFailure(long index, User user, FailureReason reason, SQLException cause) {
+            this.index = index;
+            this.user = user;
+            this.reason = reason;
+            this.cause = cause;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("第%d行 %s 写入失败（%s）：%s", index, user.getEmail(),
+                    reason == FailureReason.DUPLICATE ? "邮箱已存在" : "其他错误", cause.getMessage());
+        }
+    }
+
+    /**
+     * 批量写入结果
+     */
+    public static class BatchResult {
+        private long inserted;
+        private long chunks;
+        private final List<RowFailure> failures = new ArrayList<>();
+
+        public long getInserted() {
+            return inserted;
+        }
+
+        public long getChunks() {
+            return chunks;
+        }
+
+        public List<RowFailure> getFailures() {
+            return Collections.unmodifiableList(failures);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("批量写入完成：成功 %d 行，失败 %d 行，共 %d 个批次", inserted, failures.size(), chunks);
+        }
+    }
+
+    // 判断是否为唯一键冲突，不依赖错误信息文本：
+    // MySQL 的所有完整性约束错误 SQLState 都是 23000，需要用错误码 1062 区分；其他数据库用标准的 23505
+    public static boolean isDuplicateKey(SQLException e) {
+        if (e.getErrorCode() == MYSQL_DUPLICATE_ENTRY || UNIQUE_VIOLATION_STATE.equals(e.getSQLState())) {
+            return true;
+        }
+        // 驱动没有提供错误码时，只能按异常类型判断
+        return e instanceof SQLIntegrityConstraintViolationException && e.getErrorCode() == 0;
+    }
+
+    /**
+     * 写入单个用户并回填自增 id；唯一键冲突时抛出 SQLException，可用 isDuplicateKey 判断
+     */
+    public User insert(User user) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            bind(pstmt, user);
+            pstmt.executeUpdate();
+            fillGeneratedKeys(pstmt, Collections.singletonList(user), 0);
+        }
+        fireInserted(user);
+        return user;
+    }
+
+    public BatchResult insertBatch(Iterable<User> users) throws SQLException {
+        return insertBatch(users.iterator(), DEFAULT_BATCH_SIZE);
+    }
+
+    public BatchResult insertBatch(Iterable<User> users, int batchSize) throws SQLException {
+        return insertBatch(users.iterator(), batchSize);
+    }
+
+    // 流式输入：按批次从流中取数据，不会一次性把整个流读进内存
+    public BatchResult insertBatch(Stream<User> users, int batchSize) throws SQLException {
+        return insertBatch(users.iterator(), batchSize);
+    }
+
+    /**
+     * 按 batchSize 分批写入，每批一个事务；一批中有行失败时回滚该批并逐行重试，
+     * 把失败的行逐条记录到结果中，其余行照常写入。
+     * 配合连接参数 rewriteBatchedStatements=true，驱动会把一批 insert 改写成多行 values 的单条语句。
+     * 写入成功的 User 会回填自增 id。
+     */
+    public BatchResult insertBatch(Iterator<User> users, int batchSize) throws SQLException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("批次大小必须大于0：" + batchSize);
+        }
+        BatchResult result = new BatchResult();
+        List<User> chunk = new ArrayList<>(batchSize);
+        long chunkStart = 0;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                while (users.hasNext()) {
+                    chunk.add(users.next());
+                    if (chunk.size() == batchSize || !users.hasNext()) {
+                        writeChunk(conn, pstmt, chunk, chunkStart, result);
+                        chunkStart += chunk.size();
+                        chunk.clear();
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+        return result;
+    }
+
+    private void writeChunk(Connection conn, PreparedStatement pstmt, List<User> chunk, long chunkStart,
+                            BatchResult result) throws SQLException {
+        result.chunks++;
+        try {
+            for (User user : chunk) {
+                bind(pstmt, user);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            fillGeneratedKeys(pstmt, chunk, 0);
+            conn.commit();
+            result.inserted += chunk.size();
+            chunk.forEach(this::fireInserted);
+        } catch (BatchUpdateException e) {
+            // 改写后的多行语句失败时驱动无法给出逐行结果，回滚整批后逐行重试定位失败的行
+            conn.rollback();
+            pstmt.clearBatch();
+            retryRowByRow(conn, pstmt, chunk, chunkStart, result);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    private void retryRowByRow(Connection conn, PreparedStatement pstmt, List<User> chunk, long chunkStart,
+                               BatchResult result) throws SQLException {
+        for (int i = 0; i < chunk.size(); i++) {
+            User user = chunk.get(i);
+            try {
+                bind(pstmt, user);
+                pstmt.executeUpdate();
+                fillGeneratedKeys(pstmt, chunk, i);
+                conn.commit();
+                result.inserted++;
+            } catch (SQLException e) {
+                conn.rollback();
+                FailureReason reason = isDuplicateKey(e) ? FailureReason.DUPLICATE : FailureReason.OTHER;
+                result.failures.add(new RowFailure(chunkStart + i, user, reason, e));
+                continue;
+            }
+            fireInserted(user);
+        }
+    }
+
+    private static void bind(PreparedStatement pstmt, User user) throws SQLException {
+        pstmt.setString(1, user.getName());
+        pstmt.setString(2, user.getEmail());
+    }
+
+    // 自增 id 按写入顺序返回，从 chunk 的 from 位置开始依次回填
+    private static void fillGeneratedKeys(PreparedStatement pstmt, List<User> chunk, int from) throws SQLException {
+        try (ResultSet keys = pstmt.getGeneratedKeys()) {
+            int i = from;
+            while (keys.next() && i < chunk.size()) {
+                chunk.get(i++).setId(keys.getLong(1));
+            }
+        }
+    }
+
+    /**
+     * 按姓名查询，姓名不唯一，可能返回多个用户
+     * 语句在每个连接上只预编译一次，列下标每次查询只解析一次
+     */
+    public List<User> findByName(String name) throws SQLException {
+        List<User> users = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection()) {
+            PreparedStatement pstmt = statements.prepare(conn, SELECT_BY_NAME_SQL);
+            pstmt.setString(1, name);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                RowMapper<User> mapper = USER_MAPPER.bind(rs);
+                while (rs.next()) {
+                    users.add(mapper.map(rs));
+                }
+            }
+        }
+        return users;
+    }
+
+    /**
+     * 分页的排序键；除 id 外都以 id 作为第二排序键，保证顺序唯一、翻页不重不漏
+     * 每个排序键都需要对应的索引（见 UserSchema），否则每一页都要对整表排序
+     * name、email 允许为 NULL：与 MySQL 一致，升序时 NULL 排在最前，降序时排在最后
+     */
+    public enum SortKey {
+        ID("id", "PRIMARY"),
+        NAME("name", "idx_users_name_id"),
+        EMAIL("email", "idx_users_email_id");
+
+        final String column;
+        final String index;
+
+        SortKey(String column, String index) {
+            this.column = column;
+            this.index = index;
+        }
+
+        public String indexName() {
+            return index;
+        }
+
+        String keyOf(User user) {
+            return this == NAME ? user.getName() : user.getEmail();
+        }
+    }
+
+    // 游标中记录的上一页最后一行位置；key 为 null 表示排序键值为 NULL（按 id 排序时不使用）
+    private static final class Cursor {
+        final String key;
+        final long id;
+
+        Cursor(String key, long id) {
+            this.key = key;
+            this.id = id;
+        }
+    }
+
+    public Page<User> findPage(String cursor, int limit) throws SQLException {
+        return findPage(SortKey.ID, false, cursor, limit);
+    }
+
+    /**
+     * 键集（seek）分页：按上一页最后一行的 (排序键, id) 定位，where 条件直接在索引上定位起点，
+     * 不像 offset 那样先扫描并丢弃前面所有行，所以第 N 页和第 1 页的代价相同。
+     * 翻页期间插入或删除的行不会导致重复或跳过已返回的行。
+     * @param cursor 上一页的 nextCursor，取第一页时为 null；必须与本次的排序方式一致
+     */
+    public Page<User> findPage(SortKey sort, boolean descending, String cursor, int limit) throws SQLException {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("每页条数必须在 1 到 " + MAX_PAGE_SIZE + " 之间：" + limit);
+        }
+        Cursor after = cursor == null ? null : decodeCursor(cursor, sort, descending);
+        // 多取一行，用来判断是否还有下一页
+        List<User> users = new ArrayList<>(limit + 1);
+        try (Connection conn = dataSource.getConnection()) {
+            boolean nullKey = after != null && sort != SortKey.ID && after.key == null;
+            PreparedStatement pstmt = statements.prepare(conn, pageSql(sort, descending, after == null, nullKey));
+            int index = 1;
+            if (after != null) {
+                if (sort != SortKey.ID && !nullKey) {
+                    pstmt.setString(index++, after.key);
+                }
+                pstmt.setLong(index++, after.id);
+            }
+            pstmt.setInt(index, limit + 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                RowMapper<User> mapper = USER_MAPPER.bind(rs);
+                while (rs.next()) {
+                    users.add(mapper.map(rs));
+                }
+            }
+        }
+        String next = null;
+        if (users.size() > limit) {
+            users.remove(limit);
+            next = encodeCursor(sort, descending, users.get(limit - 1));
+        }
+        return new Page<>(users, next);
+    }
+
+    // 第一页没有 where 条件；之后按 (排序键, id) 的行比较定位，MySQL 会把它当作索引上的范围扫描。
+    // 行比较遇到 NULL 结果为 NULL，NULL 值的行要单独处理：
+    // 上一行的键值为 NULL（nullKey）时只有 id 一个参数：升序还剩同为 NULL 的后续行和全部非 NULL 行，降序只剩同为 NULL 的后续行；
+    // 键值非 NULL 时，升序的 NULL 行都已返回，降序的 NULL 行都还在后面
+    static String pageSql(SortKey sort, boolean descending, boolean firstPage, boolean nullKey) {
+        String direction = descending ? " desc" : "";
+        String compare = descending ? " < " : " > ";
+        StringBuilder sql = new StringBuilder(SELECT_ALL_SQL);
+        if (!firstPage) {
+            if (sort == SortKey.ID) {
+                sql.append(" where id").append(compare).append('?');
+            } else if (nullKey) {
+                sql.append(" where (").append(sort.column).append(" is null and id").append(compare).append('?').append(')');
+                if (!descending) {
+                    sql.append(" or ").append(sort.column).append(" is not null");
+                }
+            } else {
+                sql.append(" where (").append(sort.column).append(", id)").append(compare).append("(?, ?)");
+                if (descending) {
+                    sql.append(" or ").append(sort.column).append(" is null");
+                }
+            }
+        }
+        sql.append(" order by ");
+        if (sort != SortKey.ID) {
+            sql.append(sort.column).append(direction).append(", ");
+        }
+        return sql.append("id").append(direction).append(" limit ?").toString();
+    }
+
+    // 游标内容：版本、排序键、方向、最后一行的 id 和排序键值（先写一个字节标记是否为 NULL），Base64 编码后对调用方不透明
+    private static String encodeCursor(SortKey sort, boolean descending, User last) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(CURSOR_VERSION);
+            out.writeByte(sort.ordinal());
+            out.writeBoolean(descending);
+            out.writeLong(last.getId());
+            if (sort != SortKey.ID) {
+                String key = sort.keyOf(last);
+                out.writeBoolean(key != null);
+                if (key != null) {
+                    out.writeUTF(key);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    private static Cursor decodeCursor(String cursor, SortKey sort, boolean descending) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页游标：" + cursor, e);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != CURSOR_VERSION) {
+                throw new IllegalArgumentException("无法识别的分页游标版本：" + cursor);
+            }
+            if (in.readByte() != sort.ordinal() || in.readBoolean() != descending) {
+                throw new IllegalArgumentException("分页游标与排序方式不匹配：" + cursor);
+            }
+            long id = in.readLong();
+            String key = sort != SortKey.ID && in.readBoolean() ? in.readUTF() : null;
+            return new Cursor(key, id);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("无效的分页游标：" + cursor, e);
+        }
+    }
+
+    /**
+     * 逐行回调时使用的处理器；传入的 User 会被下一行复用，需要保留时自行复制
+     */
+    public interface UserHandler {
+        void handle(User user) throws SQLException;
+    }
+
+    /**
+     * 以流式方式查询所有用户，每行一个新的 User 对象
+     * 流是惰性的：调用方取一行才从网络读一行，处理慢时驱动不会继续读取（背压由 TCP 窗口完成），内存占用恒定。
+     * 返回的流占用一个连接，必须关闭（try-with-resources）；在流关闭之前同一连接不能执行其他语句。
+     * @param fetchSize STREAMING_FETCH_SIZE 或配合 useCursorFetch 的正数
+     */
+    public Stream<User> streamAll(int fetchSize) throws SQLException {
+        Connection conn = dataSource.getConnection();
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            pstmt = prepareStreaming(conn, SELECT_ALL_SQL, fetchSize);
+            rs = pstmt.executeQuery();
+        } catch (SQLException e) {
+            closeQuietly(rs, pstmt, conn, e);
+            throw e;
+        }
+        ResultSet resultSet = rs;
+        PreparedStatement statement = pstmt;
+        Spliterator<User> spliterator = new Spliterators.AbstractSpliterator<User>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super User> action) {
+                try {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    action.accept(new User(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3)));
+                    return true;
+                } catch (SQLException e) {
+                    throw new DataAccessException("读取用户失败", e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            SQLException failure = closeQuietly(resultSet, statement, conn, null);
+            if (failure != null) {
+                throw new DataAccessException("关闭用户流失败", failure);
+            }
+        });
+    }
+
+    public Stream<User> streamAll() throws SQLException {
+        return streamAll(STREAMING_FETCH_SIZE);
+    }
+
+    /**
+     * 以流式方式遍历所有用户，整个过程只使用一个 User 对象，逐行覆盖后交给 handler
+     * @return 处理的行数
+     */
+    public long forEachUser(int fetchSize, UserHandler handler) throws SQLException {
+        User holder = new User();
+        long rows = 0;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = prepareStreaming(conn, SELECT_ALL_SQL, fetchSize);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                holder.setId(rs.getLong(1));
+                holder.setName(rs.getString(2));
+                holder.setEmail(rs.getString(3));
+                handler.handle(holder);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    // 只进、只读的语句才能使用流式结果集
+    private static PreparedStatement prepareStreaming(Connection conn, String sql, int fetchSize) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        pstmt.setFetchSize(fetchSize);
+        return pstmt;
+    }
+
+    // 依次关闭资源，返回第一个关闭失败的异常（其余附加为 suppressed）
+    private static SQLException closeQuietly(ResultSet rs, Statement stmt, Connection conn, SQLException primary) {
+        SQLException failure = primary;
+        AutoCloseable[] resources = {rs, stmt, conn};
+        for (AutoCloseable resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e instanceof SQLException ? (SQLException) e : new SQLException(e);
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        return failure == primary ? null : failure;
+    }
+}
@@ -0,0 +1,106 @@
+package Phase1.day6.src.main.java.com.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+// users 表的索引维护和执行计划检查
+// 分页查询按 (排序键, id) 定位和排序，并返回 id、name、email 三列：
+// 索引以 (排序键, id) 开头，定位和排序都在索引上完成；其余列也放进索引，查询不用回表（覆盖索引）。
+public class UserSchema {
+
+    // 索引名 -> 列；索引名与 UserRepository.SortKey 中的一致
+    private static final String[][] INDEXES = {
+            {"idx_users_name_id", "name, id, email"},
+            {"idx_users_email_id", "email, id, name"},
+    };
+
+    private static final String INDEX_EXISTS_SQL = "select 1 from information_schema.statistics"
+            + " where table_schema = database() and table_name = 'users' and index_name = ? limit 1";
+
+    /**
+     * 创建缺少的索引，已存在的跳过（MySQL 不支持 create index if not exists）
+     * @return 本次新建的索引名
+     */
+    public static List<String> ensureIndexes(Connection conn) throws SQLException {
+        List<String> created = new ArrayList<>();
+        try (PreparedStatement exists = conn.prepareStatement(INDEX_EXISTS_SQL);
+             Statement ddl = conn.createStatement()) {
+            for (String[] index : INDEXES) {
+                exists.setString(1, index[0]);
+                try (ResultSet rs = exists.executeQuery()) {
+                    if (rs.next()) {
+                        continue;
+                    }
+                }
+                ddl.executeUpdate("create index " + index[0] + " on users (" + index[1] + ")");
+                created.add(index[0]);
+            }
+        }
+        return created;
+    }
+
+    /**
+     * 对查询执行 EXPLAIN，检查是否用上了预期的索引
+     * @return 发现的问题，为空表示执行计划符合预期
+     */
+    public static List<String> checkPlan(Connection conn, String sql, String expectedIndex, Object... params)
+            throws SQLException {
+        List<String> warnings = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("explain " + sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String type = rs.getString("type");
+                    String key = rs.getString("key");
+                    String extra = rs.getString("Extra");
+                    extra = extra == null ? "" : extra;
+                    if (key == null || "ALL".equals(type)) {
+                        warnings.add("全表扫描（type=" + type + "）");
+                    } else if (!key.equals(expectedIndex)) {
+                        warnings.add("使用了索引 " + key + "，预期 " + expectedIndex);
+                    }
+                    if (extra.contains("Using filesort")) {
+                        warnings.add("需要额外排序（Using filesort）");
+                    }
+                    // 主键即聚簇索引，本身包含整行
+                    if (key != null && !"PRIMARY".equals(key) && !extra.contains("Using index")) {
+                        warnings.add("未使用覆盖索引，需要回表");
+                    }
+                }
+            }
+        }
+        return warnings;
+    }
+
+    /**
+     * 检查所有分页查询的执行计划，有问题时打印告警
+     * @return 是否全部符合预期
+     */
+    public static boolean checkPagePlans(Connection conn) throws SQLException {
+        boolean ok = true;
+        for (UserRepository.SortKey sort : UserRepository.SortKey.values()) {
+            for (boolean descending : new boolean[]{false, true}) {
+                // 上一页最后一行的排序键值为 NULL 时用另一条语句
+                for (boolean nullKey : sort == UserRepository.SortKey.ID ? new boolean[]{false} : new boolean[]{false, true}) {
+                    String sql = UserRepository.pageSql(sort, descending, false, nullKey);
+                    Object[] params = sort == UserRepository.SortKey.ID || nullKey
+                            ? new Object[]{0L, 20}
+                            : new Object[]{"", 0L, 20};
+                    List<String> warnings = checkPlan(conn, sql, sort.indexName(), params);
+                    for (String warning : warnings) {
+                        System.out.println("执行计划告警 [" + sql + "]：" + warning);
+                    }
+                    ok &= warnings.isEmpty();
+                }
+            }
+        }
+        return ok;
+    }
+}
@@ -0,0 +1,155 @@
+package Phase1.day6.src.main.java.com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AsyncUserRepositoryTest {
+
+    private UserRepository repository;
+    private AsyncUserRepository async;
+    // 占住唯一的数据库线程，让之后提交的请求留在队列里
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        repository = new UserRepository(H2TestDatabase.create());
+        async = new AsyncUserRepository(repository, 1, 2, 60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        async.close();
+    }
+
+    private CompletableFuture<Void> occupyThread() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Void> blocker = async.submit(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return blocker;
+    }
+
+    // 放开数据库线程，等排在后面的请求执行完：单线程按顺序执行，之前排队的请求此时都已处理
+    private void drain() throws Exception {
+        release.countDown();
+        async.submit(() -> null).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void insertThenFindByName() throws Exception {
+        User inserted = async.insert(new User("张三", "zhangsan@example.com")).get(5, TimeUnit.SECONDS);
+        assertTrue(inserted.getId() > 0);
+
+        List<User> found = async.findByName("张三").get(5, TimeUnit.SECONDS);
+        assertEquals(1, found.size());
+        assertEquals(inserted.getId(), found.get(0).getId());
+        assertEquals("zhangsan@example.com", found.get(0).getEmail());
+    }
+
+    @Test
+    void insertBatchReportsDuplicates() throws Exception {
+        List<User> users = Arrays.asList(
+                new User("a", "a@example.com"),
+                new User("b", "dup@example.com"),
+                new User("c", "dup@example.com"));
+        UserRepository.BatchResult result = async.insertBatch(users, 10).get(5, TimeUnit.SECONDS);
+        assertEquals(2, result.getInserted());
+        assertEquals(1, result.getFailures().size());
+        assertEquals(2, result.getFailures().get(0).index);
+        assertEquals(UserRepository.FailureReason.DUPLICATE, result.getFailures().get(0).reason);
+    }
+
+    @Test
+    void sqlFailureCompletesWithDataAccessException() throws Exception {
+        async.insert(new User("a", "same@example.com")).get(5, TimeUnit.SECONDS);
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> async.insert(new User("b", "same@example.com")).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DataAccessException.class, e.getCause());
+        assertTrue(UserRepository.isDuplicateKey((SQLException) e.getCause().getCause()));
+    }
+
+    @Test
+    void queuedRequestTimesOutAndNeverRuns() throws Exception {
+        async.close();
+        async = new AsyncUserRepository(repository, 1, 2, 200);
+        occupyThread();
+        AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<Boolean> queued = async.submit(() -> ran.getAndSet(true));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        // 超时的请求已从队列移除，不占排队名额
+        assertEquals(0, async.queuedRequests());
+
+        drain();
+        assertFalse(ran.get());
+    }
+
+    @Test
+    void cancelledRequestIsRemovedAndNeverRuns() throws Exception {
+        occupyThread();
+        AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<Boolean> queued = async.submit(() -> ran.getAndSet(true));
+        assertEquals(1, async.queuedRequests());
+        assertEquals(2, async.pendingTimeouts());
+
+        assertTrue(queued.cancel(false));
+        assertThrows(CancellationException.class, queued::join);
+        assertEquals(0, async.queuedRequests());
+        // 计时随请求取消一起移除，只剩正在执行的请求的计时
+        assertEquals(1, async.pendingTimeouts());
+
+        drain();
+        assertFalse(ran.get());
+    }
+
+    @Test
+    void fullQueueRejectsImmediately() throws Exception {
+        occupyThread();
+        async.submit(() -> null);
+        async.submit(() -> null);
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> async.submit(() -> null).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+
+    @Test
+    void completedRequestsDoNotLeaveTimersBehind() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            async.findByName("nobody").get(5, TimeUnit.SECONDS);
+        }
+        // 计时在请求结束后异步取消，给一点时间
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (async.pendingTimeouts() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, async.pendingTimeouts());
+    }
+}
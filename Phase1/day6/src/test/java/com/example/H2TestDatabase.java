@@ -0,0 +1,31 @@
+package Phase1.day6.src.main.java.com.example;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+// 测试用的内嵌 H2 数据库（MySQL 兼容模式），每次调用得到一个独立的内存库，建好 users 表
+final class H2TestDatabase {
+
+    private H2TestDatabase() {
+    }
+
+    static DataSource create() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        // DB_CLOSE_DELAY=-1：最后一个连接关闭后内存库仍然保留，直到 JVM 退出
+        dataSource.setURL("jdbc:h2:mem:users_" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("create table users ("
+                    + "id bigint auto_increment primary key, "
+                    + "name varchar(100), "
+                    + "email varchar(100) unique)");
+        }
+        return dataSource;
+    }
+}
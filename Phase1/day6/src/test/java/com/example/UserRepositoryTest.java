@@ -0,0 +1,92 @@
+package Phase1.day6.src.main.java.com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class UserRepositoryTest {
+
+    private UserRepository repository;
+    private List<User> users;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        repository = new UserRepository(H2TestDatabase.create());
+        // 姓名有重复也有 NULL，邮箱有 NULL，用来检查 (排序键, id) 的翻页
+        users = Arrays.asList(
+                new User("bob", "b1@example.com"),
+                new User(null, "n1@example.com"),
+                new User("alice", null),
+                new User("bob", "b2@example.com"),
+                new User(null, null),
+                new User("carol", "c@example.com"),
+                new User("alice", "a2@example.com"));
+        assertEquals(users.size(), repository.insertBatch(users, 3).getInserted());
+    }
+
+    @Test
+    void insertBatchFillsGeneratedIds() throws SQLException {
+        for (User user : users) {
+            List<User> found = repository.findByName(user.getName());
+            if (user.getName() != null) {
+                assertTrue(found.stream().anyMatch(u -> u.getId() == user.getId()));
+            }
+        }
+    }
+
+    @Test
+    void pagesCoverAllRowsInOrderForEverySortKey() throws SQLException {
+        for (UserRepository.SortKey sort : UserRepository.SortKey.values()) {
+            for (boolean descending : new boolean[]{false, true}) {
+                List<Long> expected = expectedOrder(sort, descending);
+                for (int limit = 1; limit <= 3; limit++) {
+                    assertEquals(expected, pageThrough(sort, descending, limit),
+                            sort + (descending ? " desc" : " asc") + " limit " + limit);
+                }
+            }
+        }
+    }
+
+    @Test
+    void cursorFromAnotherSortIsRejected() throws SQLException {
+        Page<User> first = repository.findPage(UserRepository.SortKey.NAME, false, null, 2);
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.findPage(UserRepository.SortKey.EMAIL, false, first.getNextCursor(), 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.findPage(UserRepository.SortKey.NAME, true, first.getNextCursor(), 2));
+    }
+
+    private List<Long> pageThrough(UserRepository.SortKey sort, boolean descending, int limit) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<User> page = repository.findPage(sort, descending, cursor, limit);
+            page.getItems().forEach(user -> ids.add(user.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    // 与 MySQL 相同：升序时 NULL 在最前，降序时在最后；键值相同按 id
+    private List<Long> expectedOrder(UserRepository.SortKey sort, boolean descending) {
+        Function<User, String> key = sort == UserRepository.SortKey.NAME ? User::getName
+                : sort == UserRepository.SortKey.EMAIL ? User::getEmail : u -> "";
+        Comparator<User> order = Comparator.comparing(key, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                .thenComparingLong(User::getId);
+        List<User> sorted = new ArrayList<>(users);
+        sorted.sort(descending ? order.reversed() : order);
+        List<Long> ids = new ArrayList<>();
+        sorted.forEach(user -> ids.add(user.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,30 @@
+// 嵌套地址类（User.address）
+class Address {
+    private String city;
+    private String street;
+    private String zipCode;
+    
+    public Address() {}
+    
+    public Address(String city, String street, String zipCode) {
+        this.city = city;
+        this.street = street;
+        this.zipCode = zipCode;
+    }
+    
+    // getters 和 setters
+    public String getCity() { return city; }
+    public void setCity(String city) { this.city = city; }
+    
+    public String getStreet() { return street; }
+    public void setStreet(String street) { this.street = street; }
+    
+    public String getZipCode() { return zipCode; }
+    public void setZipCode(String zipCode) { this.zipCode = zipCode; }
+    
+    @Override
+    public String toString() {
+        return String.format("Address[city=%s, street=%s, zip=%s]", 
+                city, street, zipCode);
+    }
+}
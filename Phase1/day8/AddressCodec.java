@@ -0,0 +1,61 @@
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * Address 的手写编解码器，字段名与 PojoCodecProvider 生成的一致，新旧数据可以互相读取
+ */
+public class AddressCodec implements Codec<Address> {
+
+    @Override
+    public void encode(BsonWriter writer, Address address, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writeString(writer, "city", address.getCity());
+        writeString(writer, "street", address.getStreet());
+        writeString(writer, "zipCode", address.getZipCode());
+        writer.writeEndDocument();
+    }
+
+    // null 字段不写出，与 POJO 编解码器的默认行为一致
+    static void writeString(BsonWriter writer, String name, String value) {
+        if (value != null) {
+            writer.writeString(name, value);
+        }
+    }
+
+    @Override
+    public Address decode(BsonReader reader, DecoderContext decoderContext) {
+        Address address = new Address();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+            switch (name) {
+                case "city":
+                    address.setCity(reader.readString());
+                    break;
+                case "street":
+                    address.setStreet(reader.readString());
+                    break;
+                case "zipCode":
+                    address.setZipCode(reader.readString());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return address;
+    }
+
+    @Override
+    public Class<Address> getEncoderClass() {
+        return Address.class;
+    }
+}
@@ -0,0 +1,931 @@
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonDecimal128;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonObjectId;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.types.Decimal128;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * InMemoryDocumentStore 使用的 BSON 文档操作：查询匹配、比较、更新、投影和聚合，语义按 MongoDB 的规则实现
+ *
+ * 支持的查询操作符：$eq $ne $gt $gte $lt $lte $in $nin $exists $and $or $nor；
+ * 更新操作符：$set $unset $inc $push $addToSet $setOnInsert；
+ * 聚合阶段：$match $group $sort $skip $limit $project $count，
+ * $group 累加器：$sum $avg $min $max $first $last $push $addToSet。
+ * 其他操作符抛出 UnsupportedOperationException。
+ */
+final class BsonDocuments {
+
+    // 按 MongoDB 的类型顺序比较任意两个值，不同类型按类型排序
+    static final Comparator<BsonValue> ORDER = BsonDocuments::compare;
+
+    // key 中判断 Decimal128 能否用 long 表示
+    private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private BsonDocuments() {
+    }
+
+    // ---------------- 取值与比较 ----------------
+
+    /**
+     * 按点分路径取值；中间经过数组时对其中每个子文档继续取值（与 MongoDB 的数组匹配语义一致）
+     * 字段不存在时返回空列表
+     */
+    static List<BsonValue> resolve(BsonDocument document, String path) {
+        List<BsonValue> values = new ArrayList<>(1);
+        resolve(document, path.split("\\."), 0, values);
+        return values;
+    }
+
+    private static void resolve(BsonValue value, String[] parts, int i, List<BsonValue> values) {
+        if (i == parts.length) {
+            values.add(value);
+        } else if (value.isDocument()) {
+            BsonValue child = value.asDocument().get(parts[i]);
+            if (child != null) {
+                resolve(child, parts, i + 1, values);
+            }
+        } else if (value.isArray()) {
+            BsonArray array = value.asArray();
+            if (isIndex(parts[i])) {
+                int index = Integer.parseInt(parts[i]);
+                if (index < array.size()) {
+                    resolve(array.get(index), parts, i + 1, values);
+                }
+            }
+            for (BsonValue element : array) {
+                if (element.isDocument()) {
+                    resolve(element, parts, i, values);
+                }
+            }
+        }
+    }
+
+    private static boolean isIndex(String part) {
+        if (part.isEmpty() || part.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < part.length(); i++) {
+            if (!Character.isDigit(part.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 类型顺序：MinKey < null < 数字 < 字符串 < 文档 < 数组 < 二进制 < ObjectId < 布尔 < 日期 < 时间戳 < 正则 < MaxKey
+    private static int typeOrder(BsonValue value) {
+        switch (value.getBsonType()) {
+            case MIN_KEY:
+                return 0;
+            case NULL:
+            case UNDEFINED:
+                return 1;
+            case INT32:
+            case INT64:
+            case DOUBLE:
+            case DECIMAL128:
+                return 2;
+            case STRING:
+            case SYMBOL:
+                return 3;
+            case DOCUMENT:
+                return 4;
+            case ARRAY:
+                return 5;
+            case BINARY:
+                return 6;
+            case OBJECT_ID:
+                return 7;
+            case BOOLEAN:
+                return 8;
+            case DATE_TIME:
+                return 9;
+            case TIMESTAMP:
+                return 10;
+            case REGULAR_EXPRESSION:
+                return 11;
+            case MAX_KEY:
+                return 13;
+            default:
+                return 12;
+        }
+    }
+
+    static int compare(BsonValue a, BsonValue b) {
+        int typeA = typeOrder(a);
+        int typeB = typeOrder(b);
+        if (typeA != typeB) {
+            return Integer.compare(typeA, typeB);
+        }
+        switch (a.getBsonType()) {
+            case INT32:
+            case INT64:
+            case DOUBLE:
+            case DECIMAL128:
+                if (isIntegral(a) && isIntegral(b)) {
+                    return Long.compare(a.asNumber().longValue(), b.asNumber().longValue());
+                }
+                if (a.isDecimal128() || b.isDecimal128()) {
+                    return compareDecimal(a, b);
+                }
+                return Double.compare(a.asNumber().doubleValue(), b.asNumber().doubleValue());
+            case STRING:
+            case SYMBOL:
+                return string(a).compareTo(string(b));
+            case DOCUMENT:
+                return compareDocuments(a.asDocument(), b.asDocument());
+            case ARRAY:
+                return compareArrays(a.asArray(), b.asArray());
+            case BINARY:
+                return compareBinaries(a.asBinary(), b.asBinary());
+            case OBJECT_ID:
+                return a.asObjectId().getValue().compareTo(b.asObjectId().getValue());
+            case BOOLEAN:
+                return Boolean.compare(a.asBoolean().getValue(), b.asBoolean().getValue());
+            case DATE_TIME:
+                return Long.compare(a.asDateTime().getValue(), b.asDateTime().getValue());
+            case TIMESTAMP:
+                return a.asTimestamp().compareTo(b.asTimestamp());
+            case NULL:
+            case UNDEFINED:
+            case MIN_KEY:
+            case MAX_KEY:
+                return 0;
+            default:
+                return a.toString().compareTo(b.toString());
+        }
+    }
+
+    private static boolean isIntegral(BsonValue value) {
+        return value.getBsonType() == BsonType.INT32 || value.getBsonType() == BsonType.INT64;
+    }
+
+    // BsonDecimal128 不支持 asNumber()：有一方是 Decimal128 时按 BigDecimal 精确比较，NaN 和无穷大按 double 比较
+    private static int compareDecimal(BsonValue a, BsonValue b) {
+        BigDecimal x = finiteDecimal(a);
+        BigDecimal y = finiteDecimal(b);
+        if (x != null && y != null) {
+            return x.compareTo(y);
+        }
+        return Double.compare(doubleValue(a), doubleValue(b));
+    }
+
+    // 数字的精确值；NaN 和无穷大没有对应的 BigDecimal，返回 null
+    private static BigDecimal finiteDecimal(BsonValue value) {
+        switch (value.getBsonType()) {
+            case INT32:
+            case INT64:
+                return BigDecimal.valueOf(value.asNumber().longValue());
+            case DOUBLE:
+                double d = value.asDouble().getValue();
+                return Double.isNaN(d) || Double.isInfinite(d) ? null : new BigDecimal(d);
+            default:
+                Decimal128 decimal = value.asDecimal128().getValue();
+                if (!decimal.isFinite()) {
+                    return null;
+                }
+                try {
+                    return decimal.bigDecimalValue();
+                } catch (ArithmeticException e) {
+                    // 只剩负零不能转换
+                    return BigDecimal.ZERO;
+                }
+        }
+    }
+
+    private static double doubleValue(BsonValue value) {
+        return value.isDecimal128() ? value.asDecimal128().getValue().doubleValue() : value.asNumber().doubleValue();
+    }
+
+    private static String string(BsonValue value) {
+        return value.isString() ? value.asString().getValue() : value.asSymbol().getSymbol();
+    }
+
+    private static int compareDocuments(BsonDocument a, BsonDocument b) {
+        Iterator<Map.Entry<String, BsonValue>> left = a.entrySet().iterator();
+        Iterator<Map.Entry<String, BsonValue>> right = b.entrySet().iterator();
+        while (left.hasNext() && right.hasNext()) {
+            Map.Entry<String, BsonValue> x = left.next();
+            Map.Entry<String, BsonValue> y = right.next();
+            int result = compare(x.getValue(), y.getValue());
+            if (result == 0) {
+                result = x.getKey().compareTo(y.getKey());
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Boolean.compare(left.hasNext(), right.hasNext());
+    }
+
+    private static int compareArrays(BsonArray a, BsonArray b) {
+        for (int i = 0; i < a.size() && i < b.size(); i++) {
+            int result = compare(a.get(i), b.get(i));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(a.size(), b.size());
+    }
+
+    private static int compareBinaries(BsonBinary a, BsonBinary b) {
+        byte[] x = a.getData();
+        byte[] y = b.getData();
+        if (x.length != y.length) {
+            return Integer.compare(x.length, y.length);
+        }
+        for (int i = 0; i < x.length; i++) {
+            if (x[i] != y[i]) {
+                return Integer.compare(x[i] & 0xFF, y[i] & 0xFF);
+            }
+        }
+        return 0;
+    }
+
+    // 只比较类型顺序，范围查询只匹配同类型的值
+    static int compareType(BsonValue a, BsonValue b) {
+        return Integer.compare(typeOrder(a), typeOrder(b));
+    }
+
+    // 值相等：数字不区分 int32/int64/double
+    static boolean same(BsonValue a, BsonValue b) {
+        return typeOrder(a) == typeOrder(b) && compare(a, b) == 0;
+    }
+
+    // 作为 Map 键时统一数字类型，使 1、1L、1.0、Decimal128("1.00") 对应同一个键
+    static BsonValue key(BsonValue value) {
+        if (value.isDecimal128()) {
+            BigDecimal exact = finiteDecimal(value);
+            if (exact == null) {
+                return new BsonDouble(doubleValue(value));
+            }
+            exact = exact.stripTrailingZeros();
+            if (exact.scale() <= 0 && exact.compareTo(LONG_MIN) >= 0 && exact.compareTo(LONG_MAX) <= 0) {
+                return new BsonInt64(exact.longValueExact());
+            }
+            double d = exact.doubleValue();
+            if (!Double.isInfinite(d) && new BigDecimal(d).compareTo(exact) == 0) {
+                return new BsonDouble(d);
+            }
+            // long 和 double 都不能精确表示，不会与其他数字类型的值相等
+            return new BsonDecimal128(new Decimal128(exact));
+        }
+        if (value.isNumber()) {
+            double d = value.asNumber().doubleValue();
+            long l = value.asNumber().longValue();
+            return d == l ? new BsonInt64(l) : new BsonDouble(d);
+        }
+        return value;
+    }
+
+    // ---------------- 查询匹配 ----------------
+
+    static boolean matches(BsonDocument document, BsonDocument filter) {
+        for (Map.Entry<String, BsonValue> entry : filter.entrySet()) {
+            String key = entry.getKey();
+            BsonValue condition = entry.getValue();
+            switch (key) {
+                case "$and":
+                    for (BsonValue clause : condition.asArray()) {
+                        if (!matches(document, clause.asDocument())) {
+                            return false;
+                        }
+                    }
+                    break;
+                case "$or":
+                    if (!any(document, condition.asArray())) {
+                        return false;
+                    }
+                    break;
+                case "$nor":
+                    if (any(document, condition.asArray())) {
+                        return false;
+                    }
+                    break;
+                default:
+                    if (key.startsWith("$")) {
+                        throw new UnsupportedOperationException("Unsupported query operator: " + key);
+                    }
+                    if (!matchesField(document, key, condition)) {
+                        return false;
+                    }
+            }
+        }
+        return true;
+    }
+
+    private static boolean any(BsonDocument document, BsonArray clauses) {
+        for (BsonValue clause : clauses) {
+            if (matches(document, clause.asDocument())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 条件为 {$gt: 1, ...} 形式时逐个操作符匹配，否则按相等匹配
+    static boolean isOperatorDocument(BsonValue condition) {
+        return condition.isDocument() && !condition.asDocument().isEmpty()
+                && condition.asDocument().getFirstKey().startsWith("$");
+    }
+
+    private static boolean matchesField(BsonDocument document, String path, BsonValue condition) {
+        List<BsonValue> values = resolve(document, path);
+        if (!isOperatorDocument(condition)) {
+            return matchesOperator(values, "$eq", condition);
+        }
+        for (Map.Entry<String, BsonValue> entry : condition.asDocument().entrySet()) {
+            if (!matchesOperator(values, entry.getKey(), entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesOperator(List<BsonValue> values, String operator, BsonValue operand) {
+        switch (operator) {
+            case "$eq":
+                // {field: null} 同时匹配字段不存在的文档
+                return (operand.isNull() && values.isEmpty()) || anyValue(values, v -> same(v, operand));
+            case "$ne":
+                return !matchesOperator(values, "$eq", operand);
+            case "$gt":
+                return anyValue(values, v -> typeOrder(v) == typeOrder(operand) && compare(v, operand) > 0);
+            case "$gte":
+                return anyValue(values, v -> typeOrder(v) == typeOrder(operand) && compare(v, operand) >= 0);
+            case "$lt":
+                return anyValue(values, v -> typeOrder(v) == typeOrder(operand) && compare(v, operand) < 0);
+            case "$lte":
+                return anyValue(values, v -> typeOrder(v) == typeOrder(operand) && compare(v, operand) <= 0);
+            case "$in":
+                for (BsonValue candidate : operand.asArray()) {
+                    if (matchesOperator(values, "$eq", candidate)) {
+                        return true;
+                    }
+                }
+                return false;
+            case "$nin":
+                return !matchesOperator(values, "$in", operand);
+            case "$exists":
+                return operand.asBoolean().getValue() != values.isEmpty();
+            default:
+                throw new UnsupportedOperationException("Unsupported query operator: " + operator);
+        }
+    }
+
+    // 字段值为数组时，数组本身或其中任一元素满足条件即可
+    private static boolean anyValue(List<BsonValue> values, Predicate<BsonValue> predicate) {
+        for (BsonValue value : values) {
+            if (predicate.test(value)) {
+                return true;
+            }
+            if (value.isArray()) {
+                for (BsonValue element : value.asArray()) {
+                    if (predicate.test(element)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // ---------------- 更新 ----------------
+
+    static boolean isUpdateDocument(BsonDocument update) {
+        return !update.isEmpty() && update.getFirstKey().startsWith("$");
+    }
+
+    /**
+     * 在 document 上原地执行更新操作符
+     * @param inserting upsert 插入新文档时为 true，此时才执行 $setOnInsert
+     */
+    static void applyUpdate(BsonDocument document, BsonDocument update, boolean inserting) {
+        for (Map.Entry<String, BsonValue> entry : update.entrySet()) {
+            BsonDocument fields = entry.getValue().asDocument();
+            for (Map.Entry<String, BsonValue> field : fields.entrySet()) {
+                String path = field.getKey();
+                BsonValue operand = field.getValue();
+                if (path.equals("_id") && !entry.getKey().equals("$setOnInsert")) {
+                    throw new IllegalArgumentException("Performing an update on the path '_id' would modify the immutable field '_id'");
+                }
+                switch (entry.getKey()) {
+                    case "$set":
+                        set(document, path, operand);
+                        break;
+                    case "$setOnInsert":
+                        if (inserting) {
+                            set(document, path, operand);
+                        }
+                        break;
+                    case "$unset":
+                        unset(document, path);
+                        break;
+                    case "$inc":
+                        set(document, path, add(get(document, path), operand));
+                        break;
+                    case "$push":
+                        push(document, path, operand, false);
+                        break;
+                    case "$addToSet":
+                        push(document, path, operand, true);
+                        break;
+                    default:
+                        throw new UnsupportedOperationException("Unsupported update operator: " + entry.getKey());
+                }
+            }
+        }
+    }
+
+    private static BsonValue get(BsonDocument document, String path) {
+        String[] parts = path.split("\\.");
+        BsonDocument parent = document;
+        for (int i = 0; i < parts.length - 1; i++) {
+            BsonValue child = parent.get(parts[i]);
+            if (child == null || !child.isDocument()) {
+                return null;
+            }
+            parent = child.asDocument();
+        }
+        return parent.get(parts[parts.length - 1]);
+    }
+
+    // 按路径设置值，缺少的中间文档自动创建
+    private static void set(BsonDocument document, String path, BsonValue value) {
+        String[] parts = path.split("\\.");
+        BsonDocument parent = document;
+        for (int i = 0; i < parts.length - 1; i++) {
+            BsonValue child = parent.get(parts[i]);
+            if (child == null) {
+                child = new BsonDocument();
+                parent.put(parts[i], child);
+            } else if (!child.isDocument()) {
+                throw new IllegalArgumentException("Cannot create field '" + parts[i + 1] + "' in element " + parts[i]);
+            }
+            parent = child.asDocument();
+        }
+        parent.put(parts[parts.length - 1], copy(value));
+    }
+
+    private static void unset(BsonDocument document, String path) {
+        String[] parts = path.split("\\.");
+        BsonDocument parent = document;
+        for (int i = 0; i < parts.length - 1; i++) {
+            BsonValue child = parent.get(parts[i]);
+            if (child == null || !child.isDocument()) {
+                return;
+            }
+            parent = child.asDocument();
+        }
+        parent.remove(parts[parts.length - 1]);
+    }
+
+    private static BsonValue add(BsonValue current, BsonValue increment) {
+        if (!increment.isNumber()) {
+            throw new IllegalArgumentException("Cannot increment with non-numeric argument: " + increment);
+        }
+        if (current == null) {
+            return increment;
+        }
+        if (!current.isNumber()) {
+            throw new IllegalArgumentException("Cannot apply $inc to a value of non-numeric type: " + current.getBsonType());
+        }
+        return sum(current, increment);
+    }
+
+    // 两个 int32 相加仍为 int32（溢出时变为 int64），有 double 参与时为 double
+    private static BsonValue sum(BsonValue a, BsonValue b) {
+        if (a.isDouble() || b.isDouble()) {
+            return new BsonDouble(a.asNumber().doubleValue() + b.asNumber().doubleValue());
+        }
+        long total = a.asNumber().longValue() + b.asNumber().longValue();
+        if (a.isInt32() && b.isInt32() && total == (int) total) {
+            return new BsonInt32((int) total);
+        }
+        return new BsonInt64(total);
+    }
+
+    private static void push(BsonDocument document, String path, BsonValue operand, boolean unique) {
+        BsonValue current = get(document, path);
+        BsonArray array;
+        if (current == null) {
+            array = new BsonArray();
+            set(document, path, array);
+            array = get(document, path).asArray();
+        } else if (current.isArray()) {
+            array = current.asArray();
+        } else {
+            throw new IllegalArgumentException("The field '" + path + "' must be an array but is of type " + current.getBsonType());
+        }
+        List<BsonValue> values = operand.isDocument() && operand.asDocument().containsKey("$each")
+                ? operand.asDocument().getArray("$each").getValues()
+                : Arrays.asList(operand);
+        for (BsonValue value : values) {
+            if (!unique || !containsSame(array, value)) {
+                array.add(copy(value));
+            }
+        }
+    }
+
+    private static boolean containsSame(BsonArray array, BsonValue value) {
+        for (BsonValue element : array) {
+            if (same(element, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * upsert 时新文档的初始内容：查询条件中的等值字段
+     */
+    static BsonDocument seedFromFilter(BsonDocument filter) {
+        BsonDocument seed = new BsonDocument();
+        addEqualities(seed, filter);
+        return seed;
+    }
+
+    private static void addEqualities(BsonDocument seed, BsonDocument filter) {
+        for (Map.Entry<String, BsonValue> entry : filter.entrySet()) {
+            String key = entry.getKey();
+            BsonValue condition = entry.getValue();
+            if (key.equals("$and")) {
+                for (BsonValue clause : condition.asArray()) {
+                    addEqualities(seed, clause.asDocument());
+                }
+            } else if (!key.startsWith("$")) {
+                if (!isOperatorDocument(condition)) {
+                    set(seed, key, condition);
+                } else if (condition.asDocument().containsKey("$eq")) {
+                    set(seed, key, condition.asDocument().get("$eq"));
+                }
+            }
+        }
+    }
+
+    // ---------------- 投影 ----------------
+
+    /**
+     * 按投影返回新文档；支持包含（{a: 1}）和排除（{a: 0}）两种形式及点分路径
+     */
+    static BsonDocument project(BsonDocument document, BsonDocument projection) {
+        if (projection == null || projection.isEmpty()) {
+            return document;
+        }
+        Map<String, Object> included = new LinkedHashMap<>();
+        Map<String, Object> excluded = new LinkedHashMap<>();
+        boolean includeId = true;
+        for (Map.Entry<String, BsonValue> entry : projection.entrySet()) {
+            BsonValue value = entry.getValue();
+            boolean include;
+            if (value.isBoolean()) {
+                include = value.asBoolean().getValue();
+            } else if (value.isNumber()) {
+                include = value.asNumber().doubleValue() != 0;
+            } else {
+                throw new UnsupportedOperationException("Unsupported projection: " + entry.getKey() + ": " + value);
+            }
+            if (entry.getKey().equals("_id")) {
+                includeId = include;
+            } else {
+                addPath(include ? included : excluded, entry.getKey().split("\\."), 0);
+            }
+        }
+        if (!included.isEmpty() && !excluded.isEmpty()) {
+            throw new IllegalArgumentException("Cannot mix inclusion and exclusion in projection: " + projection.toJson());
+        }
+        BsonDocument result;
+        if (!included.isEmpty()) {
+            if (includeId) {
+                included.put("_id", Boolean.TRUE);
+            }
+            result = include(document, included);
+        } else {
+            result = exclude(document, excluded);
+            if (!includeId) {
+                result.remove("_id");
+            }
+        }
+        return result;
+    }
+
+    // 路径树：叶子为 TRUE，中间节点为子路径的 Map
+    @SuppressWarnings("unchecked")
+    private static void addPath(Map<String, Object> tree, String[] parts, int i) {
+        if (i == parts.length - 1) {
+            tree.put(parts[i], Boolean.TRUE);
+            return;
+        }
+        Object child = tree.get(parts[i]);
+        if (child == Boolean.TRUE) {
+            return;
+        }
+        if (child == null) {
+            child = new LinkedHashMap<String, Object>();
+            tree.put(parts[i], child);
+        }
+        addPath((Map<String, Object>) child, parts, i + 1);
+    }
+
+    // 包含投影保持文档原有的字段顺序
+    @SuppressWarnings("unchecked")
+    private static BsonDocument include(BsonDocument document, Map<String, Object> tree) {
+        BsonDocument result = new BsonDocument();
+        for (Map.Entry<String, BsonValue> entry : document.entrySet()) {
+            Object node = tree.get(entry.getKey());
+            if (node == null) {
+                continue;
+            }
+            BsonValue value = entry.getValue();
+            if (node == Boolean.TRUE) {
+                result.put(entry.getKey(), value);
+            } else if (value.isDocument()) {
+                result.put(entry.getKey(), include(value.asDocument(), (Map<String, Object>) node));
+            } else if (value.isArray()) {
+                BsonArray projected = new BsonArray();
+                for (BsonValue element : value.asArray()) {
+                    if (element.isDocument()) {
+                        projected.add(include(element.asDocument(), (Map<String, Object>) node));
+                    }
+                }
+                result.put(entry.getKey(), projected);
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BsonDocument exclude(BsonDocument document, Map<String, Object> tree) {
+        BsonDocument result = new BsonDocument();
+        for (Map.Entry<String, BsonValue> entry : document.entrySet()) {
+            Object node = tree.get(entry.getKey());
+            BsonValue value = entry.getValue();
+            if (node == null) {
+                result.put(entry.getKey(), value);
+            } else if (node != Boolean.TRUE) {
+                if (value.isDocument()) {
+                    result.put(entry.getKey(), exclude(value.asDocument(), (Map<String, Object>) node));
+                } else if (value.isArray()) {
+                    BsonArray projected = new BsonArray();
+                    for (BsonValue element : value.asArray()) {
+                        projected.add(element.isDocument() ? exclude(element.asDocument(), (Map<String, Object>) node) : element);
+                    }
+                    result.put(entry.getKey(), projected);
+                } else {
+                    result.put(entry.getKey(), value);
+                }
+            }
+        }
+        return result;
+    }
+
+    // ---------------- 聚合 ----------------
+
+    /**
+     * 依次执行聚合阶段
+     */
+    static List<BsonDocument> aggregate(List<BsonDocument> documents, List<BsonDocument> stages) {
+        List<BsonDocument> current = documents;
+        for (BsonDocument stage : stages) {
+            String name = stage.getFirstKey();
+            BsonValue spec = stage.get(name);
+            switch (name) {
+                case "$match": {
+                    List<BsonDocument> matched = new ArrayList<>();
+                    for (BsonDocument document : current) {
+                        if (matches(document, spec.asDocument())) {
+                            matched.add(document);
+                        }
+                    }
+                    current = matched;
+                    break;
+                }
+                case "$group":
+                    current = group(current, spec.asDocument());
+                    break;
+                case "$sort": {
+                    List<BsonDocument> sorted = new ArrayList<>(current);
+                    sorted.sort(sortOrder(spec.asDocument()));
+                    current = sorted;
+                    break;
+                }
+                case "$skip": {
+                    int skip = (int) Math.min(spec.asNumber().longValue(), current.size());
+                    current = current.subList(skip, current.size());
+                    break;
+                }
+                case "$limit": {
+                    int limit = (int) Math.min(spec.asNumber().longValue(), current.size());
+                    current = current.subList(0, limit);
+                    break;
+                }
+                case "$project": {
+                    List<BsonDocument> projected = new ArrayList<>(current.size());
+                    for (BsonDocument document : current) {
+                        projected.add(project(document, spec.asDocument()));
+                    }
+                    current = projected;
+                    break;
+                }
+                case "$count": {
+                    List<BsonDocument> counted = new ArrayList<>(1);
+                    if (!current.isEmpty()) {
+                        counted.add(new BsonDocument(spec.asString().getValue(), new BsonInt32(current.size())));
+                    }
+                    current = counted;
+                    break;
+                }
+                default:
+                    throw new UnsupportedOperationException("Unsupported aggregation stage: " + name);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 排序规则，形如 {count: -1, _id: 1}；字段不存在视为 null
+     */
+    static Comparator<BsonDocument> sortOrder(BsonDocument spec) {
+        return (a, b) -> {
+            for (Map.Entry<String, BsonValue> entry : spec.entrySet()) {
+                int result = compare(first(a, entry.getKey()), first(b, entry.getKey()));
+                if (result != 0) {
+                    return entry.getValue().asNumber().intValue() < 0 ? -result : result;
+                }
+            }
+            return 0;
+        };
+    }
+
+    private static BsonValue first(BsonDocument document, String path) {
+        List<BsonValue> values = resolve(document, path);
+        return values.isEmpty() ? BsonNull.VALUE : values.get(0);
+    }
+
+    // 表达式：以 $ 开头的字符串为字段路径（不存在时为 null），文档为各字段分别求值，其他为常量
+    private static BsonValue evaluate(BsonDocument document, BsonValue expression) {
+        if (expression.isString() && expression.asString().getValue().startsWith("$")) {
+            return first(document, expression.asString().getValue().substring(1));
+        }
+        if (expression.isDocument()) {
+            if (isOperatorDocument(expression)) {
+                throw new UnsupportedOperationException("Unsupported expression: " + expression.asDocument().toJson());
+            }
+            BsonDocument result = new BsonDocument();
+            for (Map.Entry<String, BsonValue> entry : expression.asDocument().entrySet()) {
+                result.put(entry.getKey(), evaluate(document, entry.getValue()));
+            }
+            return result;
+        }
+        return expression;
+    }
+
+    private static List<BsonDocument> group(List<BsonDocument> documents, BsonDocument spec) {
+        BsonValue idExpression = spec.get("_id");
+        // 分组键按类型顺序比较，1 和 1.0 落在同一组
+        Map<BsonValue, Accumulator[]> groups = new TreeMap<>(ORDER);
+        List<String> names = new ArrayList<>();
+        for (String name : spec.keySet()) {
+            if (!name.equals("_id")) {
+                names.add(name);
+            }
+        }
+        for (BsonDocument document : documents) {
+            BsonValue key = idExpression == null ? BsonNull.VALUE : evaluate(document, idExpression);
+            Accumulator[] accumulators = groups.get(key);
+            if (accumulators == null) {
+                accumulators = new Accumulator[names.size()];
+                for (int i = 0; i < accumulators.length; i++) {
+                    BsonDocument accumulator = spec.getDocument(names.get(i));
+                    accumulators[i] = new Accumulator(accumulator.getFirstKey(), accumulator.get(accumulator.getFirstKey()));
+                }
+                groups.put(key, accumulators);
+            }
+            for (Accumulator accumulator : accumulators) {
+                accumulator.add(evaluate(document, accumulator.expression));
+            }
+        }
+        List<BsonDocument> results = new ArrayList<>(groups.size());
+        for (Map.Entry<BsonValue, Accumulator[]> entry : groups.entrySet()) {
+            BsonDocument result = new BsonDocument("_id", entry.getKey());
+            for (int i = 0; i < names.size(); i++) {
+                result.put(names.get(i), entry.getValue()[i].result());
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    private static final class Accumulator {
+        final String operator;
+        final BsonValue expression;
+        BsonValue value;
+        long count;
+        double total;
+        final BsonArray values = new BsonArray();
+
+        Accumulator(String operator, BsonValue expression) {
+            if (!Arrays.asList("$sum", "$avg", "$min", "$max", "$first", "$last", "$push", "$addToSet").contains(operator)) {
+                throw new UnsupportedOperationException("Unsupported accumulator: " + operator);
+            }
+            this.operator = operator;
+            this.expression = expression;
+        }
+
+        void add(BsonValue input) {
+            switch (operator) {
+                case "$sum":
+                    // 非数字的值忽略
+                    if (input.isNumber()) {
+                        value = value == null ? input : sum(value, input);
+                    }
+                    break;
+                case "$avg":
+                    if (input.isNumber()) {
+                        total += input.asNumber().doubleValue();
+                        count++;
+                    }
+                    break;
+                case "$min":
+                    if (!input.isNull() && (value == null || compare(input, value) < 0)) {
+                        value = input;
+                    }
+                    break;
+                case "$max":
+                    if (!input.isNull() && (value == null || compare(input, value) > 0)) {
+                        value = input;
+                    }
+                    break;
+                case "$first":
+                    if (count++ == 0) {
+                        value = input;
+                    }
+                    break;
+                case "$last":
+                    value = input;
+                    break;
+                case "$push":
+                    values.add(input);
+                    break;
+                default:
+                    if (!containsSame(values, input)) {
+                        values.add(input);
+                    }
+            }
+        }
+
+        BsonValue result() {
+            switch (operator) {
+                case "$sum":
+                    return value == null ? new BsonInt32(0) : value;
+                case "$avg":
+                    return count == 0 ? BsonNull.VALUE : new BsonDouble(total / count);
+                case "$push":
+                case "$addToSet":
+                    return values;
+                default:
+                    return value == null ? BsonNull.VALUE : value;
+            }
+        }
+    }
+
+    // 文档和数组深拷贝，其他 BSON 值不可变
+    static BsonValue copy(BsonValue value) {
+        if (value.isDocument()) {
+            return value.asDocument().clone();
+        }
+        if (value.isArray()) {
+            return value.asArray().clone();
+        }
+        return value;
+    }
+
+    // 没有 _id 的文档插入时补一个 ObjectId，放在第一个字段
+    static BsonDocument withId(BsonDocument document) {
+        if (document.containsKey("_id")) {
+            return document;
+        }
+        BsonDocument result = new BsonDocument("_id", new BsonObjectId());
+        result.putAll(document);
+        return result;
+    }
+}
@@ -0,0 +1,196 @@
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按城市统计用户数的物化视图，等价于 match(age >= minAge) -> group($city, count) -> sort(count 降序)
+ *
+ * 由 MongoDBUtil.materializeCityCounts 创建：先全量导入，之后由变更流（副本集）或 MongoDBUtil 的写入回调
+ * （单机部署不支持变更流时）增量维护。每个计入统计的文档记录它当前的城市，文档更新或删除时先减掉旧城市再加上新城市，
+ * 重复收到同一事件不会重复计数。
+ *
+ * 读取不访问服务端：count 直接查表，snapshot 返回缓存的快照，只有数据变化后的第一次读取才重建。
+ */
+public class CityCountView implements DocumentChangeListener, AutoCloseable {
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+    private final int minAge;
+
+    // 以下字段由 this 保护
+    // 计入统计的文档 _id -> 城市
+    private final Map<Object, String> cities = new HashMap<>();
+    private final Map<String, Long> counts = new HashMap<>();
+
+    private volatile Map<String, Long> snapshot;
+    private volatile boolean closed;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+    private volatile Runnable detach;
+
+    public CityCountView(int minAge) {
+        this.minAge = minAge;
+    }
+
+    public int getMinAge() {
+        return minAge;
+    }
+
+    @Override
+    public synchronized void onUpsert(Document document) {
+        Object id = document.get("_id");
+        if (id == null) {
+            return;
+        }
+        remove(id);
+        Object age = document.get("age");
+        if (age instanceof Number && ((Number) age).doubleValue() >= minAge) {
+            // 没有 city 字段的文档与 $group 一样归入 null
+            String city = document.get("city") == null ? null : document.get("city").toString();
+            cities.put(id, city);
+            counts.merge(city, 1L, Long::sum);
+        }
+        snapshot = null;
+    }
+
+    @Override
+    public synchronized void onDelete(Object id) {
+        remove(id);
+        snapshot = null;
+    }
+
+    private void remove(Object id) {
+        if (cities.containsKey(id)) {
+            String city = cities.remove(id);
+            counts.computeIfPresent(city, (key, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    private synchronized void clear() {
+        cities.clear();
+        counts.clear();
+        snapshot = null;
+    }
+
+    /**
+     * 某个城市的用户数
+     */
+    public synchronized long count(String city) {
+        Long count = counts.get(city);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 城市 -> 用户数，按用户数降序；返回的 Map 不可修改，数据未变化时重复调用返回同一个对象
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.entrySet());
+                entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+                Map<String, Long> sorted = new LinkedHashMap<>();
+                for (Map.Entry<String, Long> entry : entries) {
+                    sorted.put(entry.getKey(), entry.getValue());
+                }
+                snapshot = Collections.unmodifiableMap(sorted);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * 是否由变更流维护；否则依赖 MongoDBUtil 的写入回调，绕过 MongoDBUtil 的写入不会反映到视图
+     */
+    public boolean isFollowingChangeStream() {
+        return cursor != null;
+    }
+
+    // 在后台线程中消费变更流
+    void follow(MongoChangeStreamCursor<ChangeStreamDocument<Document>> changeStream) {
+        this.cursor = changeStream;
+        Thread thread = new Thread(this::consume, "city-count-view");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // 取消注册写入回调
+    void onClose(Runnable detach) {
+        this.detach = detach;
+    }
+
+    private void consume() {
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> changeStream = cursor;
+        try {
+            while (!closed && changeStream.hasNext()) {
+                apply(changeStream.next());
+            }
+        } catch (MongoException e) {
+            // 可恢复的错误驱动会自动重连，走到这里说明变更流已不可用，视图不再更新
+            if (!closed) {
+                System.err.println("City count view stopped following change stream: " + e.getMessage());
+            }
+        } catch (IllegalStateException e) {
+            // close 时关闭了游标
+        }
+    }
+
+    private void apply(ChangeStreamDocument<Document> event) {
+        switch (event.getOperationType()) {
+            case INSERT:
+            case UPDATE:
+            case REPLACE:
+                // fullDocument 为空说明文档在查回之前已被删除，随后的 delete 事件会处理
+                if (event.getFullDocument() != null) {
+                    onUpsert(event.getFullDocument());
+                }
+                break;
+            case DELETE:
+                onDelete(idOf(event.getDocumentKey()));
+                break;
+            case DROP:
+            case DROP_DATABASE:
+                clear();
+                break;
+            default:
+                break;
+        }
+    }
+
+    // documentKey 是 BsonDocument，转成与 Document 中相同的 Java 类型，才能和导入时记录的 _id 对上
+    private static Object idOf(BsonDocument documentKey) {
+        Document key = DOCUMENT_CODEC.decode(new BsonDocumentReader(documentKey), DecoderContext.builder().build());
+        return key.get("_id");
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> changeStream = cursor;
+        if (changeStream != null) {
+            changeStream.close();
+        }
+        Runnable hook = detach;
+        if (hook != null) {
+            hook.run();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CityCountView{minAge=" + minAge + ", changeStream=" + isFollowingChangeStream() + ", counts=" + snapshot() + "}";
+    }
+}
@@ -0,0 +1,279 @@
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 按 _id 读取文档的两级缓存：本地 NearCache -> 共享 SharedCache -> 数据库，由 MongoDBUtil.createCache 创建。
+ *
+ * 针对读多写少的场景，对应 day7 的三类缓存问题：
+ * - 穿透：布隆过滤器中没有的 _id 直接返回 null；过滤器误判或已删除的 _id，查库后缓存一个空值（时间较短）
+ * - 击穿：同一个 _id 同时只有一个线程查共享缓存和数据库，其他线程等待它的结果
+ * - 雪崩：两级缓存的过期时间都加随机增量
+ *
+ * 通过 MongoDBUtil 的写入会回调 onUpsert/onDelete，先写库再删两级缓存（cache-aside），下次读取重新加载。
+ * 加载开始时记下 _id 所在条带的失效次数，回填缓存和失效在条带锁内互斥：加载期间发生过失效就不回填，
+ * 避免把写入前读到的旧值写回去；失效之后的读取也不再等待失效之前开始的加载。
+ * 其他进程的写入只会删掉共享缓存，本进程的本地缓存要等过期，所以本地缓存的过期时间应较短；
+ * 条带锁只在本进程内有效，与其他进程的失效并发时，共享缓存中仍可能留下旧值直到过期。
+ * 绕过 MongoDBUtil 插入的文档不在布隆过滤器中，会一直读不到，需要 MongoDBUtil.rebuildCacheFilter。
+ *
+ * 缓存中保存 BSON 字节，每次 get 解码出新的 Document，调用方修改返回值不影响缓存。
+ */
+public class DocumentCache implements DocumentChangeListener, AutoCloseable {
+    public static final int DEFAULT_NEAR_MAX_SIZE = 10_000;
+    public static final long DEFAULT_NEAR_TTL_MILLIS = 5_000;
+    public static final long DEFAULT_SHARED_TTL_MILLIS = 300_000;
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 30_000;
+    public static final double DEFAULT_TTL_JITTER = 0.1;
+    public static final double DEFAULT_FPP = 0.001;
+
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+    // 条带数，_id 按哈希分配到条带
+    private static final int STRIPES = 64;
+    // 空值缓存的标记：文档不存在
+    private static final byte[] ABSENT = new byte[0];
+
+    private final String keyPrefix;
+    private final Function<Object, Document> loader;
+    private final NearCache<Object, byte[]> near;
+    private final SharedCache shared;
+    private final long nearTtlMillis;
+    private final long sharedTtlMillis;
+    private final long negativeTtlMillis;
+    private final double jitter;
+
+    private volatile BloomFilter filter;
+    // 重建中的过滤器，重建期间插入的文档同时加入
+    private volatile BloomFilter building;
+    private volatile Runnable detach;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    // _id -> 正在进行的加载
+    private final Map<Object, CompletableFuture<byte[]>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong nearHits = new AtomicLong();
+    private final AtomicLong sharedHits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong filtered = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private static final class Stripe {
+        // 条带内每次失效加 1，由条带锁保护；与加载开始时的值不同，说明加载期间文档可能被修改或删除
+        long epoch;
+    }
+
+    public DocumentCache(String keyPrefix, Function<Object, Document> loader, SharedCache shared) {
+        this(keyPrefix, loader, shared, DEFAULT_NEAR_MAX_SIZE, DEFAULT_NEAR_TTL_MILLIS, DEFAULT_SHARED_TTL_MILLIS,
+                DEFAULT_NEGATIVE_TTL_MILLIS, DEFAULT_TTL_JITTER);
+    }
+
+    /**
+     * @param keyPrefix 共享缓存中 key 的前缀，一般为集合名
+     * @param loader 按 _id 查库，不存在时返回 null
+     * @param nearMaxSize 本地缓存最多条目数
+     * @param nearTtlMillis 本地缓存过期时间
+     * @param sharedTtlMillis 共享缓存过期时间
+     * @param negativeTtlMillis 空值在两级缓存中的过期时间
+     * @param jitter 过期时间的随机增量占比
+     */
+    public DocumentCache(String keyPrefix, Function<Object, Document> loader, SharedCache shared, int nearMaxSize,
+                         long nearTtlMillis, long sharedTtlMillis, long negativeTtlMillis, double jitter) {
+        if (nearTtlMillis <= 0 || sharedTtlMillis <= 0 || negativeTtlMillis <= 0) {
+            throw new IllegalArgumentException("缓存过期时间必须为正数：near=" + nearTtlMillis + ", shared="
+                    + sharedTtlMillis + ", negative=" + negativeTtlMillis);
+        }
+        this.keyPrefix = keyPrefix + ":";
+        this.loader = loader;
+        this.near = new NearCache<>(nearMaxSize, jitter);
+        this.shared = shared;
+        this.nearTtlMillis = nearTtlMillis;
+        this.sharedTtlMillis = sharedTtlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.jitter = jitter;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * 按 _id 读取
+     * @return 文档，不存在时为 null
+     */
+    public Document get(Object id) {
+        String key = key(id);
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(key)) {
+            filtered.incrementAndGet();
+            return null;
+        }
+        byte[] bytes = near.get(id);
+        if (bytes != null) {
+            nearHits.incrementAndGet();
+            return decode(bytes);
+        }
+        return decode(loadOnce(id, key));
+    }
+
+    // 同一个 _id 只有第一个线程加载，其他线程等待同一个结果
+    private byte[] loadOnce(Object id, String key) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = loading.putIfAbsent(id, result);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            byte[] bytes = load(id, key);
+            result.complete(bytes);
+            return bytes;
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(id, result);
+        }
+    }
+
+    // 先记下失效次数再读；回填时次数没变才写入，与 invalidate 在同一把锁内，不会在失效之后写回旧值
+    private byte[] load(Object id, String key) {
+        Stripe stripe = stripe(id);
+        long epoch;
+        synchronized (stripe) {
+            epoch = stripe.epoch;
+        }
+        byte[] bytes = shared.get(key);
+        if (bytes != null) {
+            sharedHits.incrementAndGet();
+            synchronized (stripe) {
+                if (stripe.epoch == epoch) {
+                    near.put(id, bytes, bytes.length == 0 ? negativeTtlMillis : nearTtlMillis);
+                }
+            }
+            return bytes;
+        }
+        loads.incrementAndGet();
+        Document document = loader.apply(id);
+        bytes = document == null ? ABSENT : encode(document);
+        long ttl = document == null ? negativeTtlMillis : sharedTtlMillis;
+        synchronized (stripe) {
+            if (stripe.epoch == epoch) {
+                shared.set(key, bytes, ttl + (long) (ttl * jitter * ThreadLocalRandom.current().nextDouble()));
+                near.put(id, bytes, document == null ? negativeTtlMillis : nearTtlMillis);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 删除两级缓存中的 _id，下次读取重新加载
+     */
+    public void invalidate(Object id) {
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            stripe.epoch++;
+            // 之后的读取重新加载，不等待失效之前开始的加载
+            loading.remove(id);
+            near.remove(id);
+            shared.delete(key(id));
+        }
+    }
+
+    private Stripe stripe(Object id) {
+        int h = id.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    @Override
+    public void onUpsert(Document document) {
+        Object id = document.get("_id");
+        if (id == null) {
+            return;
+        }
+        // 新插入的文档先加入过滤器，再删掉可能存在的空值缓存。
+        // 先读 building 再读 filter，与 rebuildFilter 的发布顺序相反：读到 building 为 null 时，
+        // 已结束的重建一定先替换了 filter，不会漏掉正在换下的过滤器
+        String key = key(id);
+        BloomFilter next = building;
+        BloomFilter current = filter;
+        if (next != null) {
+            next.put(key);
+        }
+        if (current != null) {
+            current.put(key);
+        }
+        invalidate(id);
+    }
+
+    @Override
+    public void onDelete(Object id) {
+        invalidate(id);
+    }
+
+    // 由 MongoDBUtil 调用：scan 把集合中全部 _id 交给传入的 Consumer，完成后替换旧过滤器，重建期间旧过滤器照常使用
+    void rebuildFilter(long expectedInsertions, Consumer<Consumer<Object>> scan) {
+        BloomFilter rebuilt = new BloomFilter(expectedInsertions, DEFAULT_FPP);
+        building = rebuilt;
+        try {
+            scan.accept(id -> rebuilt.put(key(id)));
+            filter = rebuilt;
+        } finally {
+            building = null;
+        }
+    }
+
+    // 取消注册写入回调
+    void onClose(Runnable detach) {
+        this.detach = detach;
+    }
+
+    private String key(Object id) {
+        // ObjectId 与其十六进制字符串在共享缓存中是不同的 key
+        return id instanceof ObjectId ? keyPrefix + "oid:" + ((ObjectId) id).toHexString() : keyPrefix + id;
+    }
+
+    private static byte[] encode(Document document) {
+        RawBsonDocument raw = new RawBsonDocument(document, DOCUMENT_CODEC);
+        byte[] bytes = new byte[raw.getByteBuffer().remaining()];
+        raw.getByteBuffer().get(bytes);
+        return bytes;
+    }
+
+    private static Document decode(byte[] bytes) {
+        if (bytes.length == 0) {
+            return null;
+        }
+        return new RawBsonDocument(bytes).decode(DOCUMENT_CODEC);
+    }
+
+    public int nearSize() {
+        return near.size();
+    }
+
+    @Override
+    public void close() {
+        Runnable hook = detach;
+        if (hook != null) {
+            hook.run();
+        }
+        near.clear();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DocumentCache{nearHits=%d, sharedHits=%d, loads=%d, filtered=%d, coalesced=%d, nearSize=%d}",
+                nearHits.get(), sharedHits.get(), loads.get(), filtered.get(), coalesced.get(), near.size());
+    }
+}
@@ -0,0 +1,18 @@
+import org.bson.Document;
+
+/**
+ * 通过 MongoDBUtil 写入集合后的回调，用于维护集合之外的派生数据（例如倒排索引）
+ * 回调在写操作的线程中同步执行，应尽快返回
+ */
+public interface DocumentChangeListener {
+
+    /**
+     * 文档被插入或更新，参数为写入后的完整文档
+     */
+    void onUpsert(Document document);
+
+    /**
+     * 文档被删除
+     */
+    void onDelete(Object id);
+}
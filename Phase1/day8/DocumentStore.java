@@ -0,0 +1,92 @@
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MongoDBUtil 使用的存储后端：MongoDocumentStore 连接 MongoDB，InMemoryDocumentStore 在进程内模拟，
+ * 用于没有 MongoDB 的机器上测试和压测。
+ *
+ * 读写方法带文档类型 clazz，由注册的编解码器负责 Java 对象与 BSON 之间的转换（Document、RawBsonDocument 或 POJO）；
+ * 出错时抛出与驱动相同的异常（MongoWriteException、MongoBulkWriteException 等），调用方不需要区分后端。
+ */
+public interface DocumentStore extends AutoCloseable {
+
+    /**
+     * 创建集合
+     * @return 集合已存在时返回 false
+     */
+    boolean createCollection(String collectionName);
+
+    /**
+     * 创建索引，keys 形如 {field: 1}
+     */
+    void createIndex(String collectionName, Bson keys);
+
+    /**
+     * 插入文档，没有 _id 时生成
+     * @return 文档的 _id
+     */
+    <T> BsonValue insertOne(String collectionName, T document, Class<T> clazz);
+
+    /**
+     * 有序插入，遇到第一个错误停止并抛出 MongoBulkWriteException
+     * @return 下标 -> _id
+     */
+    <T> Map<Integer, BsonValue> insertMany(String collectionName, List<? extends T> documents, Class<T> clazz);
+
+    /**
+     * 查询，返回的游标必须关闭
+     * @param filter null 表示全部
+     * @param projection null 表示全部字段
+     * @param batchSize 每批取回的文档数，0 表示默认
+     */
+    <T> MongoCursor<T> find(String collectionName, Bson filter, Bson projection, int batchSize, Class<T> clazz);
+
+    <T> T findOne(String collectionName, Bson filter, Class<T> clazz);
+
+    UpdateResult updateOne(String collectionName, Bson filter, Bson update);
+
+    UpdateResult updateMany(String collectionName, Bson filter, Bson update);
+
+    /**
+     * 原子地更新一个文档
+     * @return 更新后的文档，没有匹配时为 null
+     */
+    Document findOneAndUpdate(String collectionName, Bson filter, Bson update);
+
+    /**
+     * 原子地删除一个文档
+     * @return 被删除的文档，没有匹配时为 null
+     */
+    Document findOneAndDelete(String collectionName, Bson filter);
+
+    DeleteResult deleteOne(String collectionName, Bson filter);
+
+    DeleteResult deleteMany(String collectionName, Bson filter);
+
+    List<Document> aggregate(String collectionName, List<? extends Bson> pipeline);
+
+    /**
+     * 无序批量写入，部分操作失败时抛出 MongoBulkWriteException，其中包含成功部分的结果
+     */
+    <T> BulkWriteResult bulkWrite(String collectionName, List<? extends WriteModel<? extends T>> requests, Class<T> clazz);
+
+    /**
+     * 打开集合的变更流，fullDocument 为更新后的完整文档
+     * @throws UnsupportedOperationException 后端不支持变更流
+     */
+    MongoChangeStreamCursor<ChangeStreamDocument<Document>> watch(String collectionName);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,719 @@
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.WriteError;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteInsert;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonNull;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内的存储后端，不需要 MongoDB 服务，用于测试和压测 MongoDBUtil（批量写入、流式查询、缓存等）
+ *
+ * 文档以 BsonDocument 保存，写入和读取都经过编解码器，与真实驱动一样得到互不共享的副本；
+ * 查询、更新、投影和聚合的语义见 BsonDocuments。createIndex 建立单字段的有序索引（复合索引只索引第一个字段），
+ * 查询中对索引字段的等值、$in 或范围条件先用索引取候选文档，再用完整条件过滤；_id 总是有索引。
+ * 每个集合一把读写锁，单个写操作是原子的；游标持有打开时的文档快照，不受之后写入的影响。
+ * 不支持变更流。
+ */
+public class InMemoryDocumentStore implements DocumentStore {
+    private static final int DEFAULT_BATCH_SIZE = 101;
+    private static final int DUPLICATE_KEY = 11000;
+    private static final ServerAddress ADDRESS = new ServerAddress("in-memory");
+
+    private final CodecRegistry codecRegistry;
+    private final Map<String, MemoryCollection> collections = new ConcurrentHashMap<>();
+
+    public InMemoryDocumentStore() {
+        this(MongoDBUtil.codecRegistry());
+    }
+
+    public InMemoryDocumentStore(CodecRegistry codecRegistry) {
+        this.codecRegistry = codecRegistry;
+    }
+
+    private MemoryCollection collection(String collectionName) {
+        return collections.computeIfAbsent(collectionName, name -> new MemoryCollection(name));
+    }
+
+    private BsonDocument toBson(Bson bson) {
+        return bson == null ? new BsonDocument() : bson.toBsonDocument(BsonDocument.class, codecRegistry);
+    }
+
+    // 编码为 BSON；没有 _id 时生成，可回填 _id 的类型（Document、UserCodec 等）会写回原对象
+    private <T> BsonDocument encode(T document, Class<T> clazz) {
+        Codec<T> codec = codecRegistry.get(clazz);
+        if (codec instanceof CollectibleCodec) {
+            document = ((CollectibleCodec<T>) codec).generateIdIfAbsentFromDocument(document);
+        }
+        BsonDocument bson = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(bson), document,
+                EncoderContext.builder().isEncodingCollectibleDocument(true).build());
+        return BsonDocuments.withId(bson);
+    }
+
+    private <T> T decode(BsonDocument document, Class<T> clazz) {
+        return codecRegistry.get(clazz).decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+
+    @Override
+    public boolean createCollection(String collectionName) {
+        return collections.putIfAbsent(collectionName, new MemoryCollection(collectionName)) == null;
+    }
+
+    @Override
+    public void createIndex(String collectionName, Bson keys) {
+        collection(collectionName).createIndex(toBson(keys).getFirstKey());
+    }
+
+    @Override
+    public <T> BsonValue insertOne(String collectionName, T document, Class<T> clazz) {
+        BsonDocument bson = encode(document, clazz);
+        collection(collectionName).insert(bson);
+        return bson.get("_id");
+    }
+
+    @Override
+    public <T> Map<Integer, BsonValue> insertMany(String collectionName, List<? extends T> documents, Class<T> clazz) {
+        MemoryCollection collection = collection(collectionName);
+        Map<Integer, BsonValue> ids = new LinkedHashMap<>();
+        List<BulkWriteInsert> inserts = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            BsonDocument bson = encode(documents.get(i), clazz);
+            try {
+                collection.insert(bson);
+            } catch (MongoWriteException e) {
+                // 有序插入：第一个错误之后的文档不再插入
+                BulkWriteResult partial = BulkWriteResult.acknowledged(ids.size(), 0, 0, 0,
+                        Collections.<BulkWriteUpsert>emptyList(), inserts);
+                throw new MongoBulkWriteException(partial, Collections.singletonList(toBulkError(e, i)), null, ADDRESS,
+                        Collections.<String>emptySet());
+            }
+            ids.put(i, bson.get("_id"));
+            inserts.add(new BulkWriteInsert(i, bson.get("_id")));
+        }
+        return ids;
+    }
+
+    @Override
+    public <T> MongoCursor<T> find(String collectionName, Bson filter, Bson projection, int batchSize, Class<T> clazz) {
+        BsonDocument filterDocument = toBson(filter);
+        List<BsonDocument> candidates = collection(collectionName).candidates(filterDocument);
+        return new MemoryCursor<>(candidates, projection == null ? null : toBson(projection),
+                batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE, clazz);
+    }
+
+    @Override
+    public <T> T findOne(String collectionName, Bson filter, Class<T> clazz) {
+        try (MongoCursor<T> cursor = find(collectionName, filter, null, 1, clazz)) {
+            return cursor.hasNext() ? cursor.next() : null;
+        }
+    }
+
+    @Override
+    public UpdateResult updateOne(String collectionName, Bson filter, Bson update) {
+        return collection(collectionName).update(toBson(filter), toBson(update), false, false, null);
+    }
+
+    @Override
+    public UpdateResult updateMany(String collectionName, Bson filter, Bson update) {
+        return collection(collectionName).update(toBson(filter), toBson(update), true, false, null);
+    }
+
+    @Override
+    public Document findOneAndUpdate(String collectionName, Bson filter, Bson update) {
+        List<BsonDocument> updated = new ArrayList<>(1);
+        collection(collectionName).update(toBson(filter), toBson(update), false, false, updated);
+        return updated.isEmpty() ? null : decode(updated.get(0), Document.class);
+    }
+
+    @Override
+    public Document findOneAndDelete(String collectionName, Bson filter) {
+        List<BsonDocument> deleted = new ArrayList<>(1);
+        collection(collectionName).delete(toBson(filter), false, deleted);
+        return deleted.isEmpty() ? null : decode(deleted.get(0), Document.class);
+    }
+
+    @Override
+    public DeleteResult deleteOne(String collectionName, Bson filter) {
+        return DeleteResult.acknowledged(collection(collectionName).delete(toBson(filter), false, null));
+    }
+
+    @Override
+    public DeleteResult deleteMany(String collectionName, Bson filter) {
+        return DeleteResult.acknowledged(collection(collectionName).delete(toBson(filter), true, null));
+    }
+
+    @Override
+    public List<Document> aggregate(String collectionName, List<? extends Bson> pipeline) {
+        List<BsonDocument> stages = new ArrayList<>(pipeline.size());
+        for (Bson stage : pipeline) {
+            stages.add(toBson(stage));
+        }
+        // 第一个阶段是 $match 时先用索引取候选文档
+        BsonDocument filter = !stages.isEmpty() && stages.get(0).getFirstKey().equals("$match")
+                ? stages.get(0).getDocument("$match") : new BsonDocument();
+        List<BsonDocument> results = BsonDocuments.aggregate(collection(collectionName).candidates(filter), stages);
+        List<Document> documents = new ArrayList<>(results.size());
+        for (BsonDocument result : results) {
+            documents.add(decode(result, Document.class));
+        }
+        return documents;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> BulkWriteResult bulkWrite(String collectionName, List<? extends WriteModel<? extends T>> requests,
+                                         Class<T> clazz) {
+        MemoryCollection collection = collection(collectionName);
+        int inserted = 0;
+        int matched = 0;
+        int modified = 0;
+        int deleted = 0;
+        List<BulkWriteInsert> inserts = new ArrayList<>();
+        List<BulkWriteUpsert> upserts = new ArrayList<>();
+        List<BulkWriteError> errors = new ArrayList<>();
+        // 无序写入：单个操作失败不影响其他操作
+        for (int i = 0; i < requests.size(); i++) {
+            WriteModel<? extends T> request = requests.get(i);
+            try {
+                if (request instanceof InsertOneModel) {
+                    BsonDocument bson = encode(((InsertOneModel<T>) request).getDocument(), clazz);
+                    collection.insert(bson);
+                    inserted++;
+                    inserts.add(new BulkWriteInsert(i, bson.get("_id")));
+                    continue;
+                }
+                if (request instanceof DeleteOneModel) {
+                    deleted += collection.delete(toBson(((DeleteOneModel<T>) request).getFilter()), false, null);
+                    continue;
+                }
+                if (request instanceof DeleteManyModel) {
+                    deleted += collection.delete(toBson(((DeleteManyModel<T>) request).getFilter()), true, null);
+                    continue;
+                }
+                UpdateResult result;
+                if (request instanceof UpdateOneModel) {
+                    UpdateOneModel<T> update = (UpdateOneModel<T>) request;
+                    result = collection.update(toBson(update.getFilter()), updateOf(update.getUpdate()), false,
+                            update.getOptions().isUpsert(), null);
+                } else if (request instanceof UpdateManyModel) {
+                    UpdateManyModel<T> update = (UpdateManyModel<T>) request;
+                    result = collection.update(toBson(update.getFilter()), updateOf(update.getUpdate()), true,
+                            update.getOptions().isUpsert(), null);
+                } else if (request instanceof ReplaceOneModel) {
+                    ReplaceOneModel<T> replace = (ReplaceOneModel<T>) request;
+                    BsonDocument replacement = new BsonDocument();
+                    codecRegistry.get(clazz).encode(new BsonDocumentWriter(replacement), replace.getReplacement(),
+                            EncoderContext.builder().isEncodingCollectibleDocument(true).build());
+                    result = collection.update(toBson(replace.getFilter()), replacement, false,
+                            replace.getReplaceOptions().isUpsert(), null);
+                } else {
+                    throw new UnsupportedOperationException("Unsupported write model: " + request.getClass().getSimpleName());
+                }
+                if (result.getUpsertedId() != null) {
+                    upserts.add(new BulkWriteUpsert(i, result.getUpsertedId()));
+                } else {
+                    matched += (int) result.getMatchedCount();
+                    modified += (int) result.getModifiedCount();
+                }
+            } catch (MongoWriteException e) {
+                errors.add(toBulkError(e, i));
+            }
+        }
+        BulkWriteResult result = BulkWriteResult.acknowledged(inserted, matched, deleted, modified, upserts, inserts);
+        if (!errors.isEmpty()) {
+            throw new MongoBulkWriteException(result, errors, null, ADDRESS, Collections.<String>emptySet());
+        }
+        return result;
+    }
+
+    // 更新管道（List<Bson>）不支持
+    private BsonDocument updateOf(Bson update) {
+        if (update == null) {
+            throw new UnsupportedOperationException("Update pipelines are not supported");
+        }
+        return toBson(update);
+    }
+
+    private static BulkWriteError toBulkError(MongoWriteException e, int index) {
+        return new BulkWriteError(e.getError().getCode(), e.getError().getMessage(), e.getError().getDetails(), index);
+    }
+
+    @Override
+    public MongoChangeStreamCursor<ChangeStreamDocument<Document>> watch(String collectionName) {
+        throw new UnsupportedOperationException("In-memory store does not support change streams");
+    }
+
+    @Override
+    public void close() {
+        collections.clear();
+    }
+
+    @Override
+    public String toString() {
+        Map<String, Integer> sizes = new TreeMap<>();
+        for (MemoryCollection collection : collections.values()) {
+            sizes.put(collection.name, collection.size());
+        }
+        return "InMemoryDocumentStore" + sizes;
+    }
+
+    // 一个集合：按插入顺序保存的文档和各字段的有序索引
+    private static final class MemoryCollection {
+        final String name;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // 以下字段由 lock 保护；文档写入后不再修改，更新时整体替换
+        // 规范化的 _id -> 文档
+        final Map<BsonValue, BsonDocument> documents = new LinkedHashMap<>();
+        // 字段路径 -> (字段值 -> 文档 _id)；数组字段按每个元素索引，字段不存在按 null 索引
+        final Map<String, NavigableMap<BsonValue, Set<BsonValue>>> indexes = new HashMap<>();
+
+        MemoryCollection(String name) {
+            this.name = name;
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return documents.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void createIndex(String field) {
+            lock.writeLock().lock();
+            try {
+                if (field.equals("_id") || indexes.containsKey(field)) {
+                    return;
+                }
+                NavigableMap<BsonValue, Set<BsonValue>> index = new TreeMap<>(BsonDocuments.ORDER);
+                indexes.put(field, index);
+                for (Map.Entry<BsonValue, BsonDocument> entry : documents.entrySet()) {
+                    addToIndex(index, field, entry.getKey(), entry.getValue());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private static void addToIndex(NavigableMap<BsonValue, Set<BsonValue>> index, String field, BsonValue id,
+                                       BsonDocument document) {
+            for (BsonValue value : indexKeys(document, field)) {
+                index.computeIfAbsent(value, v -> new LinkedHashSet<>()).add(id);
+            }
+        }
+
+        private static void removeFromIndex(NavigableMap<BsonValue, Set<BsonValue>> index, String field, BsonValue id,
+                                            BsonDocument document) {
+            for (BsonValue value : indexKeys(document, field)) {
+                Set<BsonValue> ids = index.get(value);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        index.remove(value);
+                    }
+                }
+            }
+        }
+
+        private static List<BsonValue> indexKeys(BsonDocument document, String field) {
+            List<BsonValue> keys = new ArrayList<>();
+            for (BsonValue value : BsonDocuments.resolve(document, field)) {
+                if (value.isArray()) {
+                    keys.addAll(value.asArray().getValues());
+                } else {
+                    keys.add(value);
+                }
+            }
+            if (keys.isEmpty()) {
+                keys.add(BsonNull.VALUE);
+            }
+            return keys;
+        }
+
+        private void store(BsonValue id, BsonDocument previous, BsonDocument document) {
+            for (Map.Entry<String, NavigableMap<BsonValue, Set<BsonValue>>> index : indexes.entrySet()) {
+                if (previous != null) {
+                    removeFromIndex(index.getValue(), index.getKey(), id, previous);
+                }
+                if (document != null) {
+                    addToIndex(index.getValue(), index.getKey(), id, document);
+                }
+            }
+            if (document == null) {
+                documents.remove(id);
+            } else {
+                documents.put(id, document);
+            }
+        }
+
+        void insert(BsonDocument document) {
+            lock.writeLock().lock();
+            try {
+                BsonValue id = BsonDocuments.key(document.get("_id"));
+                if (documents.containsKey(id)) {
+                    throw duplicateKey(document.get("_id"));
+                }
+                store(id, null, document);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private MongoWriteException duplicateKey(BsonValue id) {
+            String message = "E11000 duplicate key error collection: " + name + " index: _id_ dup key: { _id: " + id + " }";
+            return new MongoWriteException(new WriteError(DUPLICATE_KEY, message, new BsonDocument()), ADDRESS);
+        }
+
+        /**
+         * 更新或替换匹配的文档
+         * @param update 更新操作符文档，或不含操作符的替换文档
+         * @param results 不为 null 时收集更新后的文档
+         */
+        UpdateResult update(BsonDocument filter, BsonDocument update, boolean multi, boolean upsert,
+                            List<BsonDocument> results) {
+            boolean replacement = !BsonDocuments.isUpdateDocument(update);
+            if (replacement && multi) {
+                throw new IllegalArgumentException("Invalid update: replacement document with multi");
+            }
+            lock.writeLock().lock();
+            try {
+                long matched = 0;
+                long modified = 0;
+                for (BsonDocument current : candidates(filter)) {
+                    matched++;
+                    BsonDocument updated = apply(current, update, replacement, false);
+                    if (!updated.equals(current)) {
+                        store(BsonDocuments.key(current.get("_id")), current, updated);
+                        modified++;
+                    }
+                    if (results != null) {
+                        results.add(updated);
+                    }
+                    if (!multi) {
+                        break;
+                    }
+                }
+                if (matched == 0 && upsert) {
+                    BsonDocument seed = replacement ? new BsonDocument() : BsonDocuments.seedFromFilter(filter);
+                    BsonDocument inserted = BsonDocuments.withId(apply(seed, update, replacement, true));
+                    // 条件中的 _id 已存在、只是其他字段不匹配时，与 MongoDB 一样报唯一键冲突，不能覆盖原文档
+                    BsonValue id = BsonDocuments.key(inserted.get("_id"));
+                    if (documents.containsKey(id)) {
+                        throw duplicateKey(inserted.get("_id"));
+                    }
+                    store(id, null, inserted);
+                    if (results != null) {
+                        results.add(inserted);
+                    }
+                    return UpdateResult.acknowledged(0, 0L, inserted.get("_id"));
+                }
+                return UpdateResult.acknowledged(matched, modified, null);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private static BsonDocument apply(BsonDocument current, BsonDocument update, boolean replacement,
+                                          boolean inserting) {
+            if (replacement) {
+                BsonDocument replaced = new BsonDocument();
+                if (current.containsKey("_id")) {
+                    replaced.put("_id", current.get("_id"));
+                }
+                for (Map.Entry<String, BsonValue> entry : update.entrySet()) {
+                    if (!entry.getKey().equals("_id")) {
+                        replaced.put(entry.getKey(), BsonDocuments.copy(entry.getValue()));
+                    }
+                }
+                return replaced;
+            }
+            BsonDocument updated = current.clone();
+            try {
+                BsonDocuments.applyUpdate(updated, update, inserting);
+            } catch (IllegalArgumentException e) {
+                // 与服务端一致，非法更新作为该操作的写入错误
+                throw new MongoWriteException(new WriteError(2, e.getMessage(), new BsonDocument()), ADDRESS);
+            }
+            return updated;
+        }
+
+        long delete(BsonDocument filter, boolean multi, List<BsonDocument> results) {
+            lock.writeLock().lock();
+            try {
+                long deleted = 0;
+                for (BsonDocument current : candidates(filter)) {
+                    store(BsonDocuments.key(current.get("_id")), current, null);
+                    deleted++;
+                    if (results != null) {
+                        results.add(current);
+                    }
+                    if (!multi) {
+                        break;
+                    }
+                }
+                return deleted;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * 与条件匹配的文档：能用索引时按索引顺序取候选文档，否则按插入顺序扫描全部文档
+         */
+        List<BsonDocument> candidates(BsonDocument filter) {
+            lock.readLock().lock();
+            try {
+                Iterable<BsonValue> ids = plan(filter);
+                List<BsonDocument> matched = new ArrayList<>();
+                if (ids == null) {
+                    for (BsonDocument document : documents.values()) {
+                        if (BsonDocuments.matches(document, filter)) {
+                            matched.add(document);
+                        }
+                    }
+                } else {
+                    Set<BsonValue> seen = new LinkedHashSet<>();
+                    for (BsonValue id : ids) {
+                        BsonDocument document = documents.get(id);
+                        if (document != null && seen.add(id) && BsonDocuments.matches(document, filter)) {
+                            matched.add(document);
+                        }
+                    }
+                }
+                return matched;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // 在顶层条件（含 $and）中找第一个可用索引的条件，返回候选 _id；找不到返回 null
+        private Iterable<BsonValue> plan(BsonDocument filter) {
+            for (Map.Entry<String, BsonValue> entry : filter.entrySet()) {
+                String field = entry.getKey();
+                Iterable<BsonValue> ids = null;
+                if (field.equals("$and")) {
+                    for (BsonValue clause : entry.getValue().asArray()) {
+                        ids = plan(clause.asDocument());
+                        if (ids != null) {
+                            break;
+                        }
+                    }
+                } else if (field.equals("_id")) {
+                    ids = planId(entry.getValue());
+                } else if (indexes.containsKey(field)) {
+                    ids = planIndex(indexes.get(field), entry.getValue());
+                }
+                if (ids != null) {
+                    return ids;
+                }
+            }
+            return null;
+        }
+
+        private Iterable<BsonValue> planId(BsonValue condition) {
+            List<BsonValue> values = equalityValues(condition);
+            if (values == null) {
+                return null;
+            }
+            List<BsonValue> ids = new ArrayList<>(values.size());
+            for (BsonValue value : values) {
+                ids.add(BsonDocuments.key(value));
+            }
+            return ids;
+        }
+
+        private static Iterable<BsonValue> planIndex(NavigableMap<BsonValue, Set<BsonValue>> index, BsonValue condition) {
+            List<BsonValue> values = equalityValues(condition);
+            List<BsonValue> ids = new ArrayList<>();
+            if (values != null) {
+                for (BsonValue value : values) {
+                    Set<BsonValue> matched = index.get(value);
+                    if (matched != null) {
+                        ids.addAll(matched);
+                    }
+                }
+                return ids;
+            }
+            if (!BsonDocuments.isOperatorDocument(condition)) {
+                return null;
+            }
+            // 范围条件：只在下界或上界的类型范围内扫描
+            BsonDocument operators = condition.asDocument();
+            BsonValue lower = null;
+            BsonValue upper = null;
+            boolean lowerInclusive = false;
+            boolean upperInclusive = false;
+            for (Map.Entry<String, BsonValue> entry : operators.entrySet()) {
+                switch (entry.getKey()) {
+                    case "$gt":
+                    case "$gte":
+                        lower = entry.getValue();
+                        lowerInclusive = entry.getKey().equals("$gte");
+                        break;
+                    case "$lt":
+                    case "$lte":
+                        upper = entry.getValue();
+                        upperInclusive = entry.getKey().equals("$lte");
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (lower == null && upper == null) {
+                return null;
+            }
+            BsonValue bracket = lower != null ? lower : upper;
+            NavigableMap<BsonValue, Set<BsonValue>> range = index;
+            if (lower != null) {
+                range = range.tailMap(lower, lowerInclusive);
+            }
+            if (upper != null) {
+                range = range.headMap(upper, upperInclusive);
+            }
+            for (Map.Entry<BsonValue, Set<BsonValue>> entry : range.entrySet()) {
+                int type = BsonDocuments.compareType(entry.getKey(), bracket);
+                if (type > 0) {
+                    break;
+                }
+                if (type == 0) {
+                    ids.addAll(entry.getValue());
+                }
+            }
+            return ids;
+        }
+
+        // 等值或 $in 条件中的值（数组和文档值不走索引）；其他条件返回 null
+        private static List<BsonValue> equalityValues(BsonValue condition) {
+            List<BsonValue> values;
+            if (!BsonDocuments.isOperatorDocument(condition)) {
+                values = Collections.singletonList(condition);
+            } else if (condition.asDocument().containsKey("$eq")) {
+                values = Collections.singletonList(condition.asDocument().get("$eq"));
+            } else if (condition.asDocument().containsKey("$in")) {
+                values = condition.asDocument().getArray("$in").getValues();
+            } else {
+                return null;
+            }
+            for (BsonValue value : values) {
+                if (value.isArray() || value.isDocument() || value.isNull()) {
+                    return null;
+                }
+            }
+            return values;
+        }
+    }
+
+    // 游标：打开时取得匹配文档的快照，按批投影、解码
+    private final class MemoryCursor<T> implements MongoCursor<T> {
+        private final Iterator<BsonDocument> candidates;
+        private final BsonDocument projection;
+        private final int batchSize;
+        private final Class<T> clazz;
+        private final List<T> batch;
+        private int position;
+        private boolean closed;
+
+        MemoryCursor(List<BsonDocument> candidates, BsonDocument projection, int batchSize, Class<T> clazz) {
+            this.candidates = candidates.iterator();
+            this.projection = projection;
+            this.batchSize = batchSize;
+            this.clazz = clazz;
+            this.batch = new ArrayList<>(Math.min(batchSize, candidates.size()));
+        }
+
+        private void fill() {
+            batch.clear();
+            position = 0;
+            while (batch.size() < batchSize && candidates.hasNext()) {
+                batch.add(decode(BsonDocuments.project(candidates.next(), projection), clazz));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                throw new IllegalStateException("Cursor has been closed");
+            }
+            if (position == batch.size()) {
+                fill();
+            }
+            return position < batch.size();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.get(position++);
+        }
+
+        @Override
+        public T tryNext() {
+            return hasNext() ? next() : null;
+        }
+
+        @Override
+        public int available() {
+            return closed ? 0 : batch.size() - position;
+        }
+
+        @Override
+        public ServerCursor getServerCursor() {
+            return null;
+        }
+
+        @Override
+        public ServerAddress getServerAddress() {
+            return ADDRESS;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
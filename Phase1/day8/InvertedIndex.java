@@ -0,0 +1,736 @@
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内倒排索引，对文档的若干字段做全文检索
+ *
+ * 分词：字母数字按连续片段切分并转小写，汉字按单字切分（短语查询依靠位置信息拼回词语）。
+ * 倒排列表：每个文档依次写入 文档号增量、词频、各位置增量，全部用变长字节编码；
+ * 每 64 个文档记录一个跳表项（文档号、字节偏移），AND/短语查询求交集时可以整块跳过。
+ * 排序：BM25（k1=1.2，b=0.75）。跳表项同时记录块内最大词频和最短文档长度，得到块内得分上界：
+ * 前 topK 已满时，AND/短语查询跳过上界不超过第 topK 名得分的整块，OR 查询按 MaxScore 只用
+ * 上界较大的词驱动遍历，上界之和不够进入前 topK 的词只在候选文档上探查。
+ *
+ * 更新沿用 ES 的做法：旧文档只做删除标记，新内容以新的内部文档号追加；内部文档号只增不减，
+ * 所以新文档总是追加在倒排列表末尾。删除标记多于存活文档时合并一次，重新编号并去掉已删除的文档。
+ * 词的文档频率（df）在合并前包含已删除的文档，与 Lucene 相同。
+ *
+ * 读写锁保护：查询之间并发，写入独占。
+ */
+public class InvertedIndex implements DocumentChangeListener {
+
+    public enum Mode {
+        // 包含所有词
+        AND,
+        // 包含任意一个词
+        OR,
+        // 所有词按顺序相邻出现
+        PHRASE
+    }
+
+    /**
+     * 一条命中结果
+     */
+    public static final class Hit {
+        public final Object id;
+        public final double score;
+
+        Hit(Object id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s(%.3f)", id, score);
+        }
+    }
+
+    // users 集合中参与检索的字段，city 在普通文档中位于顶层，在 POJO 文档中位于 address 下
+    public static final List<String> USER_FIELDS =
+            Collections.unmodifiableList(Arrays.asList("username", "city", "address.city", "hobbies"));
+
+    private static final int SKIP_INTERVAL = 64;
+    // 不同字段值之间的位置间隔，避免短语跨字段匹配
+    private static final int VALUE_GAP = 100;
+    private static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // 删除标记超过该数量且多于存活文档时合并
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    private final List<String> fields;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 以下字段由 lock 保护
+    private final Map<String, PostingList> terms = new HashMap<>();
+    private final Map<Object, Integer> docIds = new HashMap<>();
+    private Object[] externalIds = new Object[64];
+    private int[] docLengths = new int[64];
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private int nextDoc;
+    private int liveDocs;
+    private long totalLength;
+
+    public InvertedIndex() {
+        this(USER_FIELDS);
+    }
+
+    /**
+     * @param fields 参与检索的字段，支持 "address.city" 形式的嵌套字段；字段值为字符串或字符串数组
+     */
+    public InvertedIndex(List<String> fields) {
+        this.fields = new ArrayList<>(fields);
+    }
+
+    // ---------------- 分词 ----------------
+
+    /**
+     * 把文本切成词：字母数字连续片段转小写为一个词，每个汉字单独为一个词，其他字符作为分隔符
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (Character.UnicodeScript.of(cp) == Character.UnicodeScript.HAN) {
+                flush(current, tokens);
+                tokens.add(new String(Character.toChars(cp)));
+            } else if (Character.isLetterOrDigit(cp)) {
+                current.appendCodePoint(Character.toLowerCase(cp));
+            } else {
+                flush(current, tokens);
+            }
+        }
+        flush(current, tokens);
+        return tokens;
+    }
+
+    private static void flush(StringBuilder current, List<String> tokens) {
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+            current.setLength(0);
+        }
+    }
+
+    // ---------------- 写入 ----------------
+
+    @Override
+    public void onUpsert(Document document) {
+        Object id = document.get("_id");
+        if (id != null) {
+            upsert(id, document);
+        }
+    }
+
+    @Override
+    public void onDelete(Object id) {
+        delete(id);
+    }
+
+    /**
+     * 索引文档；id 已存在时替换旧内容
+     */
+    public void upsert(Object id, Document document) {
+        // 分词在锁外完成：词 -> 位置列表
+        Map<String, IntList> termPositions = new LinkedHashMap<>();
+        int position = 0;
+        int length = 0;
+        for (String field : fields) {
+            for (String value : values(document, field)) {
+                for (String token : tokenize(value)) {
+                    termPositions.computeIfAbsent(token, t -> new IntList()).add(position++);
+                    length++;
+                }
+                position += VALUE_GAP;
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            Integer old = docIds.get(id);
+            if (old != null) {
+                markDeleted(old);
+            }
+            int doc = nextDoc++;
+            if (doc == externalIds.length) {
+                externalIds = Arrays.copyOf(externalIds, doc * 2);
+                docLengths = Arrays.copyOf(docLengths, doc * 2);
+            }
+            externalIds[doc] = id;
+            docLengths[doc] = length;
+            docIds.put(id, doc);
+            liveDocs++;
+            totalLength += length;
+            for (Map.Entry<String, IntList> entry : termPositions.entrySet()) {
+                IntList positions = entry.getValue();
+                terms.computeIfAbsent(entry.getKey(), t -> new PostingList())
+                        .add(doc, positions.values, positions.size, length);
+            }
+            maybeCompact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(Object id) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docIds.remove(id);
+            if (doc != null) {
+                markDeleted(doc);
+                maybeCompact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 取字段值：字符串取本身，数组取其中的每个元素
+    private static List<String> values(Document document, String path) {
+        Object value = document;
+        for (String part : path.split("\\.")) {
+            if (!(value instanceof Document)) {
+                return Collections.emptyList();
+            }
+            value = ((Document) value).get(part);
+        }
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        if (value instanceof List) {
+            List<String> result = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                if (element != null) {
+                    result.add(element.toString());
+                }
+            }
+            return result;
+        }
+        return Collections.singletonList(value.toString());
+    }
+
+    private void markDeleted(int doc) {
+        deleted.set(doc);
+        deletedCount++;
+        liveDocs--;
+        totalLength -= docLengths[doc];
+    }
+
+    private void maybeCompact() {
+        if (deletedCount > COMPACT_THRESHOLD && deletedCount > liveDocs) {
+            compact();
+        }
+    }
+
+    // 合并：存活文档按原顺序重新编号，重新编码倒排列表，去掉已删除的文档和不再出现的词
+    private void compact() {
+        int[] remap = new int[nextDoc];
+        int live = 0;
+        for (int doc = 0; doc < nextDoc; doc++) {
+            remap[doc] = deleted.get(doc) ? -1 : live++;
+        }
+        Object[] newIds = new Object[Math.max(64, live * 2)];
+        int[] newLengths = new int[newIds.length];
+        for (int doc = 0; doc < nextDoc; doc++) {
+            if (remap[doc] >= 0) {
+                newIds[remap[doc]] = externalIds[doc];
+                newLengths[remap[doc]] = docLengths[doc];
+                docIds.put(externalIds[doc], remap[doc]);
+            }
+        }
+        int[] positions = new int[16];
+        Iterator<Map.Entry<String, PostingList>> it = terms.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, PostingList> entry = it.next();
+            PostingList rebuilt = new PostingList();
+            Cursor cursor = new Cursor(entry.getValue(), 0);
+            while (cursor.next() != NO_MORE_DOCS) {
+                if (remap[cursor.doc] >= 0) {
+                    positions = cursor.positions(positions);
+                    rebuilt.add(remap[cursor.doc], positions, cursor.freq, docLengths[cursor.doc]);
+                }
+            }
+            if (rebuilt.docFreq == 0) {
+                it.remove();
+            } else {
+                entry.setValue(rebuilt);
+            }
+        }
+        externalIds = newIds;
+        docLengths = newLengths;
+        deleted.clear();
+        deletedCount = 0;
+        nextDoc = live;
+    }
+
+    // ---------------- 查询 ----------------
+
+    /**
+     * 检索并按 BM25 得分从高到低返回前 topK 条
+     */
+    public List<Hit> search(String query, Mode mode, int topK) {
+        if (topK <= 0) {
+            throw new IllegalArgumentException("topK must be positive: " + topK);
+        }
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (mode == Mode.OR) {
+            queryTerms = new ArrayList<>(new LinkedHashSet<>(queryTerms));
+        }
+        lock.readLock().lock();
+        try {
+            if (liveDocs == 0) {
+                return Collections.emptyList();
+            }
+            List<Cursor> cursors = new ArrayList<>(queryTerms.size());
+            for (int i = 0; i < queryTerms.size(); i++) {
+                PostingList postings = terms.get(queryTerms.get(i));
+                if (postings != null) {
+                    cursors.add(new Cursor(postings, i));
+                } else if (mode != Mode.OR) {
+                    return Collections.emptyList();
+                }
+            }
+            if (cursors.isEmpty()) {
+                return Collections.emptyList();
+            }
+            double avgLength = Math.max(1.0, (double) totalLength / liveDocs);
+            for (Cursor cursor : cursors) {
+                // 未合并的倒排列表仍含已删除的文档，docFreq 可能大于 liveDocs；不截断会得到负的 idf，破坏 MaxScore 的上界
+                double df = Math.min(cursor.postings.docFreq, liveDocs);
+                cursor.idf = Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+                cursor.avgLength = avgLength;
+            }
+            TopHits top = new TopHits(topK);
+            if (mode == Mode.OR) {
+                searchAny(cursors.toArray(new Cursor[0]), top);
+            } else {
+                searchAll(cursors.toArray(new Cursor[0]), mode == Mode.PHRASE, top);
+            }
+            return top.sorted(externalIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 求交集：以最短的倒排列表为主，其他列表用跳表跳到主列表的文档号
+    private void searchAll(Cursor[] cursors, boolean phrase, TopHits top) {
+        Arrays.sort(cursors, Comparator.comparingInt(c -> c.postings.docFreq));
+        Cursor lead = cursors[0];
+        int doc = lead.next();
+        while (doc != NO_MORE_DOCS) {
+            if (top.isFull()) {
+                // 各词在 doc 所在块的得分上界之和进不了前 topK，直接跳到这些块中最先结束的块之后
+                double bound = 0;
+                int blockEnd = NO_MORE_DOCS;
+                for (Cursor cursor : cursors) {
+                    bound += cursor.blockBound(doc);
+                    blockEnd = Math.min(blockEnd, cursor.blockEnd);
+                }
+                if (bound <= top.threshold()) {
+                    doc = blockEnd == NO_MORE_DOCS ? NO_MORE_DOCS : lead.advance(blockEnd + 1);
+                    continue;
+                }
+            }
+            int candidate = doc;
+            for (int i = 1; i < cursors.length; i++) {
+                int other = cursors[i].advance(doc);
+                if (other > doc) {
+                    candidate = other;
+                    break;
+                }
+            }
+            if (candidate != doc) {
+                doc = lead.advance(candidate);
+                continue;
+            }
+            if (!deleted.get(doc) && (!phrase || phraseMatches(cursors))) {
+                double score = 0;
+                for (Cursor cursor : cursors) {
+                    score += cursor.score(docLengths[doc]);
+                }
+                top.offer(doc, score);
+            }
+            doc = lead.next();
+        }
+    }
+
+    // 求并集（MaxScore）：词按得分上界从小到大排列，上界前缀和不超过第 topK 名得分的词为非必要词，
+    // 只命中这些词的文档进不了前 topK；由其余必要词驱动遍历，非必要词只在候选文档上用跳表探查
+    private void searchAny(Cursor[] cursors, TopHits top) {
+        int n = cursors.length;
+        for (Cursor cursor : cursors) {
+            cursor.maxScore = cursor.postings.bound(cursor.idf, cursor.avgLength);
+        }
+        Arrays.sort(cursors, Comparator.comparingDouble(c -> c.maxScore));
+        double[] prefixBound = new double[n + 1];
+        for (int i = 0; i < n; i++) {
+            prefixBound[i + 1] = prefixBound[i] + cursors[i].maxScore;
+            cursors[i].next();
+        }
+        int essential = 0;
+        while (essential < n) {
+            int doc = NO_MORE_DOCS;
+            for (int i = essential; i < n; i++) {
+                doc = Math.min(doc, cursors[i].doc);
+            }
+            if (doc == NO_MORE_DOCS) {
+                return;
+            }
+            double score = 0;
+            for (int i = essential; i < n; i++) {
+                Cursor cursor = cursors[i];
+                if (cursor.doc == doc) {
+                    score += cursor.score(docLengths[doc]);
+                    cursor.next();
+                }
+            }
+            for (int i = essential - 1; i >= 0 && score + prefixBound[i + 1] > top.threshold(); i--) {
+                Cursor cursor = cursors[i];
+                if (cursor.advance(doc) == doc) {
+                    score += cursor.score(docLengths[doc]);
+                }
+            }
+            if (!deleted.get(doc) && top.offer(doc, score)) {
+                while (essential < n && prefixBound[essential + 1] <= top.threshold()) {
+                    essential++;
+                }
+            }
+        }
+    }
+
+    // 单个词对文档的 BM25 得分；块上界用同一公式，保证上界不小于实际得分
+    private static double bm25(double idf, int tf, int length, double avgLength) {
+        return idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+    }
+
+    // 短语：存在位置 p，使第 i 个查询词出现在 p + i
+    private static boolean phraseMatches(Cursor[] cursors) {
+        Cursor first = null;
+        for (Cursor cursor : cursors) {
+            cursor.positionBuffer = cursor.positions(cursor.positionBuffer);
+            if (cursor.queryOffset == 0) {
+                first = cursor;
+            }
+        }
+        for (int i = 0; i < first.freq; i++) {
+            int start = first.positionBuffer[i];
+            boolean all = true;
+            for (Cursor cursor : cursors) {
+                if (cursor != first
+                        && Arrays.binarySearch(cursor.positionBuffer, 0, cursor.freq, start + cursor.queryOffset) < 0) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ---------------- 统计 ----------------
+
+    public int docCount() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 所有倒排列表编码后的字节数
+    public long postingBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (PostingList postings : terms.values()) {
+                bytes += postings.length;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InvertedIndex{docs=%d, terms=%d, postingBytes=%d}", docCount(), termCount(), postingBytes());
+    }
+
+    // ---------------- 倒排列表 ----------------
+
+    // 一个词的倒排列表，只能按文档号递增追加
+    private static final class PostingList {
+        byte[] data = new byte[16];
+        int length;
+        int docFreq;
+        int lastDoc = -1;
+        // 跳表：第 k 项对应第 k * SKIP_INTERVAL 个文档，记录它的文档号、起始字节偏移和前一个文档号（增量的基准）
+        int[] skipDocs = new int[1];
+        int[] skipOffsets = new int[1];
+        int[] skipBases = new int[1];
+        // 块内最大词频和最短文档长度，用于计算块内得分上界；删除文档后不更新，仍是有效上界
+        int[] blockMaxFreqs = new int[1];
+        int[] blockMinLengths = new int[1];
+        int skipCount;
+
+        void add(int doc, int[] positions, int count, int docLength) {
+            if (docFreq % SKIP_INTERVAL == 0) {
+                if (skipCount == skipDocs.length) {
+                    skipDocs = Arrays.copyOf(skipDocs, skipCount * 2);
+                    skipOffsets = Arrays.copyOf(skipOffsets, skipCount * 2);
+                    skipBases = Arrays.copyOf(skipBases, skipCount * 2);
+                    blockMaxFreqs = Arrays.copyOf(blockMaxFreqs, skipCount * 2);
+                    blockMinLengths = Arrays.copyOf(blockMinLengths, skipCount * 2);
+                }
+                skipDocs[skipCount] = doc;
+                skipOffsets[skipCount] = length;
+                skipBases[skipCount] = lastDoc;
+                blockMaxFreqs[skipCount] = count;
+                blockMinLengths[skipCount] = docLength;
+                skipCount++;
+            } else {
+                int block = skipCount - 1;
+                blockMaxFreqs[block] = Math.max(blockMaxFreqs[block], count);
+                blockMinLengths[block] = Math.min(blockMinLengths[block], docLength);
+            }
+            writeVInt(doc - lastDoc);
+            writeVInt(count);
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                writeVInt(positions[i] - previous);
+                previous = positions[i];
+            }
+            lastDoc = doc;
+            docFreq++;
+        }
+
+        double blockBound(int block, double idf, double avgLength) {
+            return bm25(idf, blockMaxFreqs[block], blockMinLengths[block], avgLength);
+        }
+
+        // 整个列表的得分上界
+        double bound(double idf, double avgLength) {
+            double max = 0;
+            for (int block = 0; block < skipCount; block++) {
+                max = Math.max(max, blockBound(block, idf, avgLength));
+            }
+            return max;
+        }
+
+        // 变长字节：每字节低 7 位存数据，最高位为 1 表示后面还有字节
+        private void writeVInt(int value) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+    }
+
+    // 倒排列表上的游标，查询时每个查询词一个
+    private static final class Cursor {
+        final PostingList postings;
+        // 该词在查询中的位置，用于短语匹配
+        final int queryOffset;
+        double idf;
+        double avgLength;
+        // OR 查询中该词的得分上界
+        double maxScore;
+        int[] positionBuffer = new int[8];
+        // blockBound 最近定位到的块、该块最后一个可能的文档号及块内得分上界
+        private int block = -1;
+        int blockEnd = -1;
+        private double blockScore;
+
+        int doc = -1;
+        int freq;
+        // 已读取的文档数
+        private int index;
+        private int offset;
+        private int positionOffset;
+
+        Cursor(PostingList postings, int queryOffset) {
+            this.postings = postings;
+            this.queryOffset = queryOffset;
+        }
+
+        int next() {
+            if (index == postings.docFreq) {
+                return doc = NO_MORE_DOCS;
+            }
+            doc += readVInt();
+            freq = readVInt();
+            positionOffset = offset;
+            // 跳过位置信息，需要时再解码
+            byte[] data = postings.data;
+            for (int remaining = freq; remaining > 0; offset++) {
+                if (data[offset] >= 0) {
+                    remaining--;
+                }
+            }
+            index++;
+            return doc;
+        }
+
+        // 移动到第一个文档号 >= target 的文档，先用跳表跳过整块
+        int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            int block = index / SKIP_INTERVAL;
+            int skip = block;
+            while (skip + 1 < postings.skipCount && postings.skipDocs[skip + 1] <= target) {
+                skip++;
+            }
+            if (skip > block || (skip == block && skip * SKIP_INTERVAL > index)) {
+                offset = postings.skipOffsets[skip];
+                doc = postings.skipBases[skip];
+                index = skip * SKIP_INTERVAL;
+            }
+            while (next() < target) {
+                // 块内顺序查找
+            }
+            return doc;
+        }
+
+        double score(int docLength) {
+            return bm25(idf, freq, docLength, avgLength);
+        }
+
+        // target 所在块的得分上界，同时更新 blockEnd；target 只增不减，不移动游标
+        double blockBound(int target) {
+            if (target > blockEnd) {
+                while (block + 1 < postings.skipCount && postings.skipDocs[block + 1] <= target) {
+                    block++;
+                }
+                if (block < 0) {
+                    // target 在第一个文档之前，该词不会命中
+                    blockEnd = postings.skipDocs[0] - 1;
+                    blockScore = 0;
+                } else {
+                    blockEnd = block + 1 < postings.skipCount ? postings.skipDocs[block + 1] - 1 : NO_MORE_DOCS;
+                    blockScore = postings.blockBound(block, idf, avgLength);
+                }
+            }
+            return blockScore;
+        }
+
+        // 解码当前文档的位置，容量不足时换用更大的数组
+        int[] positions(int[] buffer) {
+            if (buffer.length < freq) {
+                buffer = new int[Math.max(freq, buffer.length * 2)];
+            }
+            int saved = offset;
+            offset = positionOffset;
+            int position = 0;
+            for (int i = 0; i < freq; i++) {
+                position += readVInt();
+                buffer[i] = position;
+            }
+            offset = saved;
+            return buffer;
+        }
+
+        private int readVInt() {
+            byte[] data = postings.data;
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[offset++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    // 保留得分最高的 k 个文档：最小堆，堆顶是当前第 k 名
+    private static final class TopHits {
+        private final int k;
+        private final PriorityQueue<double[]> heap;
+
+        TopHits(int k) {
+            this.k = k;
+            // 元素为 {得分, 文档号}；同分时文档号小的排前面
+            this.heap = new PriorityQueue<>(k, (a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(b[1], a[1]));
+        }
+
+        // 文档号递增地提交，同分时先提交的排前面，所以只有得分严格大于第 k 名才替换
+        boolean offer(int doc, double score) {
+            if (heap.size() < k) {
+                heap.add(new double[]{score, doc});
+                return true;
+            }
+            if (score > heap.peek()[0]) {
+                heap.poll();
+                heap.add(new double[]{score, doc});
+                return true;
+            }
+            return false;
+        }
+
+        boolean isFull() {
+            return heap.size() == k;
+        }
+
+        // 进入前 k 需要超过的得分，未满时为负无穷
+        double threshold() {
+            return heap.size() < k ? Double.NEGATIVE_INFINITY : heap.peek()[0];
+        }
+
+        List<Hit> sorted(Object[] externalIds) {
+            Hit[] hits = new Hit[heap.size()];
+            for (int i = hits.length - 1; i >= 0; i--) {
+                double[] top = heap.poll();
+                hits[i] = new Hit(externalIds[(int) top[1]], top[0]);
+            }
+            return Arrays.asList(hits);
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
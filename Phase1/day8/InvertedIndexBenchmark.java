@@ -0,0 +1,99 @@
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+// 倒排索引查询延迟，不需要 MongoDB 服务：
+// 生成 users 风格的文档建索引，对比逐个文档做正则匹配（相当于 $regex 全集合扫描）
+// 用法：java InvertedIndexBenchmark [文档数，默认 100000]
+public class InvertedIndexBenchmark {
+    private static final int WARMUPS = 5;
+    private static final int ITERATIONS = 10;
+    private static final int QUERIES = 1000;
+    private static volatile long sink;
+
+    private static final String[] CITIES = {"New York", "Los Angeles", "Chicago", "San Francisco", "New Orleans",
+            "北京", "上海", "广州", "深圳", "杭州"};
+    private static final String[] HOBBIES = {"reading", "gaming", "hiking", "photography", "cooking", "music",
+            "yoga", "painting", "swimming", "running", "chess", "travel", "读书", "旅行", "摄影"};
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        System.out.println("文档数：" + n);
+
+        Random random = new Random(42);
+        List<Document> documents = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            documents.add(new Document("_id", new ObjectId())
+                    .append("username", "user_" + i)
+                    .append("city", CITIES[random.nextInt(CITIES.length)])
+                    .append("hobbies", Arrays.asList(HOBBIES[random.nextInt(HOBBIES.length)],
+                            HOBBIES[random.nextInt(HOBBIES.length)])));
+        }
+
+        InvertedIndex index = new InvertedIndex();
+        long start = System.nanoTime();
+        for (Document document : documents) {
+            index.onUpsert(document);
+        }
+        System.out.printf("建索引 %.1f ms，%s%n", (System.nanoTime() - start) / 1e6, index);
+
+        // 更新一半文档：旧版本标记删除，超过阈值后合并
+        start = System.nanoTime();
+        for (int i = 0; i < n; i += 2) {
+            Document document = documents.get(i);
+            document.put("city", CITIES[(i / 2) % CITIES.length]);
+            index.onUpsert(document);
+        }
+        System.out.printf("更新 %d 个文档 %.1f ms，%s%n", n / 2, (System.nanoTime() - start) / 1e6, index);
+
+        System.out.println("\n每次查询平均耗时（top 10）");
+        query(index, "new york AND", "new york", InvertedIndex.Mode.AND);
+        query(index, "chess hiking OR", "chess hiking", InvertedIndex.Mode.OR);
+        query(index, "new orleans 短语", "new orleans", InvertedIndex.Mode.PHRASE);
+        query(index, "北京 读书 AND", "北京 读书", InvertedIndex.Mode.AND);
+        query(index, "user_4242 AND", "user_4242", InvertedIndex.Mode.AND);
+        System.out.println("  示例：" + index.search("new orleans chess", InvertedIndex.Mode.AND, 3));
+
+        // 对照：逐个文档正则匹配，n 个文档只扫一遍
+        Pattern pattern = Pattern.compile("new york", Pattern.CASE_INSENSITIVE);
+        report("正则扫描 new york", 1, () -> {
+            long matches = 0;
+            for (Document document : documents) {
+                if (pattern.matcher(document.getString("city")).find()) {
+                    matches++;
+                }
+            }
+            return matches;
+        });
+    }
+
+    private static void query(InvertedIndex index, String name, String query, InvertedIndex.Mode mode) {
+        report(name, QUERIES, () -> {
+            long total = 0;
+            for (int i = 0; i < QUERIES; i++) {
+                total += index.search(query, mode, 10).size();
+            }
+            return total;
+        });
+    }
+
+    // 先预热让 JIT 完成编译，再取多轮中的最小耗时换算单次延迟
+    private static void report(String name, int count, LongSupplier body) {
+        for (int i = 0; i < WARMUPS; i++) {
+            sink += body.getAsLong();
+        }
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            sink += body.getAsLong();
+            min = Math.min(min, System.nanoTime() - start);
+        }
+        System.out.printf("%-20s %10.1f µs%n", name, min / 1e3 / count);
+    }
+}
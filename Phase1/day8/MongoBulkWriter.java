@@ -0,0 +1,350 @@
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteConcernException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteInsert;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 缓冲批量写入器：收集插入/更新/删除操作，攒够 maxBatchSize 条或最早的操作等待超过 maxDelayMillis 时，
+ * 用一次无序 bulkWrite 发送，一批只需一次往返。T 为集合的文档类型：Document 或注册了编解码器的 POJO。
+ *
+ * 最多 maxInFlight 批同时写入，另有最多 maxQueuedBatches 批排队；再多时提交操作的线程阻塞，直到有批次完成（背压）。
+ * 每个操作返回一个 future：插入完成时得到 _id，upsert 插入新文档时得到新 _id，其他情况为 null；
+ * 该操作自身的写入错误（例如唯一键冲突）以 MongoWriteException 结束，不影响同批的其他操作。
+ *
+ * 批次内无序、多个批次并发写入，所以操作之间没有先后保证：同一文档的先后操作，应等前一个 future 完成后再提交。
+ * future 在单独的回调线程中完成，此时批次已释放名额；回调中可以继续提交操作，阻塞时写线程照常写完其他批次。
+ */
+public class MongoBulkWriter<T> implements AutoCloseable {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 100;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    public static final int DEFAULT_MAX_QUEUED_BATCHES = 8;
+
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+    // 执行一次无序 bulkWrite
+    private final Function<List<WriteModel<T>>, BulkWriteResult> bulkWrite;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+
+    private final ExecutorService writers;
+    // 完成各操作的 future，依赖它们的回调在这里执行
+    private final ExecutorService callbacks;
+    private final ScheduledExecutorService timer;
+    // 正在写入和排队的批次数上限
+    private final Semaphore batchPermits;
+    // 已从缓冲区换出、尚未写完的批次（含等待写线程的）
+    private final Set<CompletableFuture<Void>> inFlight = ConcurrentHashMap.newKeySet();
+
+    // 以下字段由 this 保护
+    private List<Pending<T>> buffer;
+    // 每换出一次缓冲区加 1，定时刷新据此判断缓冲区是否已被刷新过
+    private long generation;
+    private boolean closed;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong operations = new AtomicLong();
+    private final AtomicLong failedOperations = new AtomicLong();
+
+    private static final class Batch<T> {
+        final List<Pending<T>> operations;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Batch(List<Pending<T>> operations) {
+            this.operations = operations;
+        }
+    }
+
+    private static final class Pending<T> {
+        final WriteModel<T> model;
+        // 写线程记录的结果，没有依赖它的回调
+        final CompletableFuture<BsonValue> result = new CompletableFuture<>();
+        // 返回给调用方的 future，批次释放名额后由回调线程按 result 完成
+        final CompletableFuture<BsonValue> future = new CompletableFuture<>();
+
+        Pending(WriteModel<T> model) {
+            this.model = model;
+        }
+    }
+
+    public MongoBulkWriter(MongoCollection<T> collection) {
+        this(collection, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_QUEUED_BATCHES);
+    }
+
+    /**
+     * @param maxBatchSize 每批最多操作数
+     * @param maxDelayMillis 操作在缓冲区中最多等待的时间
+     * @param maxInFlight 同时写入的批次数
+     * @param maxQueuedBatches 等待写入的批次数
+     */
+    public MongoBulkWriter(MongoCollection<T> collection, int maxBatchSize, long maxDelayMillis,
+                           int maxInFlight, int maxQueuedBatches) {
+        this(models -> collection.bulkWrite(models, UNORDERED), maxBatchSize, maxDelayMillis,
+                maxInFlight, maxQueuedBatches);
+    }
+
+    /**
+     * 通过 DocumentStore 写入，可以是内存实现
+     */
+    public MongoBulkWriter(DocumentStore store, String collectionName, Class<T> clazz) {
+        this(store, collectionName, clazz, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS, DEFAULT_MAX_IN_FLIGHT,
+                DEFAULT_MAX_QUEUED_BATCHES);
+    }
+
+    public MongoBulkWriter(DocumentStore store, String collectionName, Class<T> clazz, int maxBatchSize,
+                           long maxDelayMillis, int maxInFlight, int maxQueuedBatches) {
+        this(models -> store.bulkWrite(collectionName, models, clazz), maxBatchSize, maxDelayMillis,
+                maxInFlight, maxQueuedBatches);
+    }
+
+    private MongoBulkWriter(Function<List<WriteModel<T>>, BulkWriteResult> bulkWrite, int maxBatchSize,
+                            long maxDelayMillis, int maxInFlight, int maxQueuedBatches) {
+        if (maxBatchSize <= 0 || maxDelayMillis <= 0 || maxInFlight <= 0 || maxQueuedBatches < 0) {
+            throw new IllegalArgumentException("批量写入参数不合法：maxBatchSize=" + maxBatchSize
+                    + ", maxDelayMillis=" + maxDelayMillis + ", maxInFlight=" + maxInFlight
+                    + ", maxQueuedBatches=" + maxQueuedBatches);
+        }
+        this.bulkWrite = bulkWrite;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.buffer = new ArrayList<>(maxBatchSize);
+        this.writers = Executors.newFixedThreadPool(maxInFlight, daemonThreads("mongo-bulk-"));
+        this.callbacks = Executors.newSingleThreadExecutor(daemonThreads("mongo-bulk-callback-"));
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("mongo-bulk-timer-"));
+        this.batchPermits = new Semaphore(maxInFlight + maxQueuedBatches);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * 插入文档；没有 _id 时由驱动生成
+     */
+    public CompletableFuture<BsonValue> insert(T document) {
+        return add(new InsertOneModel<>(document));
+    }
+
+    public CompletableFuture<BsonValue> updateOne(Bson filter, Bson update) {
+        return add(new UpdateOneModel<>(filter, update));
+    }
+
+    public CompletableFuture<BsonValue> upsertOne(Bson filter, Bson update) {
+        return add(new UpdateOneModel<>(filter, update, new UpdateOptions().upsert(true)));
+    }
+
+    public CompletableFuture<BsonValue> deleteOne(Bson filter) {
+        return add(new DeleteOneModel<>(filter));
+    }
+
+    /**
+     * 加入任意写操作；缓冲区满时由当前线程交出这一批，写入和排队的批次都满时会阻塞
+     */
+    public CompletableFuture<BsonValue> add(WriteModel<T> model) {
+        Pending<T> pending = new Pending<>(model);
+        Batch<T> full = null;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("批量写入器已关闭");
+            }
+            buffer.add(pending);
+            if (buffer.size() == 1) {
+                long scheduledGeneration = generation;
+                timer.schedule(() -> flushIfUnchanged(scheduledGeneration), maxDelayMillis, TimeUnit.MILLISECONDS);
+            }
+            if (buffer.size() >= maxBatchSize) {
+                full = swapBuffer();
+            }
+        }
+        if (full != null) {
+            submit(full);
+        }
+        return pending.future;
+    }
+
+    // 调用方持有 this；换出时就登记为未完成，flush 和 close 能等到还没交给写线程的批次
+    private Batch<T> swapBuffer() {
+        Batch<T> batch = new Batch<>(buffer);
+        inFlight.add(batch.done);
+        buffer = new ArrayList<>(maxBatchSize);
+        generation++;
+        return batch;
+    }
+
+    // 定时刷新：到期时缓冲区还是同一批，说明没有因为攒满而刷新过
+    private void flushIfUnchanged(long scheduledGeneration) {
+        Batch<T> batch;
+        synchronized (this) {
+            if (generation != scheduledGeneration || buffer.isEmpty()) {
+                return;
+            }
+            batch = swapBuffer();
+        }
+        submit(batch);
+    }
+
+    private void submit(Batch<T> batch) {
+        batchPermits.acquireUninterruptibly();
+        try {
+            writers.execute(() -> {
+                try {
+                    write(batch.operations);
+                } finally {
+                    finish(batch);
+                }
+            });
+        } catch (RuntimeException e) {
+            for (Pending<T> pending : batch.operations) {
+                pending.result.completeExceptionally(e);
+            }
+            finish(batch);
+        }
+    }
+
+    // 先释放名额再完成 future：回调中提交的操作可能要等名额，不能让它在持有名额的写线程上等
+    private void finish(Batch<T> batch) {
+        batchPermits.release();
+        callbacks.execute(() -> {
+            try {
+                for (Pending<T> pending : batch.operations) {
+                    pending.result.whenComplete((id, failure) -> {
+                        if (failure != null) {
+                            pending.future.completeExceptionally(failure);
+                        } else {
+                            pending.future.complete(id);
+                        }
+                    });
+                }
+            } finally {
+                inFlight.remove(batch.done);
+                batch.done.complete(null);
+            }
+        });
+    }
+
+    private void write(List<Pending<T>> batch) {
+        List<WriteModel<T>> models = new ArrayList<>(batch.size());
+        for (Pending<T> pending : batch) {
+            models.add(pending.model);
+        }
+        batches.incrementAndGet();
+        operations.addAndGet(batch.size());
+        try {
+            complete(batch, bulkWrite.apply(models));
+        } catch (MongoBulkWriteException e) {
+            // 无序写入时出错的操作不影响其他操作，按下标逐个结束
+            for (BulkWriteError error : e.getWriteErrors()) {
+                batch.get(error.getIndex()).result.completeExceptionally(new MongoWriteException(error, e.getServerAddress()));
+                failedOperations.incrementAndGet();
+            }
+            if (e.getWriteConcernError() != null) {
+                // 操作已执行，但没有达到要求的写关注级别
+                MongoWriteConcernException concernError =
+                        new MongoWriteConcernException(e.getWriteConcernError(), e.getServerAddress());
+                for (Pending<T> pending : batch) {
+                    pending.result.completeExceptionally(concernError);
+                }
+            }
+            complete(batch, e.getWriteResult());
+        } catch (RuntimeException e) {
+            // 网络错误等：整批失败
+            for (Pending<T> pending : batch) {
+                if (pending.result.completeExceptionally(e)) {
+                    failedOperations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    // 按下标回填插入和 upsert 的 _id，已经失败的操作不受影响
+    private static <T> void complete(List<Pending<T>> batch, BulkWriteResult result) {
+        Map<Integer, BsonValue> ids = new HashMap<>();
+        if (result.wasAcknowledged()) {
+            for (BulkWriteInsert insert : result.getInserts()) {
+                ids.put(insert.getIndex(), insert.getId());
+            }
+            for (BulkWriteUpsert upsert : result.getUpserts()) {
+                ids.put(upsert.getIndex(), upsert.getId());
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.complete(ids.get(i));
+        }
+    }
+
+    /**
+     * 立即发送缓冲区中的操作
+     * @return 在此之前提交的所有操作都完成时结束
+     */
+    public CompletableFuture<Void> flush() {
+        Batch<T> batch;
+        synchronized (this) {
+            batch = buffer.isEmpty() ? null : swapBuffer();
+        }
+        if (batch != null) {
+            submit(batch);
+        }
+        return CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[0]));
+    }
+
+    public synchronized int buffered() {
+        return buffer.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MongoBulkWriter{batches=%d, operations=%d, failed=%d, inFlight=%d, buffered=%d}",
+                batches.get(), operations.get(), failedOperations.get(), inFlight.size(), buffered());
+    }
+
+    /**
+     * 发送剩余操作并等待全部完成，之后不再接受新操作
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flush().join();
+        writers.shutdown();
+        callbacks.shutdown();
+        timer.shutdownNow();
+    }
+}
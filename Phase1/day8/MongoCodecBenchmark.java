@@ -0,0 +1,179 @@
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+
+import com.mongodb.MongoClientSettings;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.function.LongSupplier;
+
+import static org.bson.codecs.configuration.CodecRegistries.fromCodecs;
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+
+// 对比 User 的三种编解码方式，不需要 MongoDB 服务：
+// JSON 文本：原 insertOne(Object) 的做法，对象先转 JSON 文本再 Document.parse，再编码为 BSON；读取时得到 Document
+// PojoCodec：PojoCodecProvider 通过反射按属性读写（嵌套的 Address 仍用 AddressCodec）
+// UserCodec：手写编解码器，直接在 BSON 读写器上逐字段读写
+// 用法：java MongoCodecBenchmark [用户数，默认 100000]
+public class MongoCodecBenchmark {
+    private static final int WARMUPS = 5;
+    private static final int ITERATIONS = 10;
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        System.out.println("用户数：" + n);
+
+        // Address 只在包内可见，PojoCodec 反射访问不了，嵌套的 Address 交给 AddressCodec
+        CodecRegistry registry = fromRegistries(fromCodecs(new AddressCodec()),
+                MongoClientSettings.getDefaultCodecRegistry(),
+                fromProviders(PojoCodecProvider.builder().automatic(true).build()));
+        Codec<User> pojoCodec = registry.get(User.class);
+        Codec<User> userCodec = new UserCodec();
+        Codec<Document> documentCodec = registry.get(Document.class);
+
+        User[] users = new User[n];
+        for (int i = 0; i < n; i++) {
+            User user = new User("user_" + i, "user" + i + "@example.com", 18 + i % 60);
+            user.setId(new ObjectId());
+            user.setCreatedAt(new Date(1_700_000_000_000L + i * 1000L));
+            user.setHobbies(Arrays.asList("reading", "hiking", "music"));
+            user.setAddress(new Address("City" + i % 100, i + " Main St", String.format("%05d", i % 100000)));
+            users[i] = user;
+        }
+
+        // 原实现直接 Document.parse(user.toString())，而 User.toString 不是 JSON，根本无法插入
+        try {
+            Document.parse(users[0].toString());
+            System.out.println("toString 往返：成功");
+        } catch (RuntimeException e) {
+            System.out.println("toString 往返失败（原 insertOne(Object) 的问题）：" + e.getClass().getSimpleName());
+        }
+
+        // 手写编解码器与 PojoCodec 写出的 BSON 可以互相读取
+        byte[] fromPojo = encode(pojoCodec, users[1]);
+        byte[] fromUserCodec = encode(userCodec, users[1]);
+        User a = decode(userCodec, fromPojo);
+        User b = decode(pojoCodec, fromUserCodec);
+        if (!same(users[1], a) || !same(users[1], b)) {
+            throw new IllegalStateException("UserCodec 与 PojoCodec 的结果不一致");
+        }
+
+        byte[][] encoded = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            encoded[i] = encode(userCodec, users[i]);
+        }
+
+        System.out.println("\n编码（User -> BSON）");
+        report("JSON 文本", n, () -> {
+            long bytes = 0;
+            for (User user : users) {
+                bytes += encode(documentCodec, Document.parse(toJson(user))).length;
+            }
+            return bytes;
+        });
+        report("PojoCodec", n, () -> {
+            long bytes = 0;
+            for (User user : users) {
+                bytes += encode(pojoCodec, user).length;
+            }
+            return bytes;
+        });
+        report("UserCodec", n, () -> {
+            long bytes = 0;
+            for (User user : users) {
+                bytes += encode(userCodec, user).length;
+            }
+            return bytes;
+        });
+
+        System.out.println("\n解码（BSON -> 对象）");
+        report("Document", n, () -> {
+            long total = 0;
+            for (byte[] bytes : encoded) {
+                total += decode(documentCodec, bytes).size();
+            }
+            return total;
+        });
+        report("PojoCodec", n, () -> {
+            long total = 0;
+            for (byte[] bytes : encoded) {
+                total += decode(pojoCodec, bytes).getAge();
+            }
+            return total;
+        });
+        report("UserCodec", n, () -> {
+            long total = 0;
+            for (byte[] bytes : encoded) {
+                total += decode(userCodec, bytes).getAge();
+            }
+            return total;
+        });
+    }
+
+    // 模拟原实现：对象先变成 JSON 文本（这里按字段手工拼出合法 JSON）
+    private static String toJson(User user) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"_id\": {\"$oid\": \"").append(user.getId().toHexString()).append("\"}")
+                .append(", \"username\": \"").append(user.getUsername()).append('"')
+                .append(", \"email\": \"").append(user.getEmail()).append('"')
+                .append(", \"age\": ").append(user.getAge())
+                .append(", \"created_at\": {\"$date\": ").append(user.getCreatedAt().getTime()).append('}')
+                .append(", \"hobbies\": [");
+        for (int i = 0; i < user.getHobbies().size(); i++) {
+            json.append(i == 0 ? "\"" : ", \"").append(user.getHobbies().get(i)).append('"');
+        }
+        Address address = user.getAddress();
+        json.append("], \"address\": {\"city\": \"").append(address.getCity())
+                .append("\", \"street\": \"").append(address.getStreet())
+                .append("\", \"zipCode\": \"").append(address.getZipCode()).append("\"}}");
+        return json.toString();
+    }
+
+    private static <T> byte[] encode(Codec<T> codec, T value) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer(256);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            codec.encode(writer, value, EncoderContext.builder().build());
+        }
+        return buffer.toByteArray();
+    }
+
+    private static <T> T decode(Codec<T> codec, byte[] bytes) {
+        try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(bytes))) {
+            return codec.decode(reader, DecoderContext.builder().build());
+        }
+    }
+
+    private static boolean same(User x, User y) {
+        return x.getId().equals(y.getId()) && x.getUsername().equals(y.getUsername())
+                && x.getEmail().equals(y.getEmail()) && x.getAge() == y.getAge()
+                && x.getCreatedAt().equals(y.getCreatedAt()) && x.getHobbies().equals(y.getHobbies())
+                && x.getAddress().getCity().equals(y.getAddress().getCity())
+                && x.getAddress().getStreet().equals(y.getAddress().getStreet())
+                && x.getAddress().getZipCode().equals(y.getAddress().getZipCode());
+    }
+
+    // 先预热让 JIT 完成编译，再取多轮中的最小耗时换算吞吐量
+    private static void report(String name, int n, LongSupplier body) {
+        for (int i = 0; i < WARMUPS; i++) {
+            sink += body.getAsLong();
+        }
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            sink += body.getAsLong();
+            min = Math.min(min, System.nanoTime() - start);
+        }
+        System.out.printf("%-12s %8.1f ms  %10.0f 个/秒%n", name, min / 1e6, n / (min / 1e9));
+    }
+}
@@ -1,9 +1,12 @@
 import com.mongodb.client.model.*;
 import org.bson.Document;
 import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static com.mongodb.client.model.Filters.*;
 import static com.mongodb.client.model.Updates.*;
@@ -11,8 +14,11 @@ import static com.mongodb.client.model.Updates.*;
 public class MongoDBDemo {
     
     public static void main(String[] args) {
-        // 1. 初始化连接
-        MongoDBUtil mongoUtil = new MongoDBUtil("mongodb://localhost:27017", "testdb");
+        // 1. 初始化连接；带参数 --in-memory 时使用进程内存储，不需要启动 MongoDB
+        MongoDBUtil mongoUtil = Arrays.asList(args).contains("--in-memory")
+                ? new MongoDBUtil(new InMemoryDocumentStore())
+                // 连接池：最多 20 个连接、保持 2 个空闲连接，等待连接超过 2 秒报错，空闲 60 秒的连接关闭
+                : new MongoDBUtil("mongodb://localhost:27017", "testdb", 20, 2, 2_000, 60_000);
         
         try {
             String collectionName = "users";
@@ -23,6 +29,8 @@ public class MongoDBDemo {
             // 3. 创建索引
             mongoUtil.createIndex(collectionName, "email", true);
             mongoUtil.createIndex(collectionName, "age", false);
+            // 进程内全文索引：之后通过 mongoUtil 的插入、更新、删除会增量更新
+            InvertedIndex searchIndex = mongoUtil.createSearchIndex(collectionName, InvertedIndex.USER_FIELDS);
             
             // 4. 插入文档 - 使用 Document 对象
             Document user1 = new Document("username", "john_doe")
@@ -98,17 +106,88 @@ public class MongoDBDemo {
             List<Document> updatedUsers = mongoUtil.findAll(collectionName);
             updatedUsers.forEach(doc -> System.out.println(doc.toJson()));
             
-            // 13. 聚合查询示例
-            mongoUtil.aggregateExample(collectionName);
+            // 13. 全文检索：在进程内倒排索引上查询，不需要 $regex 扫描集合
+            System.out.println("\n=== 全文检索 ===");
+            System.out.println(searchIndex);
+            System.out.println("new york AND: " + searchIndex.search("new york", InvertedIndex.Mode.AND, 10));
+            System.out.println("\"new york\" PHRASE: " + searchIndex.search("new york", InvertedIndex.Mode.PHRASE, 10));
+            System.out.println("hiking OR yoga: " + searchIndex.search("hiking yoga", InvertedIndex.Mode.OR, 10));
+            // bob 已删除，不再命中
+            System.out.println("bob: " + searchIndex.search("bob", InvertedIndex.Mode.OR, 10));
             
-            // 14. 使用POJO进行操作
+            // 14. 聚合查询示例
+            mongoUtil.aggregateExample(collectionName);
+            // 物化视图：导入一次后增量维护，看板读取不再重跑聚合
+            try (CityCountView cityCounts = mongoUtil.materializeCityCounts(collectionName, 20)) {
+                System.out.println("物化视图: " + cityCounts.snapshot());
+                mongoUtil.insertOne(collectionName, new Document("username", "carol_white")
+                        .append("email", "carol@example.com")
+                        .append("age", 35)
+                        .append("city", "Chicago"));
+                // 变更流是异步的，稍等事件到达
+                Thread.sleep(200);
+                System.out.println("插入后 Chicago: " + cityCounts.count("Chicago") + ", " + cityCounts);
+            }
+            
+            // 15. 批量写入：事件攒批后一次往返写入，单条失败不影响其他事件
+            System.out.println("\n=== 批量写入事件 ===");
+            try (MongoBulkWriter<Document> writer = mongoUtil.bulkWriter("events", 500, 50, 4, 8)) {
+                for (int i = 0; i < 2000; i++) {
+                    writer.insert(new Document("type", i % 3 == 0 ? "click" : "view")
+                            .append("userId", i % 100)
+                            .append("ts", System.currentTimeMillis()));
+                }
+                writer.upsertOne(eq("_id", "counter"), inc("total", 2000));
+                writer.flush().join();
+                System.out.println(writer);
+            }
+            // 等前一个操作完成再在回调中提交下一个；只有一个批次名额时也不会卡住
+            try (MongoBulkWriter<Document> chained = mongoUtil.bulkWriter("events", 1, 50, 1, 0)) {
+                Object welcomeId = chained.insert(new Document("type", "signup"))
+                        .thenCompose(signupId -> chained.insert(new Document("type", "welcome").append("after", signupId)))
+                        .get(10, TimeUnit.SECONDS);
+                System.out.println("链式写入完成: " + welcomeId);
+            }
+            
+            // 16. 流式查询：只取需要的字段，边读边处理，内存占用与结果集大小无关
+            System.out.println("\n=== 流式查询事件 ===");
+            try (Stream<Document> clicks = mongoUtil.stream("events", eq("type", "click"),
+                    Projections.include("userId"), 500)) {
+                long distinctUsers = clicks.map(doc -> doc.getInteger("userId")).distinct().count();
+                System.out.println("点击过的用户数: " + distinctUsers);
+            }
+            // 原始 BSON：只解析读取的字段
+            long[] viewTs = {0};
+            long views = mongoUtil.forEachRaw("events", eq("type", "view"), Projections.include("ts"), 500,
+                    doc -> viewTs[0] = Math.max(viewTs[0], doc.getInt64("ts").getValue()));
+            System.out.println("浏览事件数: " + views + ", 最近一次: " + viewTs[0]);
+            
+            // 17. 两级缓存：按 _id 读取用户资料，更新后自动删除缓存
+            System.out.println("\n=== 两级缓存 ===");
+            try (DocumentCache profiles = mongoUtil.createCache(collectionName, new InMemorySharedCache(), 10_000)) {
+                Object johnId = mongoUtil.findOne(collectionName, eq("username", "john_doe")).get("_id");
+                System.out.println("首次读取（查库）: " + profiles.get(johnId).getInteger("age"));
+                System.out.println("再次读取（本地缓存）: " + profiles.get(johnId).getInteger("age"));
+                mongoUtil.updateOne(collectionName, eq("_id", johnId), inc("age", 1));
+                System.out.println("更新后读取: " + profiles.get(johnId).getInteger("age"));
+                System.out.println("不存在的 _id: " + profiles.get(new ObjectId()));
+                System.out.println(profiles);
+            }
+            
+            // 18. 使用POJO进行操作
             System.out.println("\n=== 使用POJO操作 ===");
             demoWithPOJO(mongoUtil);
             
+            // 19. 命令耗时和连接池指标
+            if (mongoUtil.getStore() instanceof MongoDocumentStore) {
+                System.out.println("\n=== 命令耗时和连接池 ===");
+                System.out.println(mongoUtil.metrics());
+            }
+            
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            // 15. 关闭连接
+            // 20. 关闭连接
             mongoUtil.close();
         }
     }
@@ -133,5 +212,11 @@ public class MongoDBDemo {
         if (foundUser != null) {
             System.out.println("Found user: " + foundUser.toJson());
         }
+        
+        // 按类型查询，直接解码为 User
+        User typedUser = mongoUtil.findOne(collectionName, eq("email", "michael@example.com"), User.class);
+        if (typedUser != null) {
+            System.out.println("Found typed user: " + typedUser + ", city: " + typedUser.getAddress().getCity());
+        }
     }
 }
\ No newline at end of file
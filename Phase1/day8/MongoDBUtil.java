@@ -1,29 +1,48 @@
-import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.client.*;
 import com.mongodb.client.model.*;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import com.mongodb.client.result.DeleteResult;
-import com.mongodb.client.result.InsertOneResult;
 import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.codecs.pojo.PojoCodecProvider;
 import org.bson.conversions.Bson;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.mongodb.client.model.Filters.*;
 import static com.mongodb.client.model.Projections.*;
 import static com.mongodb.client.model.Sorts.*;
 import static com.mongodb.client.model.Aggregates.*;
+import static org.bson.codecs.configuration.CodecRegistries.fromCodecs;
 import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
 import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
 
 public class MongoDBUtil {
-    private MongoClient mongoClient;
-    private MongoDatabase database;
+    // 流式查询每批从服务端取回的文档数，内存中同时只保留一批
+    public static final int DEFAULT_STREAM_BATCH_SIZE = 1000;
+    // 按 _id 写入或读取时每条命令带的 _id 数；全部放进一个 $in 可能超过 16MB 的命令大小上限
+    private static final int ID_BATCH_SIZE = 1000;
+    
+    private final DocumentStore store;
+    // 集合名 -> 写入回调
+    private final Map<String, List<DocumentChangeListener>> listeners = new ConcurrentHashMap<>();
     
     /**
      * 构造函数
@@ -31,45 +50,77 @@ public class MongoDBUtil {
      * @param databaseName 数据库名
      */
     public MongoDBUtil(String connectionString, String databaseName) {
-        // 配置 POJO 编解码器，用于自动序列化/反序列化 Java 对象
-        CodecRegistry pojoCodecRegistry = fromRegistries(
+        this(new MongoDocumentStore(connectionString, databaseName, codecRegistry()));
+    }
+    
+    /**
+     * 指定连接池参数，含义见 MongoDocumentStore
+     */
+    public MongoDBUtil(String connectionString, String databaseName, int maxPoolSize, int minPoolSize,
+                       long maxWaitMillis, long maxIdleMillis) {
+        this(new MongoDocumentStore(connectionString, databaseName, codecRegistry(), maxPoolSize, minPoolSize,
+                maxWaitMillis, maxIdleMillis));
+    }
+    
+    /**
+     * 使用指定的存储后端，例如没有 MongoDB 时用 new InMemoryDocumentStore()
+     */
+    public MongoDBUtil(DocumentStore store) {
+        this.store = store;
+    }
+    
+    /**
+     * POJO 编解码器，用于自动序列化/反序列化 Java 对象
+     * User、Address 使用手写编解码器，排在前面优先匹配；其他 POJO 仍由 PojoCodecProvider 通过反射处理
+     */
+    public static CodecRegistry codecRegistry() {
+        return fromRegistries(
+            fromCodecs(new UserCodec(), new AddressCodec()),
             MongoClientSettings.getDefaultCodecRegistry(),
             fromProviders(PojoCodecProvider.builder().automatic(true).build())
         );
-        
-        MongoClientSettings settings = MongoClientSettings.builder()
-                .applyConnectionString(new ConnectionString(connectionString))
-                .codecRegistry(pojoCodecRegistry)
-                .build();
-        
-        this.mongoClient = MongoClients.create(settings);
-        this.database = mongoClient.getDatabase(databaseName);
-        System.out.println("Connected to MongoDB database: " + databaseName);
+    }
+    
+    public DocumentStore getStore() {
+        return store;
     }
     
     /**
-     * 获取集合
+     * 命令耗时和连接池指标快照，只有连接 MongoDB 时可用
+     */
+    public MongoMetrics.Snapshot metrics() {
+        return mongoStore().getMetrics().snapshot();
+    }
+    
+    /**
+     * 获取集合，只有连接 MongoDB 时可用
      */
     public MongoCollection<Document> getCollection(String collectionName) {
-        return database.getCollection(collectionName);
+        return getCollection(collectionName, Document.class);
     }
     
     /**
-     * 获取支持POJO的集合
+     * 获取支持POJO的集合，只有连接 MongoDB 时可用
      */
     public <T> MongoCollection<T> getCollection(String collectionName, Class<T> clazz) {
-        return database.getCollection(collectionName, clazz);
+        return mongoStore().getCollection(collectionName, clazz);
+    }
+    
+    private MongoDocumentStore mongoStore() {
+        if (!(store instanceof MongoDocumentStore)) {
+            throw new UnsupportedOperationException("Requires a MongoDB store, current store: "
+                    + store.getClass().getSimpleName());
+        }
+        return (MongoDocumentStore) store;
     }
     
     /**
      * 创建集合（如果不存在）
      */
     public void createCollectionIfNotExists(String collectionName) {
-        try {
-            database.createCollection(collectionName);
+        if (store.createCollection(collectionName)) {
             System.out.println("Collection created: " + collectionName);
-        } catch (Exception e) {
-            // 集合已存在
+        } else {
             System.out.println("Collection already exists: " + collectionName);
         }
     }
@@ -78,56 +129,218 @@ public class MongoDBUtil {
      * 创建索引
      */
     public void createIndex(String collectionName, String fieldName, boolean ascending) {
-        MongoCollection<Document> collection = getCollection(collectionName);
-        IndexOptions indexOptions = new IndexOptions().unique(false);
-        
-        if (ascending) {
-            collection.createIndex(new Document(fieldName, 1), indexOptions);
-        } else {
-            collection.createIndex(new Document(fieldName, -1), indexOptions);
-        }
+        store.createIndex(collectionName, new Document(fieldName, ascending ? 1 : -1));
         
         System.out.println("Created index on field: " + fieldName);
     }
     
+    /**
+     * 注册写入回调：之后通过本类对该集合的插入、更新、删除都会通知 listener
+     * 批量写入器（bulkWriter）和直接使用 getCollection 的写入不会通知
+     */
+    public void addChangeListener(String collectionName, DocumentChangeListener listener) {
+        listeners.computeIfAbsent(collectionName, name -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+    
+    public void removeChangeListener(String collectionName, DocumentChangeListener listener) {
+        List<DocumentChangeListener> list = listeners.get(collectionName);
+        if (list != null) {
+            list.remove(listener);
+        }
+    }
+    
+    private List<DocumentChangeListener> listeners(String collectionName) {
+        List<DocumentChangeListener> list = listeners.get(collectionName);
+        return list == null ? Collections.<DocumentChangeListener>emptyList() : list;
+    }
+    
+    private void fireUpserted(List<DocumentChangeListener> list, Document document) {
+        for (DocumentChangeListener listener : list) {
+            listener.onUpsert(document);
+        }
+    }
+    
+    private void fireDeleted(List<DocumentChangeListener> list, Object id) {
+        for (DocumentChangeListener listener : list) {
+            listener.onDelete(id);
+        }
+    }
+    
+    /**
+     * 全量导入期间先积压写入回调，导入完成后按顺序重放，之后直接转发。
+     * 导入读到的文档可能早于某次写入：若直接转发，导入晚于回调处理同一文档时会用旧版本覆盖回调写入的新版本；
+     * 重放在导入之后，同一文档最后应用的总是最后一次写入的版本
+     */
+    private static final class DeferredListener implements DocumentChangeListener {
+        private final DocumentChangeListener target;
+        // 导入完成后为 null
+        private volatile List<Consumer<DocumentChangeListener>> pending = new ArrayList<>();
+
+        DeferredListener(DocumentChangeListener target) {
+            this.target = target;
+        }
+
+        @Override
+        public void onUpsert(Document document) {
+            if (!defer(listener -> listener.onUpsert(document))) {
+                target.onUpsert(document);
+            }
+        }
+
+        @Override
+        public void onDelete(Object id) {
+            if (!defer(listener -> listener.onDelete(id))) {
+                target.onDelete(id);
+            }
+        }
+
+        private boolean defer(Consumer<DocumentChangeListener> event) {
+            if (pending == null) {
+                return false;
+            }
+            synchronized (this) {
+                if (pending == null) {
+                    return false;
+                }
+                pending.add(event);
+                return true;
+            }
+        }
+
+        // 重放期间到达的回调等重放结束后再转发，顺序不变
+        synchronized void loaded() {
+            for (Consumer<DocumentChangeListener> event : pending) {
+                event.accept(target);
+            }
+            pending = null;
+        }
+    }
+    
+    // 按 _id 重新读出写入后的文档并通知
+    private void fireUpserted(String collectionName, List<DocumentChangeListener> list, List<?> ids) {
+        for (List<?> chunk : chunks(ids)) {
+            forEach(collectionName, in("_id", chunk), null, DEFAULT_STREAM_BATCH_SIZE, document -> fireUpserted(list, document));
+        }
+    }
+    
+    private static <T> List<List<T>> chunks(List<T> ids) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += ID_BATCH_SIZE) {
+            chunks.add(ids.subList(from, Math.min(from + ID_BATCH_SIZE, ids.size())));
+        }
+        return chunks;
+    }
+    
+    // 有回调时先查出匹配文档的 _id，后续按 _id 写入，保证通知的文档与实际写入的一致
+    private List<Object> matchingIds(String collectionName, Bson filter) {
+        List<Object> ids = new ArrayList<>();
+        forEach(collectionName, filter, include("_id"), DEFAULT_STREAM_BATCH_SIZE, document -> ids.add(document.get("_id")));
+        return ids;
+    }
+    
+    /**
+     * 为集合建立全文倒排索引：先注册写入回调再全量导入，之后通过本类的写入会增量更新索引
+     * 导入期间的写入回调先积压，导入完成后再应用，不会丢失，也不会被导入读到的旧版本覆盖
+     * @param fields 参与检索的字段，如 InvertedIndex.USER_FIELDS
+     */
+    public InvertedIndex createSearchIndex(String collectionName, List<String> fields) {
+        InvertedIndex index = new InvertedIndex(fields);
+        DeferredListener listener = new DeferredListener(index);
+        addChangeListener(collectionName, listener);
+        long count;
+        try {
+            count = forEach(collectionName, new Document(), include(fields), DEFAULT_STREAM_BATCH_SIZE, index::onUpsert);
+        } catch (RuntimeException e) {
+            removeChangeListener(collectionName, listener);
+            throw e;
+        }
+        listener.loaded();
+        System.out.println("Indexed " + count + " documents from " + collectionName + ": " + index);
+        return index;
+    }
+    
     /**
      * 插入单个文档
      */
     public String insertOne(String collectionName, Document document) {
-        MongoCollection<Document> collection = getCollection(collectionName);
-        InsertOneResult result = collection.insertOne(document);
-        System.out.println("Inserted document with id: " + result.getInsertedId());
-        return result.getInsertedId().asObjectId().getValue().toString();
+        BsonValue id = store.insertOne(collectionName, document, Document.class);
+        System.out.println("Inserted document with id: " + id);
+        // 生成的 _id 已写回 document
+        fireUpserted(listeners(collectionName), document);
+        return id.asObjectId().getValue().toString();
     }
     
     /**
      * 插入单个 POJO 对象
+     * 通过按对象类型获取的集合插入，由注册的编解码器直接编码为 BSON，不经过 toString/JSON；
+     * 没有 _id 的对象插入后会回填生成的 _id
      */
+    @SuppressWarnings("unchecked")
     public String insertOne(String collectionName, Object obj) {
-        MongoCollection<Document> collection = getCollection(collectionName);
-        Document document = Document.parse(obj.toString());
-        InsertOneResult result = collection.insertOne(document);
-        System.out.println("Inserted POJO with id: " + result.getInsertedId());
-        return result.getInsertedId().asObjectId().getValue().toString();
+        BsonValue id = store.insertOne(collectionName, obj, (Class<Object>) obj.getClass());
+        System.out.println("Inserted POJO with id: " + id);
+        List<DocumentChangeListener> list = listeners(collectionName);
+        if (!list.isEmpty() && id != null) {
+            fireUpserted(collectionName, list, Collections.singletonList(id));
+        }
+        return id == null ? null : id.isObjectId() ? id.asObjectId().getValue().toString() : id.toString();
+    }
+    
+    /**
+     * 批量插入 POJO 对象，一次往返
+     */
+    public <T> void insertMany(String collectionName, List<T> objects, Class<T> clazz) {
+        Map<Integer, BsonValue> ids = store.insertMany(collectionName, objects, clazz);
+        System.out.println("Inserted " + objects.size() + " " + clazz.getSimpleName() + " objects");
+        List<DocumentChangeListener> list = listeners(collectionName);
+        if (!list.isEmpty()) {
+            fireUpserted(collectionName, list, new ArrayList<>(ids.values()));
+        }
     }
     
     /**
      * 插入多个文档
      */
     public void insertMany(String collectionName, List<Document> documents) {
-        MongoCollection<Document> collection = getCollection(collectionName);
-        collection.insertMany(documents);
+        store.insertMany(collectionName, documents, Document.class);
         System.out.println("Inserted " + documents.size() + " documents");
+        List<DocumentChangeListener> list = listeners(collectionName);
+        for (Document document : documents) {
+            fireUpserted(list, document);
+        }
+    }
+    
+    /**
+     * 创建批量写入器：操作先缓冲，攒够一批或超时后用一次无序 bulkWrite 发送
+     * 用完需要 close，close 时会写完剩余操作
+     */
+    public MongoBulkWriter<Document> bulkWriter(String collectionName) {
+        return new MongoBulkWriter<>(store, collectionName, Document.class);
+    }
+    
+    /**
+     * 创建 POJO 类型的批量写入器
+     */
+    public <T> MongoBulkWriter<T> bulkWriter(String collectionName, Class<T> clazz) {
+        return new MongoBulkWriter<>(store, collectionName, clazz);
+    }
+    
+    /**
+     * 创建批量写入器，指定批次大小、最长等待时间、同时写入和排队的批次数
+     */
+    public MongoBulkWriter<Document> bulkWriter(String collectionName, int maxBatchSize, long maxDelayMillis,
+                                                int maxInFlight, int maxQueuedBatches) {
+        return new MongoBulkWriter<>(store, collectionName, Document.class, maxBatchSize, maxDelayMillis,
+                maxInFlight, maxQueuedBatches);
     }
     
     /**
-     * 查询所有文档
+     * 查询所有文档（全部读入内存，大集合请使用 stream）
      */
     public List<Document> findAll(String collectionName) {
-        MongoCollection<Document> collection = getCollection(collectionName);
         List<Document> results = new ArrayList<>();
         
-        try (MongoCursor<Document> cursor = collection.find().iterator()) {
+        try (MongoCursor<Document> cursor = store.find(collectionName, null, null, 0, Document.class)) {
             while (cursor.hasNext()) {
                 results.add(cursor.next());
             }
@@ -137,13 +350,12 @@ public class MongoDBUtil {
     }
     
     /**
-     * 带条件查询
+     * 带条件查询（全部读入内存，大结果集请使用 stream）
      */
     public List<Document> find(String collectionName, Bson filter) {
-        MongoCollection<Document> collection = getCollection(collectionName);
         List<Document> results = new ArrayList<>();
         
-        try (MongoCursor<Document> cursor = collection.find(filter).iterator()) {
+        try (MongoCursor<Document> cursor = store.find(collectionName, filter, null, 0, Document.class)) {
             while (cursor.hasNext()) {
                 results.add(cursor.next());
             }
@@ -152,20 +364,115 @@ public class MongoDBUtil {
         return results;
     }
     
+    /**
+     * 流式查询：边从服务端取批次边返回，不把结果集读入内存，第一批到达后即可开始处理
+     * 返回的流占用服务端游标，必须关闭（try-with-resources）
+     * @param filter 查询条件，null 表示全部
+     * @param projection 只返回需要的字段，在服务端完成，null 表示全部字段
+     * @param batchSize 每批取回的文档数
+     */
+    public Stream<Document> stream(String collectionName, Bson filter, Bson projection, int batchSize) {
+        return stream(collectionName, filter, projection, batchSize, Document.class);
+    }
+    
+    public Stream<Document> stream(String collectionName, Bson filter) {
+        return stream(collectionName, filter, null, DEFAULT_STREAM_BATCH_SIZE);
+    }
+    
+    /**
+     * 流式查询并解码为 POJO
+     */
+    public <T> Stream<T> stream(String collectionName, Bson filter, Bson projection, int batchSize, Class<T> clazz) {
+        MongoCursor<T> cursor = openCursor(collectionName, filter, projection, batchSize, clazz);
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(cursor,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(cursor::close);
+    }
+    
+    /**
+     * 以原始 BSON 流式查询：文档保持服务端返回的字节，读取字段时才解析该字段，
+     * 只读取少数字段或原样转发时省去整个文档的解码
+     */
+    public Stream<RawBsonDocument> streamRaw(String collectionName, Bson filter, Bson projection, int batchSize) {
+        return stream(collectionName, filter, projection, batchSize, RawBsonDocument.class);
+    }
+    
+    /**
+     * 流式遍历，逐个文档回调，遍历结束后自动关闭游标
+     * @return 处理的文档数
+     */
+    public long forEach(String collectionName, Bson filter, Bson projection, int batchSize,
+                        Consumer<? super Document> consumer) {
+        return forEach(collectionName, filter, projection, batchSize, Document.class, consumer);
+    }
+    
+    public long forEachRaw(String collectionName, Bson filter, Bson projection, int batchSize,
+                           Consumer<? super RawBsonDocument> consumer) {
+        return forEach(collectionName, filter, projection, batchSize, RawBsonDocument.class, consumer);
+    }
+    
+    private <T> MongoCursor<T> openCursor(String collectionName, Bson filter, Bson projection, int batchSize,
+                                          Class<T> clazz) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        return store.find(collectionName, filter, projection, batchSize, clazz);
+    }
+    
+    private <T> long forEach(String collectionName, Bson filter, Bson projection, int batchSize, Class<T> clazz,
+                             Consumer<? super T> consumer) {
+        long count = 0;
+        try (MongoCursor<T> cursor = openCursor(collectionName, filter, projection, batchSize, clazz)) {
+            while (cursor.hasNext()) {
+                consumer.accept(cursor.next());
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * 带条件查询并解码为 POJO（全部读入内存，大结果集请使用 stream）
+     */
+    public <T> List<T> find(String collectionName, Bson filter, Class<T> clazz) {
+        List<T> results = new ArrayList<>();
+        try (MongoCursor<T> cursor = store.find(collectionName, filter, null, 0, clazz)) {
+            cursor.forEachRemaining(results::add);
+        }
+        return results;
+    }
+    
     /**
      * 查询单个文档
      */
     public Document findOne(String collectionName, Bson filter) {
-        MongoCollection<Document> collection = getCollection(collectionName);
-        return collection.find(filter).first();
+        return store.findOne(collectionName, filter, Document.class);
+    }
+    
+    /**
+     * 查询单个文档并解码为 POJO
+     */
+    public <T> T findOne(String collectionName, Bson filter, Class<T> clazz) {
+        return store.findOne(collectionName, filter, clazz);
     }
     
     /**
      * 更新单个文档
+     * 集合注册了写入回调时改用 findOneAndUpdate，返回值为匹配的文档数（0 或 1）
      */
     public long updateOne(String collectionName, Bson filter, Bson update) {
-        MongoCollection<Document> collection = getCollection(collectionName);
-        UpdateResult result = collection.updateOne(filter, update);
+        List<DocumentChangeListener> list = listeners(collectionName);
+        if (!list.isEmpty()) {
+            // 有回调时用 findOneAndUpdate 原子地取回更新后的文档
+            Document updated = store.findOneAndUpdate(collectionName, filter, update);
+            System.out.println("Matched: " + (updated == null ? 0 : 1));
+            if (updated == null) {
+                return 0;
+            }
+            fireUpserted(list, updated);
+            return 1;
+        }
+        UpdateResult result = store.updateOne(collectionName, filter, update);
         System.out.println("Matched: " + result.getMatchedCount() + 
                           ", Modified: " + result.getModifiedCount());
         return result.getModifiedCount();
@@ -173,60 +480,181 @@ public class MongoDBUtil {
     
     /**
      * 更新多个文档
+     * 集合注册了写入回调时，先查出匹配的 _id，再按批更新（原条件加上这批 _id），每批更新后按 _id 读出文档并通知。
+     * 查出 _id 之后被其他写入改得不再匹配的文档不会更新；这种情况下这一批中仍存在的文档都会以当前内容通知一次，
+     * 回调按文档的当前内容处理，多出的通知没有影响
      */
     public long updateMany(String collectionName, Bson filter, Bson update) {
-        MongoCollection<Document> collection = getCollection(collectionName);
-        UpdateResult result = collection.updateMany(filter, update);
-        System.out.println("Matched: " + result.getMatchedCount() + 
-                          ", Modified: " + result.getModifiedCount());
-        return result.getModifiedCount();
+        List<DocumentChangeListener> list = listeners(collectionName);
+        if (list.isEmpty()) {
+            UpdateResult result = store.updateMany(collectionName, filter, update);
+            System.out.println("Matched: " + result.getMatchedCount() + 
+                              ", Modified: " + result.getModifiedCount());
+            return result.getModifiedCount();
+        }
+        long matched = 0;
+        long modified = 0;
+        for (List<Object> chunk : chunks(matchingIds(collectionName, filter))) {
+            UpdateResult result = store.updateMany(collectionName, and(filter, in("_id", chunk)), update);
+            matched += result.getMatchedCount();
+            modified += result.getModifiedCount();
+            if (result.getMatchedCount() > 0) {
+                fireUpserted(collectionName, list, chunk);
+            }
+        }
+        System.out.println("Matched: " + matched + ", Modified: " + modified);
+        return modified;
     }
     
     /**
      * 删除文档
      */
     public long deleteOne(String collectionName, Bson filter) {
-        MongoCollection<Document> collection = getCollection(collectionName);
-        DeleteResult result = collection.deleteOne(filter);
+        List<DocumentChangeListener> list = listeners(collectionName);
+        if (!list.isEmpty()) {
+            Document deleted = store.findOneAndDelete(collectionName, filter);
+            System.out.println("Deleted: " + (deleted == null ? 0 : 1) + " document(s)");
+            if (deleted == null) {
+                return 0;
+            }
+            fireDeleted(list, deleted.get("_id"));
+            return 1;
+        }
+        DeleteResult result = store.deleteOne(collectionName, filter);
         System.out.println("Deleted: " + result.getDeletedCount() + " document(s)");
         return result.getDeletedCount();
     }
     
     /**
      * 删除多个文档
+     * 集合注册了写入回调时，先查出匹配的 _id，再按批删除（原条件加上这批 _id），只通知实际删除的 _id
      */
     public long deleteMany(String collectionName, Bson filter) {
-        MongoCollection<Document> collection = getCollection(collectionName);
-        DeleteResult result = collection.deleteMany(filter);
-        System.out.println("Deleted: " + result.getDeletedCount() + " document(s)");
-        return result.getDeletedCount();
+        List<DocumentChangeListener> list = listeners(collectionName);
+        if (list.isEmpty()) {
+            DeleteResult result = store.deleteMany(collectionName, filter);
+            System.out.println("Deleted: " + result.getDeletedCount() + " document(s)");
+            return result.getDeletedCount();
+        }
+        long deleted = 0;
+        for (List<Object> chunk : chunks(matchingIds(collectionName, filter))) {
+            long count = store.deleteMany(collectionName, and(filter, in("_id", chunk))).getDeletedCount();
+            deleted += count;
+            // 有文档没被删除（期间被改得不再匹配）时，查出仍存在的 _id，不通知它们
+            Set<Object> remaining = new HashSet<>();
+            if (count < chunk.size()) {
+                forEach(collectionName, in("_id", chunk), include("_id"), DEFAULT_STREAM_BATCH_SIZE,
+                        document -> remaining.add(document.get("_id")));
+            }
+            for (Object id : chunk) {
+                if (!remaining.contains(id)) {
+                    fireDeleted(list, id);
+                }
+            }
+        }
+        System.out.println("Deleted: " + deleted + " document(s)");
+        return deleted;
+    }
+    
+    /**
+     * 执行聚合管道并返回结果
+     */
+    public List<Document> aggregate(String collectionName, List<? extends Bson> pipeline) {
+        return store.aggregate(collectionName, pipeline);
+    }
+    
+    /**
+     * 按城市统计年龄 >= minAge 的用户数，按数量降序；每个结果形如 {_id: 城市, count: 数量}
+     */
+    public List<Document> cityCounts(String collectionName, int minAge) {
+        return aggregate(collectionName, Arrays.asList(
+            match(gte("age", minAge)),
+            group("$city", Accumulators.sum("count", 1)),
+            sort(descending("count"))
+        ));
     }
     
     /**
      * 聚合查询示例
      */
-    public void aggregateExample(String collectionName) {
-        MongoCollection<Document> collection = getCollection(collectionName);
-        
-        List<Bson> pipeline = Arrays.asList(
-            match(gte("age", 20)),  // 过滤年龄 >= 20
-            group("$city", Accumulators.sum("count", 1)),  // 按城市分组统计
-            sort(descending("count"))  // 按数量降序排序
-        );
+    public List<Document> aggregateExample(String collectionName) {
+        List<Document> results = cityCounts(collectionName, 20);  // 年龄 >= 20 的用户按城市分组统计
         
         System.out.println("\n=== 聚合查询结果 ===");
-        for (Document doc : collection.aggregate(pipeline)) {
+        for (Document doc : results) {
             System.out.println(doc.toJson());
         }
+        return results;
+    }
+    
+    /**
+     * 创建按城市统计的物化视图，结果与 cityCounts 相同，读取时不再访问服务端
+     * 副本集上通过变更流维护，能看到所有客户端的写入；单机部署不支持变更流，改为注册写入回调，
+     * 只能看到经过本类的写入。先打开变更流或注册回调再全量导入，导入期间的变更先积压（变更流积压在服务端游标中，
+     * 写入回调积压在内存中），导入完成后按顺序应用，不会丢失，也不会被导入读到的旧版本覆盖。
+     * 用完调用 close 停止维护。
+     */
+    public CityCountView materializeCityCounts(String collectionName, int minAge) {
+        CityCountView view = new CityCountView(minAge);
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> changeStream = null;
+        DeferredListener listener = null;
+        try {
+            changeStream = store.watch(collectionName);
+        } catch (UnsupportedOperationException e) {
+            System.out.println("Change streams unavailable (" + e.getMessage() + "), using write listener");
+            DeferredListener registered = new DeferredListener(view);
+            addChangeListener(collectionName, registered);
+            view.onClose(() -> removeChangeListener(collectionName, registered));
+            listener = registered;
+        }
+        try {
+            forEach(collectionName, gte("age", minAge), include("city", "age"), DEFAULT_STREAM_BATCH_SIZE, view::onUpsert);
+        } catch (RuntimeException e) {
+            if (changeStream != null) {
+                changeStream.close();
+            }
+            view.close();
+            throw e;
+        }
+        if (changeStream != null) {
+            view.follow(changeStream);
+        }
+        if (listener != null) {
+            listener.loaded();
+        }
+        return view;
+    }
+    
+    /**
+     * 创建按 _id 读取的两级缓存，通过本类的写入会删除对应缓存，用 DocumentCache.get 读取
+     * 同时用集合中现有的 _id 建立布隆过滤器，不存在的 _id 不查共享缓存和数据库
+     * @param sharedCache 共享缓存层，测试时可用 new InMemorySharedCache()
+     * @param expectedDocuments 布隆过滤器容量，应大于集合文档数并留出增长余量；0 表示不使用布隆过滤器
+     */
+    public DocumentCache createCache(String collectionName, SharedCache sharedCache, long expectedDocuments) {
+        DocumentCache cache = new DocumentCache(collectionName, id -> findOne(collectionName, eq("_id", id)), sharedCache);
+        addChangeListener(collectionName, cache);
+        cache.onClose(() -> removeChangeListener(collectionName, cache));
+        if (expectedDocuments > 0) {
+            rebuildCacheFilter(collectionName, cache, expectedDocuments);
+        }
+        return cache;
+    }
+    
+    /**
+     * 重新扫描全部 _id 重建缓存的布隆过滤器，用于绕过本类插入了文档，或文档数超出了原来的容量
+     */
+    public void rebuildCacheFilter(String collectionName, DocumentCache cache, long expectedDocuments) {
+        long[] count = {0};
+        cache.rebuildFilter(expectedDocuments, sink -> count[0] = forEach(collectionName, new Document(),
+                include("_id"), DEFAULT_STREAM_BATCH_SIZE, document -> sink.accept(document.get("_id"))));
+        System.out.println("Bloom filter rebuilt with " + count[0] + " ids from " + collectionName);
     }
     
     /**
      * 关闭连接
      */
     public void close() {
-        if (mongoClient != null) {
-            mongoClient.close();
-            System.out.println("MongoDB connection closed");
-        }
+        store.close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCommandException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 MongoDB 驱动的存储后端，各方法直接委托给对应的集合操作
+ */
+public class MongoDocumentStore implements DocumentStore {
+    // 连接池默认值与驱动相同
+    public static final int DEFAULT_MAX_POOL_SIZE = 100;
+    public static final int DEFAULT_MIN_POOL_SIZE = 0;
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 120_000;
+    public static final long DEFAULT_MAX_IDLE_MILLIS = 0;
+
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    // 变更流只支持副本集和分片集群，单机部署返回该错误码
+    private static final int CHANGE_STREAM_NOT_SUPPORTED = 40573;
+
+    private final MongoClient mongoClient;
+    private final MongoDatabase database;
+    private final MongoMetrics metrics = new MongoMetrics();
+
+    /**
+     * @param connectionString 连接字符串，如 "mongodb://localhost:27017"
+     */
+    public MongoDocumentStore(String connectionString, String databaseName, CodecRegistry codecRegistry) {
+        this(connectionString, databaseName, codecRegistry, DEFAULT_MAX_POOL_SIZE, DEFAULT_MIN_POOL_SIZE,
+                DEFAULT_MAX_WAIT_MILLIS, DEFAULT_MAX_IDLE_MILLIS);
+    }
+
+    /**
+     * 连接池参数对每个服务器节点分别生效
+     * @param maxPoolSize 最大连接数，用满后新的操作排队等待
+     * @param minPoolSize 后台保持的最少连接数，避免突发流量时现建连接
+     * @param maxWaitMillis 等待连接的最长时间，超时抛出 MongoTimeoutException
+     * @param maxIdleMillis 连接空闲多久后关闭，0 表示不关闭
+     */
+    public MongoDocumentStore(String connectionString, String databaseName, CodecRegistry codecRegistry,
+                              int maxPoolSize, int minPoolSize, long maxWaitMillis, long maxIdleMillis) {
+        MongoClientSettings settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(connectionString))
+                .codecRegistry(codecRegistry)
+                .applyToConnectionPoolSettings(pool -> pool
+                        .maxSize(maxPoolSize)
+                        .minSize(minPoolSize)
+                        .maxWaitTime(maxWaitMillis, TimeUnit.MILLISECONDS)
+                        .maxConnectionIdleTime(maxIdleMillis, TimeUnit.MILLISECONDS)
+                        .addConnectionPoolListener(metrics))
+                .addCommandListener(metrics)
+                .build();
+        this.mongoClient = MongoClients.create(settings);
+        this.database = mongoClient.getDatabase(databaseName);
+        System.out.println("Connected to MongoDB database: " + databaseName);
+    }
+
+    /**
+     * 命令耗时和连接池状态
+     */
+    public MongoMetrics getMetrics() {
+        return metrics;
+    }
+
+    public <T> MongoCollection<T> getCollection(String collectionName, Class<T> clazz) {
+        return database.getCollection(collectionName, clazz);
+    }
+
+    private MongoCollection<Document> getCollection(String collectionName) {
+        return database.getCollection(collectionName);
+    }
+
+    @Override
+    public boolean createCollection(String collectionName) {
+        try {
+            database.createCollection(collectionName);
+            return true;
+        } catch (MongoCommandException e) {
+            // 集合已存在
+            return false;
+        }
+    }
+
+    @Override
+    public void createIndex(String collectionName, Bson keys) {
+        getCollection(collectionName).createIndex(keys);
+    }
+
+    @Override
+    public <T> BsonValue insertOne(String collectionName, T document, Class<T> clazz) {
+        return getCollection(collectionName, clazz).insertOne(document).getInsertedId();
+    }
+
+    @Override
+    public <T> Map<Integer, BsonValue> insertMany(String collectionName, List<? extends T> documents, Class<T> clazz) {
+        return getCollection(collectionName, clazz).insertMany(documents).getInsertedIds();
+    }
+
+    @Override
+    public <T> MongoCursor<T> find(String collectionName, Bson filter, Bson projection, int batchSize, Class<T> clazz) {
+        MongoCollection<T> collection = getCollection(collectionName, clazz);
+        FindIterable<T> iterable = filter == null ? collection.find() : collection.find(filter);
+        if (projection != null) {
+            iterable = iterable.projection(projection);
+        }
+        if (batchSize > 0) {
+            iterable = iterable.batchSize(batchSize);
+        }
+        return iterable.iterator();
+    }
+
+    @Override
+    public <T> T findOne(String collectionName, Bson filter, Class<T> clazz) {
+        return getCollection(collectionName, clazz).find(filter).first();
+    }
+
+    @Override
+    public UpdateResult updateOne(String collectionName, Bson filter, Bson update) {
+        return getCollection(collectionName).updateOne(filter, update);
+    }
+
+    @Override
+    public UpdateResult updateMany(String collectionName, Bson filter, Bson update) {
+        return getCollection(collectionName).updateMany(filter, update);
+    }
+
+    @Override
+    public Document findOneAndUpdate(String collectionName, Bson filter, Bson update) {
+        return getCollection(collectionName).findOneAndUpdate(filter, update,
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+    }
+
+    @Override
+    public Document findOneAndDelete(String collectionName, Bson filter) {
+        return getCollection(collectionName).findOneAndDelete(filter);
+    }
+
+    @Override
+    public DeleteResult deleteOne(String collectionName, Bson filter) {
+        return getCollection(collectionName).deleteOne(filter);
+    }
+
+    @Override
+    public DeleteResult deleteMany(String collectionName, Bson filter) {
+        return getCollection(collectionName).deleteMany(filter);
+    }
+
+    @Override
+    public List<Document> aggregate(String collectionName, List<? extends Bson> pipeline) {
+        return getCollection(collectionName).aggregate(pipeline).into(new ArrayList<>());
+    }
+
+    @Override
+    public <T> BulkWriteResult bulkWrite(String collectionName, List<? extends WriteModel<? extends T>> requests,
+                                         Class<T> clazz) {
+        return getCollection(collectionName, clazz).bulkWrite(requests, UNORDERED);
+    }
+
+    @Override
+    public MongoChangeStreamCursor<ChangeStreamDocument<Document>> watch(String collectionName) {
+        try {
+            return getCollection(collectionName).watch().fullDocument(FullDocument.UPDATE_LOOKUP).cursor();
+        } catch (MongoCommandException e) {
+            if (e.getErrorCode() == CHANGE_STREAM_NOT_SUPPORTED) {
+                throw new UnsupportedOperationException("Change streams require a replica set or sharded cluster", e);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        mongoClient.close();
+        System.out.println("MongoDB connection closed");
+    }
+}
@@ -0,0 +1,168 @@
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 驱动的命令和连接池指标，由 MongoDocumentStore 注册为 CommandListener 和 ConnectionPoolListener。
+ *
+ * 命令耗时由驱动从发出请求计到收到响应，不含等待连接的时间；等待连接的时间单独记在 checkoutWait。
+ * 两者对比可以区分慢在服务端还是连接池：命令 p99 正常而 checkoutWait 升高、waiting 不为 0、inUse 接近 maxPoolSize，
+ * 说明连接池太小或连接被占用太久。
+ */
+public class MongoMetrics implements CommandListener, ConnectionPoolListener {
+    // 命令名 -> 耗时，失败的命令同样计入
+    private final Map<String, LatencyHistogram> commands = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> commandFailures = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram checkoutWait = new LatencyHistogram();
+    private final AtomicLong checkoutFailures = new AtomicLong();
+    // 正在等待连接的操作数
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger maxInUse = new AtomicInteger();
+    // 已建立、尚未关闭的连接数
+    private final AtomicInteger open = new AtomicInteger();
+    private volatile int maxPoolSize;
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        histogram(event.getCommandName()).record(event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        histogram(event.getCommandName()).record(event.getElapsedTime(TimeUnit.NANOSECONDS));
+        commandFailures.computeIfAbsent(event.getCommandName(), name -> new AtomicLong()).incrementAndGet();
+    }
+
+    private LatencyHistogram histogram(String commandName) {
+        return commands.computeIfAbsent(commandName, name -> new LatencyHistogram());
+    }
+
+    @Override
+    public void connectionPoolCreated(ConnectionPoolCreatedEvent event) {
+        maxPoolSize = event.getSettings().getMaxSize();
+    }
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        waiting.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        waiting.decrementAndGet();
+        checkoutWait.record(event.getElapsedTime(TimeUnit.NANOSECONDS));
+        int current = inUse.incrementAndGet();
+        maxInUse.accumulateAndGet(current, Math::max);
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        waiting.decrementAndGet();
+        checkoutWait.record(event.getElapsedTime(TimeUnit.NANOSECONDS));
+        checkoutFailures.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        inUse.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        open.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        open.decrementAndGet();
+    }
+
+    public Snapshot snapshot() {
+        Map<String, LatencyHistogram.Snapshot> latencies = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : commands.entrySet()) {
+            latencies.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        Map<String, Long> failures = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : commandFailures.entrySet()) {
+            failures.put(entry.getKey(), entry.getValue().get());
+        }
+        return new Snapshot(Collections.unmodifiableMap(latencies), Collections.unmodifiableMap(failures),
+                checkoutWait.snapshot(), checkoutFailures.get(), waiting.get(), inUse.get(), maxInUse.get(),
+                open.get(), maxPoolSize);
+    }
+
+    /**
+     * 某一时刻的指标，计数和直方图从创建客户端起累计
+     */
+    public static final class Snapshot {
+        private final Map<String, LatencyHistogram.Snapshot> commandLatencies;
+        private final Map<String, Long> commandFailures;
+        private final LatencyHistogram.Snapshot checkoutWait;
+        private final long checkoutFailures;
+        private final int waiting;
+        private final int inUse;
+        private final int maxInUse;
+        private final int openConnections;
+        private final int maxPoolSize;
+
+        Snapshot(Map<String, LatencyHistogram.Snapshot> commandLatencies, Map<String, Long> commandFailures,
+                 LatencyHistogram.Snapshot checkoutWait, long checkoutFailures, int waiting, int inUse, int maxInUse,
+                 int openConnections, int maxPoolSize) {
+            this.commandLatencies = commandLatencies;
+            this.commandFailures = commandFailures;
+            this.checkoutWait = checkoutWait;
+            this.checkoutFailures = checkoutFailures;
+            this.waiting = waiting;
+            this.inUse = inUse;
+            this.maxInUse = maxInUse;
+            this.openConnections = openConnections;
+            this.maxPoolSize = maxPoolSize;
+        }
+
+        /** 命令名（find、insert、aggregate 等）-> 耗时 */
+        public Map<String, LatencyHistogram.Snapshot> getCommandLatencies() { return commandLatencies; }
+        public Map<String, Long> getCommandFailures() { return commandFailures; }
+        /** 从请求连接到拿到连接的时间，包括新建连接 */
+        public LatencyHistogram.Snapshot getCheckoutWait() { return checkoutWait; }
+        /** 等待超时或连接池已关闭等原因没拿到连接的次数 */
+        public long getCheckoutFailures() { return checkoutFailures; }
+        public int getWaiting() { return waiting; }
+        public int getInUse() { return inUse; }
+        public int getMaxInUse() { return maxInUse; }
+        public int getOpenConnections() { return openConnections; }
+        public int getMaxPoolSize() { return maxPoolSize; }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("pool: open=").append(openConnections).append(", inUse=").append(inUse)
+                    .append(", maxInUse=").append(maxInUse).append(", maxPoolSize=").append(maxPoolSize)
+                    .append(", waiting=").append(waiting).append(", checkoutFailures=").append(checkoutFailures)
+                    .append("\ncheckoutWait: ").append(checkoutWait);
+            for (Map.Entry<String, LatencyHistogram.Snapshot> entry : commandLatencies.entrySet()) {
+                Long failed = commandFailures.get(entry.getKey());
+                sb.append('\n').append(entry.getKey()).append(": ").append(entry.getValue())
+                        .append(", failed=").append(failed == null ? 0 : failed);
+            }
+            return sb.toString();
+        }
+    }
+}
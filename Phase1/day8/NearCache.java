@@ -0,0 +1,114 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 进程内有界缓存：按 key 的哈希分成多段，每段是按访问顺序排列的 LinkedHashMap（LRU），各自加锁，减少读多时的锁竞争。
+ *
+ * 每个条目有自己的过期时间，为 ttl 再加上 [0, ttl·jitter) 的随机值，同一批写入的条目不会同时过期（防缓存雪崩）。
+ */
+public class NearCache<K, V> {
+    private static final int SEGMENTS = 16;
+
+    private static final class Timed<V> {
+        final V value;
+        final long expiresAt;
+
+        Timed(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Segment<K, V> extends LinkedHashMap<K, Timed<V>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Timed<V>> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    private final Segment<K, V>[] segments;
+    private final double jitter;
+
+    /**
+     * @param maxSize 最多缓存的条目数，按段平均分配
+     * @param jitter 过期时间的随机增量占 ttl 的比例，如 0.1
+     */
+    @SuppressWarnings("unchecked")
+    public NearCache(int maxSize, double jitter) {
+        if (maxSize <= 0 || jitter < 0) {
+            throw new IllegalArgumentException("本地缓存参数不合法：maxSize=" + maxSize + ", jitter=" + jitter);
+        }
+        this.segments = (Segment<K, V>[]) new Segment<?, ?>[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS));
+        }
+        this.jitter = jitter;
+    }
+
+    private Segment<K, V> segment(Object key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * @return 缓存的值，不存在或已过期时为 null
+     */
+    public V get(K key) {
+        Segment<K, V> segment = segment(key);
+        synchronized (segment) {
+            Timed<V> entry = segment.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt <= System.currentTimeMillis()) {
+                segment.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    public void put(K key, V value, long ttlMillis) {
+        long extra = (long) (ttlMillis * jitter * ThreadLocalRandom.current().nextDouble());
+        Timed<V> entry = new Timed<>(value, System.currentTimeMillis() + ttlMillis + extra);
+        Segment<K, V> segment = segment(key);
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+    }
+
+    public void remove(K key) {
+        Segment<K, V> segment = segment(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * 多级缓存中多个进程共用的一层，生产环境对应 Redis 等远程缓存，测试时用 InMemorySharedCache。
+ *
+ * 值为序列化后的字节，实现不需要理解内容；过期由实现负责，过期的 key 与不存在的 key 一样返回 null。
+ */
+public interface SharedCache {
+
+    /**
+     * @return 缓存的值，不存在或已过期时为 null
+     */
+    byte[] get(String key);
+
+    void set(String key, byte[] value, long ttlMillis);
+
+    void delete(String key);
+}
@@ -0,0 +1,155 @@
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * User 的手写编解码器：直接在 BSON 读写器上逐字段读写，没有反射和中间的 Document/JSON
+ * 字段名与 PojoCodecProvider 生成的一致（id 存为 _id，createdAt 存为 created_at）。
+ * 实现 CollectibleCodec，插入时没有 _id 由驱动调用 generateIdIfAbsentFromDocument 生成并回填到对象。
+ */
+public class UserCodec implements CollectibleCodec<User> {
+    private final Codec<Address> addressCodec;
+
+    public UserCodec() {
+        this(new AddressCodec());
+    }
+
+    public UserCodec(Codec<Address> addressCodec) {
+        this.addressCodec = addressCodec;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, User user, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        // _id 放在第一个字段，与服务端存储顺序一致
+        if (user.getId() != null) {
+            writer.writeObjectId("_id", user.getId());
+        }
+        AddressCodec.writeString(writer, "username", user.getUsername());
+        AddressCodec.writeString(writer, "email", user.getEmail());
+        writer.writeInt32("age", user.getAge());
+        if (user.getCreatedAt() != null) {
+            writer.writeDateTime("created_at", user.getCreatedAt().getTime());
+        }
+        if (user.getHobbies() != null) {
+            writer.writeStartArray("hobbies");
+            for (String hobby : user.getHobbies()) {
+                if (hobby == null) {
+                    writer.writeNull();
+                } else {
+                    writer.writeString(hobby);
+                }
+            }
+            writer.writeEndArray();
+        }
+        if (user.getAddress() != null) {
+            writer.writeName("address");
+            encoderContext.encodeWithChildContext(addressCodec, writer, user.getAddress());
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public User decode(BsonReader reader, DecoderContext decoderContext) {
+        User user = new User();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+            switch (name) {
+                case "_id":
+                    user.setId(reader.readObjectId());
+                    break;
+                case "username":
+                    user.setUsername(reader.readString());
+                    break;
+                case "email":
+                    user.setEmail(reader.readString());
+                    break;
+                case "age":
+                    user.setAge(readInt(reader));
+                    break;
+                case "created_at":
+                    user.setCreatedAt(new Date(reader.readDateTime()));
+                    break;
+                case "hobbies":
+                    user.setHobbies(readStrings(reader));
+                    break;
+                case "address":
+                    user.setAddress(decoderContext.decodeWithChildContext(addressCodec, reader));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return user;
+    }
+
+    // 手工写入或其他语言写入的数据，age 可能是 int64 或 double
+    private static int readInt(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT64:
+                return (int) reader.readInt64();
+            case DOUBLE:
+                return (int) reader.readDouble();
+            default:
+                return reader.readInt32();
+        }
+    }
+
+    private static List<String> readStrings(BsonReader reader) {
+        List<String> values = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                values.add(null);
+            } else {
+                values.add(reader.readString());
+            }
+        }
+        reader.readEndArray();
+        return values;
+    }
+
+    @Override
+    public Class<User> getEncoderClass() {
+        return User.class;
+    }
+
+    @Override
+    public User generateIdIfAbsentFromDocument(User user) {
+        if (user.getId() == null) {
+            user.setId(new ObjectId());
+        }
+        return user;
+    }
+
+    @Override
+    public boolean documentHasId(User user) {
+        return user.getId() != null;
+    }
+
+    @Override
+    public BsonValue getDocumentId(User user) {
+        if (user.getId() == null) {
+            throw new IllegalStateException("User 没有 _id");
+        }
+        return new BsonObjectId(user.getId());
+    }
+}
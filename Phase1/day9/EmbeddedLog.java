@@ -0,0 +1,1111 @@
+// 嵌入式分区日志（进程内的迷你 Kafka）
+// - 主题（topic）拆分为多个分区（partition），每个分区是一组只追加的分段文件（.log）+ 稀疏偏移索引（.index）
+// - 生产者按分区攒批，一批记录只做一次 FileChannel.write，顺序写磁盘
+// - 消费组记录每个分区已提交的偏移量，组内成员按轮询方式分配分区
+// - 读取可以直接用 FileChannel.transferTo 把一段日志零拷贝地发送到目标通道
+// 编译运行：javac EmbeddedLog.java && java EmbeddedLog
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+// 一条日志记录
+final class LogRecord {
+    final int partition;
+    final long offset;
+    final byte[] value;
+
+    LogRecord(int partition, long offset, byte[] value) {
+        this.partition = partition;
+        this.offset = offset;
+        this.value = value;
+    }
+
+    @Override
+    public String toString() {
+        return "LogRecord[partition=" + partition + ", offset=" + offset + ", size=" + value.length + "]";
+    }
+}
+
+// transferTo 的结果：发送的字节数、下一次读取的偏移量
+final class TransferResult {
+    final long bytes;
+    final long nextOffset;
+
+    TransferResult(long bytes, long nextOffset) {
+        this.bytes = bytes;
+        this.nextOffset = nextOffset;
+    }
+}
+
+// 日志分段：一个 .log 数据文件 + 一个稀疏 .index 索引
+// 记录格式：offset(long) | length(int) | value(bytes)，同一分区内偏移量连续递增
+final class LogSegment {
+    static final int RECORD_HEADER = 12;
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".index";
+
+    final long baseOffset;
+    private final Path logFile;
+    private final Path indexFile;
+    private final FileChannel channel;
+    private final int indexIntervalBytes;
+    // 已写入且对读者可见的末尾；size 与 nextOffset 放在同一个不可变对象里一起发布
+    private volatile Tail tail;
+
+    // 稀疏索引：每写入 indexIntervalBytes 字节记录一条 (相对偏移, 文件位置)
+    private int[] indexOffsets = new int[64];
+    private int[] indexPositions = new int[64];
+    private int indexEntries;
+    private long bytesSinceLastIndex;
+
+    // 正在读取本分段的读者数；保留策略删除分段时若仍有读者，由最后一个读者释放时再删除文件（由 this 保护）
+    private int readers;
+    private boolean deleted;
+
+    static final class Tail {
+        final long size;
+        final long nextOffset;
+
+        Tail(long size, long nextOffset) {
+            this.size = size;
+            this.nextOffset = nextOffset;
+        }
+    }
+
+    private LogSegment(Path dir, long baseOffset, int indexIntervalBytes) throws IOException {
+        this.baseOffset = baseOffset;
+        this.logFile = dir.resolve(String.format("%020d%s", baseOffset, LOG_SUFFIX));
+        this.indexFile = dir.resolve(String.format("%020d%s", baseOffset, INDEX_SUFFIX));
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.channel = FileChannel.open(logFile, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.tail = new Tail(0, baseOffset);
+    }
+
+    static LogSegment create(Path dir, long baseOffset, int indexIntervalBytes) throws IOException {
+        return new LogSegment(dir, baseOffset, indexIntervalBytes);
+    }
+
+    /**
+     * 打开已有分段：非活跃分段优先加载 .index，活跃分段总是扫描重建（顺便截掉写了一半的尾部记录）
+     */
+    static LogSegment open(Path dir, long baseOffset, int indexIntervalBytes, boolean active) throws IOException {
+        LogSegment segment = new LogSegment(dir, baseOffset, indexIntervalBytes);
+        segment.recover(active || !Files.exists(segment.indexFile));
+        return segment;
+    }
+
+    static long parseBaseOffset(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length()));
+    }
+
+    // 扫描分段确定末尾：rebuildIndex 为 true 时从头扫描并重建索引，否则加载 .index 后只扫描最后一个索引点之后的部分
+    private void recover(boolean rebuildIndex) throws IOException {
+        long start = 0;
+        long lastOffset = baseOffset - 1;
+        if (!rebuildIndex) {
+            loadIndex();
+            if (indexEntries > 0) {
+                start = indexPositions[indexEntries - 1];
+                lastOffset = baseOffset + indexOffsets[indexEntries - 1] - 1;
+            }
+        }
+        long fileSize = channel.size();
+        HeaderCursor cursor = new HeaderCursor(start, fileSize, 1 << 20);
+        while (cursor.next()) {
+            if (cursor.length < 0 || cursor.position + RECORD_HEADER + cursor.length > fileSize
+                    || cursor.offset != lastOffset + 1) {
+                break;
+            }
+            if (rebuildIndex) {
+                maybeIndex(cursor.offset, cursor.position, RECORD_HEADER + cursor.length);
+            }
+            lastOffset = cursor.offset;
+            cursor.advance();
+        }
+        if (cursor.position < fileSize) {
+            System.out.println("分段 " + logFile.getFileName() + " 尾部存在不完整记录，截断到 " + cursor.position);
+            channel.truncate(cursor.position);
+        }
+        tail = new Tail(cursor.position, lastOffset + 1);
+    }
+
+    private void loadIndex() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+        while (buffer.remaining() >= 8) {
+            addIndexEntry(buffer.getInt(), buffer.getInt());
+        }
+    }
+
+    private void saveIndex() throws IOException {
+        ByteBuffer buffer;
+        synchronized (this) {
+            buffer = ByteBuffer.allocate(indexEntries * 8);
+            for (int i = 0; i < indexEntries; i++) {
+                buffer.putInt(indexOffsets[i]).putInt(indexPositions[i]);
+            }
+        }
+        Files.write(indexFile, buffer.array());
+    }
+
+    private void maybeIndex(long offset, long position, int recordSize) {
+        if (indexEntries == 0 || bytesSinceLastIndex >= indexIntervalBytes) {
+            addIndexEntry((int) (offset - baseOffset), (int) position);
+            bytesSinceLastIndex = 0;
+        }
+        bytesSinceLastIndex += recordSize;
+    }
+
+    private synchronized void addIndexEntry(int relativeOffset, int position) {
+        if (indexEntries == indexOffsets.length) {
+            indexOffsets = Arrays.copyOf(indexOffsets, indexEntries * 2);
+            indexPositions = Arrays.copyOf(indexPositions, indexEntries * 2);
+        }
+        indexOffsets[indexEntries] = relativeOffset;
+        indexPositions[indexEntries] = position;
+        indexEntries++;
+    }
+
+    // 二分查找相对偏移不大于 relative 的最后一个索引项，返回其下标，没有时返回 -1
+    private synchronized int floorByOffset(int relative) {
+        int lo = 0;
+        int hi = indexEntries - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (indexOffsets[mid] <= relative) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // 二分查找文件位置不大于 position 的最后一个索引项，返回 {位置, 相对偏移}，没有时返回 null
+    private synchronized int[] floorByPosition(long position) {
+        int lo = 0;
+        int hi = indexEntries - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (indexPositions[mid] <= position) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found < 0 ? null : new int[]{indexPositions[found], indexOffsets[found]};
+    }
+
+    /**
+     * 追加一批已编码好的记录（调用方持有分区锁）
+     * @param batch 一批完整记录
+     * @param recordSizes 每条记录的字节数（含记录头），用于维护稀疏索引
+     */
+    void append(ByteBuffer batch, long firstOffset, int[] recordSizes, int count) throws IOException {
+        long position = tail.size;
+        long writeAt = position;
+        while (batch.hasRemaining()) {
+            writeAt += channel.write(batch, writeAt);
+        }
+        for (int i = 0; i < count; i++) {
+            maybeIndex(firstOffset + i, position, recordSizes[i]);
+            position += recordSizes[i];
+        }
+        tail = new Tail(position, firstOffset + count);
+    }
+
+    /**
+     * 定位 offset 所在记录的文件位置：先查稀疏索引，再从索引点顺序扫描；不在本分段返回 -1
+     */
+    long positionOf(long offset) throws IOException {
+        Tail snapshot = tail;
+        if (offset >= snapshot.nextOffset) {
+            return -1;
+        }
+        int entry = floorByOffset((int) (offset - baseOffset));
+        long start = entry < 0 ? 0 : indexPosition(entry);
+        HeaderCursor cursor = new HeaderCursor(start, snapshot.size, 8192);
+        while (cursor.next()) {
+            if (cursor.offset >= offset) {
+                return cursor.position;
+            }
+            cursor.advance();
+        }
+        return -1;
+    }
+
+    private synchronized long indexPosition(int entry) {
+        return indexPositions[entry];
+    }
+
+    /**
+     * 计算从 start 开始最多约 maxBytes 的读取范围（按完整记录对齐，至少一条）
+     * 优先用稀疏索引中的记录边界，避免逐条读取记录头
+     * @return {结束位置, 下一条记录的偏移量}
+     */
+    long[] boundary(long start, int maxBytes) throws IOException {
+        Tail snapshot = tail;
+        if (start + maxBytes >= snapshot.size) {
+            return new long[]{snapshot.size, snapshot.nextOffset};
+        }
+        int[] entry = floorByPosition(start + maxBytes);
+        if (entry != null && entry[0] > start) {
+            return new long[]{entry[0], baseOffset + entry[1]};
+        }
+        // 范围内没有索引点：逐条扫描
+        HeaderCursor cursor = new HeaderCursor(start, snapshot.size, 8192);
+        long next = -1;
+        while (cursor.next()) {
+            long end = cursor.position + RECORD_HEADER + cursor.length;
+            if (end - start > maxBytes && cursor.position > start) {
+                break;
+            }
+            next = cursor.offset + 1;
+            cursor.advance();
+        }
+        return new long[]{cursor.position, next};
+    }
+
+    void readFully(ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = channel.read(dst, position);
+            if (n < 0) {
+                throw new IOException("意外读到文件末尾：" + logFile);
+            }
+            position += n;
+        }
+    }
+
+    long transferTo(long start, long end, WritableByteChannel target) throws IOException {
+        long sent = 0;
+        while (start + sent < end) {
+            sent += channel.transferTo(start + sent, end - start - sent, target);
+        }
+        return sent;
+    }
+
+    long size() {
+        return tail.size;
+    }
+
+    long nextOffset() {
+        return tail.nextOffset;
+    }
+
+    void flush() throws IOException {
+        channel.force(false);
+    }
+
+    // 分段不再写入时落盘索引
+    void seal() throws IOException {
+        flush();
+        saveIndex();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 读取前登记为读者；分段已被删除时返回 false
+     */
+    synchronized boolean retain() {
+        if (deleted) {
+            return false;
+        }
+        readers++;
+        return true;
+    }
+
+    void release() throws IOException {
+        boolean remove;
+        synchronized (this) {
+            readers--;
+            remove = deleted && readers == 0;
+        }
+        if (remove) {
+            deleteFiles();
+        }
+    }
+
+    // 没有读者时立即删除，否则推迟到最后一个读者 release
+    void delete() throws IOException {
+        boolean remove;
+        synchronized (this) {
+            deleted = true;
+            remove = readers == 0;
+        }
+        if (remove) {
+            deleteFiles();
+        }
+    }
+
+    private void deleteFiles() throws IOException {
+        close();
+        Files.deleteIfExists(logFile);
+        Files.deleteIfExists(indexFile);
+    }
+
+    // 按块读取记录头，避免每条记录一次系统调用
+    private final class HeaderCursor {
+        private final ByteBuffer buffer;
+        private final long end;
+        private long bufferStart;
+        long position;
+        long offset;
+        int length;
+
+        HeaderCursor(long position, long end, int chunkSize) {
+            this.buffer = ByteBuffer.allocate(chunkSize);
+            this.buffer.limit(0);
+            this.position = position;
+            this.end = end;
+        }
+
+        // 读取 position 处的记录头；剩余空间不足一个记录头时返回 false
+        boolean next() throws IOException {
+            if (position + RECORD_HEADER > end) {
+                return false;
+            }
+            long relative = position - bufferStart;
+            if (relative < 0 || relative + RECORD_HEADER > buffer.limit()) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                readFully(buffer, position);
+                buffer.flip();
+                bufferStart = position;
+                relative = 0;
+            }
+            offset = buffer.getLong((int) relative);
+            length = buffer.getInt((int) relative + 8);
+            return true;
+        }
+
+        void advance() {
+            position += RECORD_HEADER + length;
+        }
+    }
+}
+
+// 分区：按偏移量有序的分段集合，只有最后一个分段可写
+final class Partition {
+    final String topic;
+    final int id;
+    private final Path dir;
+    private final long segmentBytes;
+    private final long retentionBytes;
+    private final int indexIntervalBytes;
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private volatile LogSegment active;
+    // 日志末端偏移量（下一条记录将获得的偏移量）
+    private volatile long logEndOffset;
+
+    // 一次读取对应的分段区间
+    private static final class Slice {
+        final LogSegment segment;
+        final long start;
+        final long end;
+        final long nextOffset;
+
+        Slice(LogSegment segment, long start, long end, long nextOffset) {
+            this.segment = segment;
+            this.start = start;
+            this.end = end;
+            this.nextOffset = nextOffset;
+        }
+    }
+
+    Partition(Path root, String topic, int id, long segmentBytes, long retentionBytes, int indexIntervalBytes) throws IOException {
+        this.topic = topic;
+        this.id = id;
+        this.dir = root.resolve(topic + "-" + id);
+        this.segmentBytes = segmentBytes;
+        this.retentionBytes = retentionBytes;
+        this.indexIntervalBytes = indexIntervalBytes;
+        Files.createDirectories(dir);
+
+        List<Long> bases = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.log")) {
+            for (Path file : files) {
+                bases.add(LogSegment.parseBaseOffset(file));
+            }
+        }
+        Collections.sort(bases);
+        for (int i = 0; i < bases.size(); i++) {
+            boolean last = i == bases.size() - 1;
+            segments.put(bases.get(i), LogSegment.open(dir, bases.get(i), indexIntervalBytes, last));
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, LogSegment.create(dir, 0, indexIntervalBytes));
+        }
+        this.active = segments.lastEntry().getValue();
+        this.logEndOffset = active.nextOffset();
+    }
+
+    /**
+     * 追加一批记录，整批只做一次文件写入
+     * @return 第一条记录的偏移量
+     */
+    synchronized long append(List<byte[]> values) throws IOException {
+        int bytes = 0;
+        int[] sizes = new int[values.size()];
+        for (int i = 0; i < values.size(); i++) {
+            sizes[i] = LogSegment.RECORD_HEADER + values.get(i).length;
+            bytes += sizes[i];
+        }
+        if (active.size() > 0 && active.size() + bytes > segmentBytes) {
+            roll();
+        }
+
+        long firstOffset = logEndOffset;
+        ByteBuffer batch = ByteBuffer.allocate(bytes);
+        for (int i = 0; i < values.size(); i++) {
+            batch.putLong(firstOffset + i).putInt(values.get(i).length).put(values.get(i));
+        }
+        batch.flip();
+        active.append(batch, firstOffset, sizes, values.size());
+        logEndOffset = firstOffset + values.size();
+        return firstOffset;
+    }
+
+    private void roll() throws IOException {
+        active.seal();
+        LogSegment next = LogSegment.create(dir, logEndOffset, indexIntervalBytes);
+        segments.put(next.baseOffset, next);
+        active = next;
+        applyRetention();
+    }
+
+    // 按大小删除最旧的分段（活跃分段永远保留）
+    private void applyRetention() throws IOException {
+        if (retentionBytes < 0) {
+            return;
+        }
+        long total = 0;
+        for (LogSegment segment : segments.values()) {
+            total += segment.size();
+        }
+        while (total > retentionBytes && segments.size() > 1) {
+            LogSegment oldest = segments.pollFirstEntry().getValue();
+            total -= oldest.size();
+            oldest.delete();
+        }
+    }
+
+    long logStartOffset() {
+        return segments.firstKey();
+    }
+
+    long logEndOffset() {
+        return logEndOffset;
+    }
+
+    // 找到包含 offset 的分段，并计算最多约 maxBytes 的读取区间；没有数据时返回 null
+    // 返回的分段已经 retain，读完后必须 release；分段在查找期间被保留策略删除时从新的起始偏移量重试
+    private Slice slice(long offset, int maxBytes) throws IOException {
+        retry:
+        while (true) {
+            long from = Math.max(offset, logStartOffset());
+            if (from >= logEndOffset) {
+                return null;
+            }
+            Map.Entry<Long, LogSegment> entry = segments.floorEntry(from);
+            if (entry == null) {
+                continue;
+            }
+            while (entry != null) {
+                LogSegment segment = entry.getValue();
+                if (!segment.retain()) {
+                    continue retry;
+                }
+                boolean found = false;
+                try {
+                    long start = segment.positionOf(from);
+                    if (start >= 0) {
+                        long[] boundary = segment.boundary(start, maxBytes);
+                        found = true;
+                        return new Slice(segment, start, boundary[0], boundary[1]);
+                    }
+                } finally {
+                    if (!found) {
+                        segment.release();
+                    }
+                }
+                entry = segments.higherEntry(entry.getKey());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 从 offset 开始读取最多约 maxBytes 的完整记录（至少一条）
+     */
+    List<LogRecord> fetch(long offset, int maxBytes) throws IOException {
+        Slice slice = slice(offset, maxBytes);
+        if (slice == null) {
+            return Collections.emptyList();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) (slice.end - slice.start));
+        try {
+            slice.segment.readFully(buffer, slice.start);
+        } finally {
+            slice.segment.release();
+        }
+        buffer.flip();
+        List<LogRecord> records = new ArrayList<>();
+        while (buffer.remaining() >= LogSegment.RECORD_HEADER) {
+            long recordOffset = buffer.getLong();
+            byte[] value = new byte[buffer.getInt()];
+            buffer.get(value);
+            records.add(new LogRecord(id, recordOffset, value));
+        }
+        return records;
+    }
+
+    /**
+     * 零拷贝读取：把从 offset 开始最多约 maxBytes 的原始记录直接发送到 target
+     */
+    TransferResult transferTo(long offset, int maxBytes, WritableByteChannel target) throws IOException {
+        Slice slice = slice(offset, maxBytes);
+        if (slice == null) {
+            return new TransferResult(0, Math.max(offset, logStartOffset()));
+        }
+        try {
+            long sent = slice.segment.transferTo(slice.start, slice.end, target);
+            return new TransferResult(sent, slice.nextOffset);
+        } finally {
+            slice.segment.release();
+        }
+    }
+
+    void flush() throws IOException {
+        active.flush();
+    }
+
+    synchronized void close() throws IOException {
+        active.seal();
+        for (LogSegment segment : segments.values()) {
+            segment.close();
+        }
+    }
+}
+
+// 生产者：按分区攒批，批大小达到 batchBytes 或等待超过 lingerMillis 时整批追加
+final class LogProducer implements AutoCloseable {
+    private final EmbeddedLog log;
+    private final int batchBytes;
+    private final long lingerNanos;
+    private final Map<Partition, Batch> batches = new HashMap<>();
+    // 已攒满或到期、等待写入的批次，按换出顺序排队（由 this 保护）
+    private final Map<Partition, ArrayDeque<Batch>> ready = new HashMap<>();
+    // 每个分区同时只有一个线程写入，按队列顺序追加，保证同一分区（同一 key）的记录顺序与 send 顺序一致
+    private final Map<Partition, Object> writeLocks = new ConcurrentHashMap<>();
+    private final Thread lingerThread;
+    private volatile boolean closed = false;
+    private int roundRobin = 0;
+
+    private static final class Batch {
+        final List<byte[]> values = new ArrayList<>();
+        final List<CompletableFuture<Long>> futures = new ArrayList<>();
+        final long createdNanos = System.nanoTime();
+        int bytes;
+    }
+
+    LogProducer(EmbeddedLog log, int batchBytes, long lingerMillis) {
+        this.log = log;
+        this.batchBytes = batchBytes;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.lingerThread = new Thread(this::runLinger, "log-producer-linger");
+        this.lingerThread.setDaemon(true);
+        this.lingerThread.start();
+    }
+
+    /**
+     * 发送一条记录；key 为 null 时轮询分区，否则按 key 哈希选择分区
+     * @return 记录写入后的偏移量
+     */
+    CompletableFuture<Long> send(String topic, byte[] key, byte[] value) {
+        if (closed) {
+            throw new IllegalStateException("生产者已关闭");
+        }
+        int partitions = log.partitionCount(topic);
+        boolean full = false;
+        Partition partition;
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        synchronized (this) {
+            int p = key == null ? Math.floorMod(roundRobin++, partitions) : Math.floorMod(Arrays.hashCode(key), partitions);
+            partition = log.partition(topic, p);
+            Batch batch = batches.computeIfAbsent(partition, k -> new Batch());
+            batch.values.add(value);
+            batch.futures.add(future);
+            batch.bytes += LogSegment.RECORD_HEADER + value.length;
+            if (batch.bytes >= batchBytes) {
+                enqueue(partition, batches.remove(partition));
+                full = true;
+            }
+        }
+        if (full) {
+            drain(partition);
+        }
+        return future;
+    }
+
+    // 把所有未满的批次立即写出
+    void flush() {
+        List<Partition> partitions;
+        synchronized (this) {
+            batches.forEach(this::enqueue);
+            batches.clear();
+            partitions = new ArrayList<>(ready.keySet());
+        }
+        partitions.forEach(this::drain);
+    }
+
+    // 调用方持有 this
+    private void enqueue(Partition partition, Batch batch) {
+        ready.computeIfAbsent(partition, k -> new ArrayDeque<>()).add(batch);
+    }
+
+    // 按顺序写出分区队列中的批次；其他线程正在写该分区时等它写完，队列中的后续批次由先拿到写锁的线程写出
+    private void drain(Partition partition) {
+        synchronized (writeLocks.computeIfAbsent(partition, k -> new Object())) {
+            while (true) {
+                Batch batch;
+                synchronized (this) {
+                    ArrayDeque<Batch> queue = ready.get(partition);
+                    batch = queue == null ? null : queue.poll();
+                    if (queue != null && queue.isEmpty()) {
+                        ready.remove(partition);
+                    }
+                }
+                if (batch == null) {
+                    return;
+                }
+                write(partition, batch);
+            }
+        }
+    }
+
+    private void write(Partition partition, Batch batch) {
+        try {
+            long first = partition.append(batch.values);
+            for (int i = 0; i < batch.futures.size(); i++) {
+                batch.futures.get(i).complete(first + i);
+            }
+        } catch (IOException e) {
+            for (CompletableFuture<Long> future : batch.futures) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void runLinger() {
+        long sleepMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(lingerNanos) / 2);
+        while (!closed) {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            List<Partition> expired = new ArrayList<>();
+            long now = System.nanoTime();
+            synchronized (this) {
+                batches.entrySet().removeIf(entry -> {
+                    if (now - entry.getValue().createdNanos >= lingerNanos) {
+                        enqueue(entry.getKey(), entry.getValue());
+                        expired.add(entry.getKey());
+                        return true;
+                    }
+                    return false;
+                });
+            }
+            expired.forEach(this::drain);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        lingerThread.interrupt();
+        flush();
+    }
+}
+
+// 消费组：保存每个分区已提交的偏移量，并在成员加入/离开时重新分配分区
+final class ConsumerGroup {
+    final String name;
+    final String topic;
+    private final EmbeddedLog log;
+    private final Path offsetsFile;
+    private final Map<Integer, Long> committed = new HashMap<>();
+    private final List<GroupMember> members = new ArrayList<>();
+    private int generation = 0;
+
+    ConsumerGroup(EmbeddedLog log, Path offsetsDir, String name, String topic) throws IOException {
+        this.log = log;
+        this.name = name;
+        this.topic = topic;
+        this.offsetsFile = offsetsDir.resolve(name + "@" + topic + ".offsets");
+        if (Files.exists(offsetsFile)) {
+            Properties props = new Properties();
+            try (InputStream in = Files.newInputStream(offsetsFile)) {
+                props.load(in);
+            }
+            for (String partition : props.stringPropertyNames()) {
+                committed.put(Integer.parseInt(partition), Long.parseLong(props.getProperty(partition)));
+            }
+        }
+    }
+
+    synchronized GroupMember join() {
+        GroupMember member = new GroupMember(this, log, "member-" + members.size());
+        members.add(member);
+        generation++;
+        return member;
+    }
+
+    synchronized void leave(GroupMember member) {
+        members.remove(member);
+        generation++;
+    }
+
+    synchronized int generation() {
+        return generation;
+    }
+
+    // 轮询分配：第 i 个成员负责 partition % 成员数 == i 的分区
+    synchronized List<Integer> assignment(GroupMember member) {
+        int index = members.indexOf(member);
+        List<Integer> assigned = new ArrayList<>();
+        if (index < 0) {
+            return assigned;
+        }
+        for (int p = 0; p < log.partitionCount(topic); p++) {
+            if (p % members.size() == index) {
+                assigned.add(p);
+            }
+        }
+        return assigned;
+    }
+
+    synchronized long committed(int partition) {
+        Long offset = committed.get(partition);
+        return offset != null ? offset : log.partition(topic, partition).logStartOffset();
+    }
+
+    /**
+     * 提交偏移量：先写临时文件再原子替换，避免崩溃时留下半个文件
+     */
+    synchronized void commit(Map<Integer, Long> offsets) throws IOException {
+        committed.putAll(offsets);
+        Properties props = new Properties();
+        for (Map.Entry<Integer, Long> entry : committed.entrySet()) {
+            props.setProperty(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+        }
+        Path tmp = offsetsFile.resolveSibling(offsetsFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            props.store(out, "consumer group " + name);
+        }
+        Files.move(tmp, offsetsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
+
+// 消费组成员：每次 poll 前检查分组代数，发生重平衡时从已提交的偏移量重新开始
+final class GroupMember implements AutoCloseable {
+    private final ConsumerGroup group;
+    private final EmbeddedLog log;
+    final String id;
+    private int knownGeneration = -1;
+    private List<Integer> assigned = Collections.emptyList();
+    private final Map<Integer, Long> positions = new HashMap<>();
+    private int nextPartition = 0;
+
+    GroupMember(ConsumerGroup group, EmbeddedLog log, String id) {
+        this.group = group;
+        this.log = log;
+        this.id = id;
+    }
+
+    /**
+     * 从分配到的分区中轮流拉取，每次最多约 maxBytes
+     */
+    List<LogRecord> poll(int maxBytes) throws IOException {
+        syncAssignment();
+        for (int i = 0; i < assigned.size(); i++) {
+            int partition = assigned.get((nextPartition + i) % assigned.size());
+            long position = positions.get(partition);
+            List<LogRecord> records = log.partition(group.topic, partition).fetch(position, maxBytes);
+            if (!records.isEmpty()) {
+                positions.put(partition, records.get(records.size() - 1).offset + 1);
+                nextPartition = (nextPartition + i + 1) % assigned.size();
+                return records;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private void syncAssignment() {
+        int generation = group.generation();
+        if (generation == knownGeneration) {
+            return;
+        }
+        assigned = group.assignment(this);
+        positions.clear();
+        for (int partition : assigned) {
+            positions.put(partition, group.committed(partition));
+        }
+        knownGeneration = generation;
+        nextPartition = 0;
+    }
+
+    List<Integer> assignment() {
+        syncAssignment();
+        return assigned;
+    }
+
+    // 提交当前消费位置
+    void commitSync() throws IOException {
+        group.commit(new HashMap<>(positions));
+    }
+
+    @Override
+    public void close() {
+        group.leave(this);
+    }
+}
+
+public class EmbeddedLog implements AutoCloseable {
+    private static final String OFFSETS_DIR = "__consumer_offsets";
+
+    private final Path root;
+    private final long segmentBytes;
+    private final long retentionBytes;
+    private final int indexIntervalBytes;
+    private final Map<String, Partition[]> topics = new ConcurrentHashMap<>();
+    private final Map<String, ConsumerGroup> groups = new ConcurrentHashMap<>();
+
+    public EmbeddedLog(Path root) throws IOException {
+        this(root, 1L << 30, -1, 4096);
+    }
+
+    /**
+     * @param root 数据目录
+     * @param segmentBytes 单个分段的大小上限
+     * @param retentionBytes 每个分区最多保留的字节数，-1 表示不限制
+     * @param indexIntervalBytes 稀疏索引的间隔字节数
+     */
+    public EmbeddedLog(Path root, long segmentBytes, long retentionBytes, int indexIntervalBytes) throws IOException {
+        this.root = root;
+        this.segmentBytes = segmentBytes;
+        this.retentionBytes = retentionBytes;
+        this.indexIntervalBytes = indexIntervalBytes;
+        Files.createDirectories(root.resolve(OFFSETS_DIR));
+
+        // 恢复已有主题：目录名形如 topic-分区号
+        Map<String, TreeMap<Integer, Path>> found = new HashMap<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                String name = dir.getFileName().toString();
+                int dash = name.lastIndexOf('-');
+                if (name.equals(OFFSETS_DIR) || dash <= 0) {
+                    continue;
+                }
+                found.computeIfAbsent(name.substring(0, dash), k -> new TreeMap<>())
+                        .put(Integer.parseInt(name.substring(dash + 1)), dir);
+            }
+        }
+        for (Map.Entry<String, TreeMap<Integer, Path>> entry : found.entrySet()) {
+            openTopic(entry.getKey(), entry.getValue().size());
+        }
+    }
+
+    /**
+     * 创建主题；已存在时直接返回
+     */
+    public synchronized void createTopic(String topic, int partitions) throws IOException {
+        if (!topics.containsKey(topic)) {
+            openTopic(topic, partitions);
+        }
+    }
+
+    private void openTopic(String topic, int partitionCount) throws IOException {
+        Partition[] partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(root, topic, i, segmentBytes, retentionBytes, indexIntervalBytes);
+        }
+        topics.put(topic, partitions);
+    }
+
+    Partition partition(String topic, int partition) {
+        return partitions(topic)[partition];
+    }
+
+    int partitionCount(String topic) {
+        return partitions(topic).length;
+    }
+
+    private Partition[] partitions(String topic) {
+        Partition[] partitions = topics.get(topic);
+        if (partitions == null) {
+            throw new IllegalArgumentException("主题不存在：" + topic);
+        }
+        return partitions;
+    }
+
+    public LogProducer producer(int batchBytes, long lingerMillis) {
+        return new LogProducer(this, batchBytes, lingerMillis);
+    }
+
+    public ConsumerGroup consumerGroup(String group, String topic) {
+        partitions(topic);
+        return groups.computeIfAbsent(group + "@" + topic, key -> {
+            try {
+                return new ConsumerGroup(this, root.resolve(OFFSETS_DIR), group, topic);
+            } catch (IOException e) {
+                throw new UncheckedIOException("加载消费组偏移量失败：" + group, e);
+            }
+        });
+    }
+
+    // 强制把所有分区的活跃分段刷到磁盘
+    public void flush() throws IOException {
+        for (Partition[] partitions : topics.values()) {
+            for (Partition partition : partitions) {
+                partition.flush();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Partition[] partitions : topics.values()) {
+            for (Partition partition : partitions) {
+                partition.close();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path root = Paths.get(System.getProperty("java.io.tmpdir"), "day9-embedded-log");
+        deleteRecursively(root);
+
+        int records = 500_000;
+        byte[] payload = new byte[200];
+        Arrays.fill(payload, (byte) 'x');
+
+        try (EmbeddedLog log = new EmbeddedLog(root, 64L << 20, -1, 4096)) {
+            log.createTopic("orders", 4);
+
+            // 1. 顺序批量写入
+            long t0 = System.nanoTime();
+            try (LogProducer producer = log.producer(256 << 10, 5)) {
+                for (int i = 0; i < records; i++) {
+                    producer.send("orders", null, payload);
+                }
+            }
+            double seconds = (System.nanoTime() - t0) / 1e9;
+            double megabytes = records * (payload.length + LogSegment.RECORD_HEADER) / (1024.0 * 1024.0);
+            System.out.printf("写入 %d 条（%.1f MB）耗时 %.2f s，吞吐 %.1f MB/s%n", records, megabytes, seconds, megabytes / seconds);
+
+            // 2. 消费组：两个成员分摊 4 个分区，消费完后提交偏移量
+            ConsumerGroup group = log.consumerGroup("billing", "orders");
+            try (GroupMember a = group.join(); GroupMember b = group.join()) {
+                long consumed = 0;
+                for (GroupMember member : Arrays.asList(a, b)) {
+                    List<LogRecord> batch;
+                    while (!(batch = member.poll(1 << 20)).isEmpty()) {
+                        consumed += batch.size();
+                    }
+                    member.commitSync();
+                    System.out.println(member.id + " 负责分区 " + member.assignment());
+                }
+                System.out.println("消费组 billing 共消费：" + consumed + " 条");
+            }
+
+            // 3. 零拷贝读取：用 transferTo 把分区 0 的一段日志发送到目标通道
+            CountingChannel sink = new CountingChannel();
+            Partition partition = log.partition("orders", 0);
+            long offset = 0;
+            long t1 = System.nanoTime();
+            while (offset < partition.logEndOffset()) {
+                offset = partition.transferTo(offset, 1 << 20, sink).nextOffset;
+            }
+            System.out.printf("transferTo 发送分区0共 %.1f MB，耗时 %d ms%n",
+                    sink.bytes / (1024.0 * 1024.0), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t1));
+        }
+
+        // 4. 重启后偏移量和日志都能恢复
+        try (EmbeddedLog log = new EmbeddedLog(root, 64L << 20, -1, 4096)) {
+            ConsumerGroup group = log.consumerGroup("billing", "orders");
+            System.out.println("重启后分区0日志末端：" + log.partition("orders", 0).logEndOffset()
+                    + "，billing 已提交：" + group.committed(0));
+        }
+        deleteRecursively(root);
+    }
+
+    // 统计字节数的目标通道，模拟网络连接
+    private static final class CountingChannel implements WritableByteChannel {
+        private final WritableByteChannel delegate = Channels.newChannel(OutputStream.nullOutputStream());
+        long bytes;
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int n = delegate.write(src);
+            bytes += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        if (Files.isDirectory(path)) {
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+                for (Path child : children) {
+                    deleteRecursively(child);
+                }
+            }
+        }
+        Files.delete(path);
+    }
+}